@@ -0,0 +1,96 @@
+package com.youzan.nsq.client;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed loop controller of messages in flight of consumer. Each round, it measures average handler latency W per
+ * message and worker utilisation of last round, and sizes messages in flight after Little's law: workers kept busy
+ * consume workers / W messages per unit of time, and workers * (1 + headroom) messages in flight keep them busy while
+ * responses and next messages are on the wire.
+ * <ul>
+ * <li>headroom grows when workers are under utilised with few messages queued;</li>
+ * <li>headroom shrinks when queued messages wait longer than a quarter of msg timeout;</li>
+ * <li>messages in flight are capped, so that all of them are consumed within half of msg timeout.</li>
+ * </ul>
+ * Messages in flight are shared evenly by connections, as RDY of each connection.
+ */
+class AdaptiveRdyController {
+    //max_rdy_count of nsqd by default
+    static final int MAX_RDY_PER_CONNECTION = 2500;
+    private static final double MIN_HEADROOM = 0.25;
+    private static final double MAX_HEADROOM = 16;
+
+    private final int workers;
+    private final long msgTimeoutInMillisecond;
+    private final LongAdder consumed = new LongAdder();
+    private final LongAdder latencyInNano = new LongAdder();
+    //negative before any message is consumed
+    private double latencyInMillisecond = -1;
+    private double headroom = 1;
+    private long lastRound;
+
+    AdaptiveRdyController(int workers, long msgTimeoutInMillisecond) {
+        this.workers = workers;
+        this.msgTimeoutInMillisecond = msgTimeoutInMillisecond;
+        this.lastRound = System.nanoTime();
+    }
+
+    /**
+     * Record messages consumed, invoked by workers.
+     * @param messages number of messages consumed
+     * @param elapsedInNano time worker spent on messages
+     */
+    void onConsumed(int messages, long elapsedInNano) {
+        this.consumed.add(messages);
+        this.latencyInNano.add(elapsedInNano);
+    }
+
+    /**
+     * Start a new round of control.
+     * @param queued messages queued and being consumed by workers
+     * @return messages in flight for consumer
+     */
+    synchronized int nextInFlight(long queued) {
+        long now = System.nanoTime();
+        double roundInMillisecond = Math.max(1, (now - this.lastRound) / 1e6);
+        this.lastRound = now;
+        long messages = this.consumed.sumThenReset();
+        long latency = this.latencyInNano.sumThenReset();
+        if (messages > 0) {
+            double last = latency / 1e6 / messages;
+            this.latencyInMillisecond = this.latencyInMillisecond < 0 ? last : (this.latencyInMillisecond + last) / 2;
+        }
+        if (this.latencyInMillisecond < 0) {
+            //nothing measured yet, one message for each worker
+            return this.workers;
+        }
+        double utilisation = messages * this.latencyInMillisecond / (this.workers * roundInMillisecond);
+        double queueWait = queued * this.latencyInMillisecond / this.workers;
+        if (queueWait > this.msgTimeoutInMillisecond / 4.0) {
+            this.headroom = Math.max(MIN_HEADROOM, this.headroom / 2);
+        } else if (utilisation < 0.8 && queued < this.workers) {
+            this.headroom = Math.min(MAX_HEADROOM, this.headroom * 1.5);
+        }
+        double target = this.workers * (1 + this.headroom);
+        double cap = this.workers * (this.msgTimeoutInMillisecond / 2.0) / Math.max(this.latencyInMillisecond, 0.001);
+        return (int) Math.max(1, Math.min(Math.min(target, cap), Integer.MAX_VALUE));
+    }
+
+    /**
+     * @param inFlight messages in flight for consumer
+     * @param connections number of connections
+     * @return RDY of each connection, at least 1 and at most {@link #MAX_RDY_PER_CONNECTION}
+     */
+    static int[] share(int inFlight, int connections) {
+        int[] rdy = new int[connections];
+        for (int i = 0; i < connections; i++) {
+            int share = inFlight / connections + (i < inFlight % connections ? 1 : 0);
+            rdy[i] = Math.max(1, Math.min(MAX_RDY_PER_CONNECTION, share));
+        }
+        return rdy;
+    }
+
+    synchronized double getLatencyInMillisecond() {
+        return this.latencyInMillisecond;
+    }
+}
@@ -0,0 +1,18 @@
+package com.youzan.nsq.client;
+
+/**
+ * Callback of client processing messages in batch, for sinks which write messages in bulk. Messages in one batch are
+ * from the same connection, up to batch size in config, or what arrives within batch wait time.
+ */
+public interface BatchMessageHandler {
+
+    /**
+     * Business Processing. Messages marked with {@link MessageBatch#fail(com.youzan.nsq.client.entity.NSQMessage)}
+     * are requeued, others are finished in bulk after it returns. Exception thrown fails all messages in batch, and
+     * batch is processed once again on {@link com.youzan.nsq.client.exception.RetryBusinessException}.
+     *
+     * @param batch messages from one connection
+     */
+    void process(MessageBatch batch);
+
+}
@@ -0,0 +1,216 @@
+package com.youzan.nsq.client;
+
+import com.youzan.nsq.client.entity.Message;
+import com.youzan.nsq.client.exception.NSQException;
+import com.youzan.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Latest value conflating buffer in front of {@link Producer}, for topics carrying latest state of entities.
+ * Messages are buffered by topic and conflation key, which is topic sharding ID of message or key user specifies.
+ * Within one linger window, message replaces the one buffered for the same key, and only the newest message per key
+ * is published when window ends. Message replaced is dropped, and never published.
+ *
+ * Publish happens in flusher thread, exception in publish is logged and counted, as caller has returned.
+ */
+public class ConflatingProducer implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ConflatingProducer.class);
+
+    private final Producer producer;
+    private final long lingerInMillisecond;
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    //write lock guards buffer swap in flush and close, so no put goes to buffer swapped out, or after final flush
+    private final ReentrantReadWriteLock bufferLock = new ReentrantReadWriteLock();
+    private Map<ConflationKey, Message> buffer = new ConcurrentHashMap<>();
+
+    private final AtomicLong received = new AtomicLong(0);
+    private final AtomicLong conflated = new AtomicLong(0);
+    private final AtomicLong published = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+
+    /**
+     * @param producer producer to publish conflated messages, which is started, and closed by user.
+     * @param lingerInMillisecond linger window in millisecond
+     */
+    public ConflatingProducer(final Producer producer, long lingerInMillisecond) {
+        if (null == producer) {
+            throw new IllegalArgumentException("Producer is null.");
+        }
+        if (lingerInMillisecond <= 0) {
+            throw new IllegalArgumentException("Linger window should be positive.");
+        }
+        this.producer = producer;
+        this.lingerInMillisecond = lingerInMillisecond;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(this.getClass().getSimpleName() + "-Flusher", Thread.NORM_PRIORITY));
+        this.flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (Throwable t) {
+                    logger.error("Fail to flush conflated messages.", t);
+                }
+            }
+        }, lingerInMillisecond, lingerInMillisecond, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Buffer message with its topic sharding ID as conflation key.
+     * @param message message to publish
+     */
+    public void publish(final Message message) {
+        if (null == message || Message.NO_SHARDING == message.getTopicShardingId()) {
+            throw new IllegalArgumentException("Message with topic sharding ID is expected, otherwise specify conflation key.");
+        }
+        publish(message.getTopicShardingId(), message);
+    }
+
+    /**
+     * Buffer message with pass in conflation key.
+     * @param key conflation key
+     * @param message message to publish
+     */
+    public void publish(final Object key, final Message message) {
+        if (null == key || null == message) {
+            throw new IllegalArgumentException("Conflation key and message should not be null.");
+        }
+        Message replaced;
+        bufferLock.readLock().lock();
+        try {
+            if (closed.get()) {
+                throw new IllegalStateException("Conflating producer is closed.");
+            }
+            received.incrementAndGet();
+            replaced = buffer.put(new ConflationKey(message.getTopic().getTopicText(), key), message);
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+        if (null != replaced) {
+            conflated.incrementAndGet();
+            replaced.release();
+        }
+    }
+
+    /**
+     * Publish all buffered messages.
+     */
+    public synchronized void flush() {
+        Map<ConflationKey, Message> toFlush;
+        bufferLock.writeLock().lock();
+        try {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            toFlush = buffer;
+            buffer = new ConcurrentHashMap<>();
+        } finally {
+            bufferLock.writeLock().unlock();
+        }
+        for (Map.Entry<ConflationKey, Message> entry : toFlush.entrySet()) {
+            Message msg = entry.getValue();
+            try {
+                producer.publish(msg);
+                published.incrementAndGet();
+            } catch (NSQException | RuntimeException e) {
+                failed.incrementAndGet();
+                logger.error("Fail to publish conflated message of key {}.", entry.getKey(), e);
+            }
+        }
+    }
+
+    public long getLingerInMillisecond() {
+        return lingerInMillisecond;
+    }
+
+    /**
+     * @return number of messages received
+     */
+    public long getReceivedCount() {
+        return received.get();
+    }
+
+    /**
+     * @return number of messages replaced by newer ones, and not published
+     */
+    public long getConflatedCount() {
+        return conflated.get();
+    }
+
+    /**
+     * @return number of messages published
+     */
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    /**
+     * @return number of messages fail to publish
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Flush buffered messages and stop flusher. Producer is not closed.
+     */
+    @Override
+    public void close() {
+        bufferLock.writeLock().lock();
+        try {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+        } finally {
+            bufferLock.writeLock().unlock();
+        }
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(lingerInMillisecond * 2, TimeUnit.MILLISECONDS)) {
+                logger.warn("Flusher does not terminate in {} milliSec.", lingerInMillisecond * 2);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private static class ConflationKey {
+        private final String topic;
+        private final Object key;
+
+        ConflationKey(String topic, Object key) {
+            this.topic = topic;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ConflationKey that = (ConflationKey) o;
+            return topic.equals(that.topic) && key.equals(that.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * topic.hashCode() + key.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return topic + ":" + key;
+        }
+    }
+}
@@ -80,6 +80,22 @@ public interface Consumer extends Client, Closeable {
      */
     void setMessageHandler(final MessageHandler handler);
 
+    /**
+     * set batch message handler for current consumer, which takes precedence over message handler. Use this function
+     * to set up batch message handler BEFORE consumer starts. Invoking of current throws exception after consumer starts.
+     * @param handler
+     *              batch message handler to set up.
+     */
+    void setBatchMessageHandler(final BatchMessageHandler handler);
+
+    /**
+     * set key extractor for key ordered consumption, which takes precedence over extension key in config. Use this
+     * function BEFORE consumer starts. Invoking of current throws exception after consumer starts.
+     * @param extractor
+     *              message key extractor to set up.
+     */
+    void setMessageKeyExtractor(final MessageKeyExtractor extractor);
+
     /**
      * Perform the action quietly. No exceptions.
      */
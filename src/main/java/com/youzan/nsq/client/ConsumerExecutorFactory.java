@@ -0,0 +1,19 @@
+package com.youzan.nsq.client;
+
+import com.youzan.nsq.client.entity.NSQConfig;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Factory of executor consumer runs message handler on. Built-in factories are in {@link ConsumerExecutors}.
+ */
+public interface ConsumerExecutorFactory {
+
+    /**
+     * @param config config of consumer
+     * @param name   name of consumer workers, which is prefix of worker thread name
+     * @return executor for message handler, which is owned and shut down by consumer on close
+     */
+    ExecutorService newExecutor(NSQConfig config, String name);
+
+}
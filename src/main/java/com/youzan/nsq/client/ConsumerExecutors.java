@@ -0,0 +1,79 @@
+package com.youzan.nsq.client;
+
+import com.youzan.nsq.client.entity.NSQConfig;
+import com.youzan.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Built-in {@link ConsumerExecutorFactory}s.
+ */
+public class ConsumerExecutors {
+    private static final Logger logger = LoggerFactory.getLogger(ConsumerExecutors.class);
+
+    /**
+     * Fixed thread pool with {@link NSQConfig#getConsumerWorkerPoolSize()} threads, which is default.
+     */
+    public static final ConsumerExecutorFactory FIXED_THREAD_POOL = new ConsumerExecutorFactory() {
+        @Override
+        public ExecutorService newExecutor(NSQConfig config, String name) {
+            return Executors.newFixedThreadPool(config.getConsumerWorkerPoolSize(), new NamedThreadFactory(name, Thread.MAX_PRIORITY));
+        }
+    };
+
+    /**
+     * New virtual thread for each message, for message handler blocking in I/O. Messages handled concurrently are
+     * bounded by RDY of consumer, which is sized by {@link NSQConfig#getConsumerConcurrency()} instead of worker pool
+     * size, so raise it with {@link NSQConfig#setConsumerConcurrency(int)}. Virtual thread is available on JDK 21 and
+     * later, it falls back to fixed thread pool with {@link NSQConfig#getConsumerConcurrency()} threads on earlier JDK.
+     */
+    public static final ConsumerExecutorFactory VIRTUAL_THREAD_PER_MESSAGE = new ConsumerExecutorFactory() {
+        @Override
+        public ExecutorService newExecutor(NSQConfig config, String name) {
+            ExecutorService executor = newVirtualThreadPerTaskExecutor(name);
+            if (null == executor) {
+                logger.warn("Virtual thread is not supported by running JDK {}, fallback to fixed thread pool.", System.getProperty("java.version"));
+                return Executors.newFixedThreadPool(config.getConsumerConcurrency(), new NamedThreadFactory(name, Thread.MAX_PRIORITY));
+            }
+            return executor;
+        }
+    };
+
+    private ConsumerExecutors() {
+    }
+
+    /**
+     * @return {@link Boolean#TRUE} if running JDK supports virtual thread
+     */
+    public static boolean isVirtualThreadSupported() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor("probe");
+        if (null == executor) {
+            return false;
+        }
+        executor.shutdown();
+        return true;
+    }
+
+    /**
+     * Library targets Java 8, so virtual thread API is looked up reflectively.
+     * @return executor starting new virtual thread for each task, null if virtual thread is not supported
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor(String name) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-Virtual-Thread-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        } catch (Exception e) {
+            //not found before JDK 21, or preview not enabled on JDK 19 and 20
+            return null;
+        }
+    }
+}
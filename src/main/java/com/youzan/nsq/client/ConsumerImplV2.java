@@ -10,17 +10,19 @@ import com.youzan.nsq.client.entity.*;
 import com.youzan.nsq.client.exception.*;
 import com.youzan.nsq.client.network.frame.*;
 import com.youzan.nsq.client.network.frame.NSQFrame.FrameType;
+import com.youzan.nsq.client.network.netty.NSQClientEventLoopGroup;
 import com.youzan.nsq.client.network.netty.NSQClientInitializer;
+import com.youzan.nsq.client.network.netty.NSQTransport;
 import com.youzan.util.HostUtil;
 import com.youzan.util.IOUtil;
 import com.youzan.util.NamedThreadFactory;
+import com.youzan.util.SerialExecutor;
 import com.youzan.util.ThreadSafe;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelOption;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +34,7 @@ import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
 
@@ -54,6 +57,14 @@ public class ConsumerImplV2 implements Consumer, IConsumeInfo {
     private final static AtomicLong CONN_ID_GENERATOR = new AtomicLong(0);
     //max connect retry allowed
     private static final int MAX_CONSUME_RETRY = 3;
+    //backoff of failed message processed again in key ordered lane
+    private static final long LANE_RETRY_BACKOFF_IN_MILLISECOND = 100L;
+    private static final long LANE_RETRY_MAX_BACKOFF_IN_MILLISECOND = 5000L;
+    private static final Runnable NO_OP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
 
     //consumer start&close synchronization and flags
     private final ReentrantReadWriteLock cLock = new ReentrantReadWriteLock();
@@ -81,6 +92,7 @@ public class ConsumerImplV2 implements Consumer, IConsumeInfo {
 
     //netty component for consumer
     private final Bootstrap bootstrap = new Bootstrap();
+    private final NSQClientEventLoopGroup eventLoopGroup;
 
     /*
      * topics' partitions maintaining a sorted set of partitions number, example: {-1, 0, 2, 3}
@@ -99,6 +111,40 @@ public class ConsumerImplV2 implements Consumer, IConsumeInfo {
      * message handler
      */
     private volatile MessageHandler handler;
+    /*
+     * batch message handler, takes precedence over message handler
+     */
+    private volatile BatchMessageHandler batchHandler;
+    /*
+     * message batcher of each connection
+     */
+    private final ConcurrentHashMap<NSQConnection, MessageBatcher> conn_2_batcher = new ConcurrentHashMap<>();
+    /*
+     * key extractor and worker lanes for key ordered consumption
+     */
+    private volatile MessageKeyExtractor keyExtractor;
+    private final KeyOrderedLanes keyOrderedLanes;
+    /*
+     * retries of failed messages holding their key ordered lanes
+     */
+    private final Map<NSQMessage, LaneRetry> laneRetries = Collections.synchronizedMap(new IdentityHashMap<NSQMessage, LaneRetry>());
+    /*
+     * adaptive rdy controller, null when rdy of connections steps on consumption results
+     */
+    private final AdaptiveRdyController rdyController;
+    /*
+     * max messages in flight across connections, 0 when there is no budget, and messages received by each connection
+     * since last rdy redistribution
+     */
+    private final int maxInFlight;
+    private final ConcurrentHashMap<NSQConnection, LongAdder> conn_2_received = new ConcurrentHashMap<>();
+    private long rdyRound = 0;
+    private final MessageBatcher.Dispatcher batchDispatcher = new MessageBatcher.Dispatcher() {
+        @Override
+        public void dispatch(List<NSQMessage> messages, NSQConnection connection) {
+            processBatch(messages, connection);
+        }
+    };
 
     /*
      * message handler executor
@@ -180,14 +226,34 @@ public class ConsumerImplV2 implements Consumer, IConsumeInfo {
 
         //initialize netty component
         bootstrap.option(ChannelOption.SO_KEEPALIVE, true);
-        bootstrap.option(ChannelOption.TCP_NODELAY, true);
         bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.getConnectTimeoutInMillisecond());
-        bootstrap.group(NSQConfig.getEventLoopGroup());
-        bootstrap.channel(NioSocketChannel.class);
-        bootstrap.handler(new NSQClientInitializer());
+        eventLoopGroup = NSQClientEventLoopGroup.of(this.config, "Consumer");
+        NSQTransport.initBootstrap(bootstrap, eventLoopGroup.get(), this.config);
+        bootstrap.handler(new NSQClientInitializer(this.config.getIdleTimeoutInSecond()));
         //initialize consumer worker size
-        executor = Executors.newFixedThreadPool(this.config.getConsumerWorkerPoolSize(),
-                new NamedThreadFactory(this.getClass().getSimpleName() + "-ClientBusiness-" + this.config.getConsumerName(), Thread.MAX_PRIORITY));
+        executor = this.config.getConsumerExecutorFactory().newExecutor(this.config,
+                this.getClass().getSimpleName() + "-ClientBusiness-" + this.config.getConsumerName());
+        if (this.config.getKeyOrderedLanes() > 0) {
+            keyOrderedLanes = new KeyOrderedLanes(executor, this.config.getKeyOrderedLanes(), new MessageKeyExtractor() {
+                @Override
+                public Object keyOf(NSQMessage message) {
+                    MessageKeyExtractor extractor = keyExtractor;
+                    if (null != extractor) {
+                        return extractor.keyOf(message);
+                    }
+                    String extKey = ConsumerImplV2.this.config.getKeyOrderedExtKey();
+                    return null == extKey ? null : message.getExtByName(extKey);
+                }
+            });
+        } else {
+            keyOrderedLanes = null;
+        }
+        if (this.config.isAdaptiveRdy() && !this.config.isOrdered()) {
+            rdyController = new AdaptiveRdyController(this.config.getConsumerConcurrency(), this.config.getMsgTimeoutInMillisecond());
+        } else {
+            rdyController = null;
+        }
+        maxInFlight = this.config.isOrdered() ? 0 : this.config.getMaxInFlight();
         String consumerName = "-" + this.config.getConsumerName();
         //intialize consumer simple client thread
         scheduler = Executors
@@ -213,6 +279,22 @@ public class ConsumerImplV2 implements Consumer, IConsumeInfo {
         this.handler = handler;
     }
 
+    @Override
+    public void setMessageKeyExtractor(final MessageKeyExtractor extractor) {
+        if(this.started.get()) {
+            throw new IllegalStateException("Consumer has started.");
+        }
+        this.keyExtractor = extractor;
+    }
+
+    @Override
+    public void setBatchMessageHandler(final BatchMessageHandler handler) {
+        if(this.started.get()) {
+            throw new IllegalStateException("Consumer has started.");
+        }
+        this.batchHandler = handler;
+    }
+
     @Override
     public NSQConfig getConfig() {
         return this.config;
@@ -288,9 +370,18 @@ public class ConsumerImplV2 implements Consumer, IConsumeInfo {
             throw new IllegalArgumentException("Consumer Name is blank! Please check it!");
         }
         //validate message not null
-        if (null == this.handler) {
+        if (null == this.handler && null == this.batchHandler) {
             throw new IllegalArgumentException("Message handler is null");
         }
+        //validate key ordered consumption
+        if (this.config.getKeyOrderedLanes() > 0) {
+            if (this.config.isOrdered() || null != this.batchHandler) {
+                throw new IllegalArgumentException("Key ordered consumption does not work with ordered consumption or batch message handler.");
+            }
+            if (null == this.keyExtractor && null == this.config.getKeyOrderedExtKey()) {
+                throw new IllegalArgumentException("Neither key extractor nor extension key is specified for key ordered consumption.");
+            }
+        }
         //validate there is topics for subscribe
         if (this.topics2Partitions.isEmpty()) {
             logger.warn("No topic subscribed.");
@@ -502,10 +593,10 @@ public class ConsumerImplV2 implements Consumer, IConsumeInfo {
 
 
     private void updateExpectedRdyPerConn() {
-        int poolSize = this.config.getConsumerWorkerPoolSize();
+        int concurrency = this.config.getConsumerConcurrency();
         int connNum = this.address_2_conn.keySet().size();
         if(connNum > 0) {
-            int computedExpectedRdyTmp = poolSize/connNum;
+            int computedExpectedRdyTmp = concurrency/connNum;
             if(computedExpectedRdyTmp > this.computedExpectedRdy)
                 this.computedExpectedRdy = computedExpectedRdyTmp;
         }
@@ -539,7 +630,7 @@ public class ConsumerImplV2 implements Consumer, IConsumeInfo {
             NSQConnection conn = null;
             //calculate expected rdy
             conn = new NSQConnectionImpl(CONN_ID_GENERATOR.incrementAndGet(), address, channel,
-                        config, this.computedExpectedRdy);
+                        config, maxInFlight > 0 ? 1 : this.computedExpectedRdy);
 
             address_2_conn.put(address, conn);
 
@@ -608,6 +699,8 @@ public class ConsumerImplV2 implements Consumer, IConsumeInfo {
         final NSQConnection conn = address_2_conn.get(address);
         address_2_conn.remove(address);
         if (conn != null) {
+            conn_2_batcher.remove(conn);
+            conn_2_received.remove(conn);
             try {
                 conn.onBackoff(null);
             } catch (Exception e) {
@@ -647,6 +740,16 @@ public class ConsumerImplV2 implements Consumer, IConsumeInfo {
             }
             case MESSAGE_FRAME: {
                 received.incrementAndGet();
+                if (maxInFlight > 0) {
+                    LongAdder connReceived = conn_2_received.get(conn);
+                    if (null == connReceived) {
+                        connReceived = new LongAdder();
+                        LongAdder existing = conn_2_received.putIfAbsent(conn, connReceived);
+                        if (null != existing)
+                            connReceived = existing;
+                    }
+                    connReceived.increment();
+                }
                 final MessageFrame msg = (MessageFrame) frame;
                 final NSQMessage message = createNSQMessage(msg, conn);
 
@@ -717,28 +820,70 @@ public class ConsumerImplV2 implements Consumer, IConsumeInfo {
             logger.debug(message.toString());
         }
 
+        if (batchHandler != null) {
+            MessageBatcher batcher = conn_2_batcher.get(connection);
+            if (null == batcher) {
+                batcher = new MessageBatcher(connection, this.config.getMessageBatchSize(), this.config.getMessageBatchWaitInMillisecond(), batchDispatcher);
+                conn_2_batcher.put(connection, batcher);
+            }
+            batcher.add(message);
+            return;
+        }
         if (handler == null) {
             logger.error("No MessageHandler then drop the message {}", message);
             return;
         }
+        final Executor exec = null == keyOrderedLanes ? executor : keyOrderedLanes.laneOf(message);
+        try {
+            exec.execute(consumeTask(message, connection));
+            queue4Consume.incrementAndGet();
+        } catch (RejectedExecutionException re) {
+            logger.error("message handler task rejected as task queue is full.");
+            connection.declineExpectedRdy();
+        }
+    }
+
+    private Runnable consumeTask(final NSQMessage message, final NSQConnection connection) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                boolean held = false;
+                try {
+                    consume(message, connection);
+                    success.incrementAndGet();
+                } catch (HeldInLaneException e) {
+                    //message is still queued, and consumed again when its lane resumes
+                    held = true;
+                } catch (Exception e) {
+                    IOUtil.closeQuietly(connection);
+                    logger.error("Exception", e);
+                } finally {
+                    if (!held)
+                        queue4Consume.decrementAndGet();
+                }
+            }
+        };
+    }
+
+    private void processBatch(final List<NSQMessage> messages, final NSQConnection connection) {
         try {
-             executor.execute(new Runnable() {
+            executor.execute(new Runnable() {
                 @Override
                 public void run() {
                     try {
-                        consume(message, connection);
-                        success.incrementAndGet();
+                        consumeBatch(messages, connection);
+                        success.addAndGet(messages.size());
                     } catch (Exception e) {
                         IOUtil.closeQuietly(connection);
                         logger.error("Exception", e);
                     } finally {
-                        queue4Consume.decrementAndGet();
+                        queue4Consume.addAndGet(-messages.size());
                     }
                 }
             });
-            queue4Consume.incrementAndGet();
+            queue4Consume.addAndGet(messages.size());
         } catch (RejectedExecutionException re) {
-            logger.error("message handler task rejected as task queue is full.");
+            logger.error("message batch handler task rejected as task queue is full.");
             connection.declineExpectedRdy();
         }
     }
@@ -779,13 +924,18 @@ public class ConsumerImplV2 implements Consumer, IConsumeInfo {
         skip = skip || !checkExtFilter(message, connection);
 
         long start = System.currentTimeMillis();
+        long startInNano = System.nanoTime();
         try {
-            if(!skip)
-                handler.process(message);
-            else
+            if(skip)
                 skipCallback.apply(null);
+            else if (null != keyOrderedLanes)
+                processInLane(message, connection);
+            else
+                handler.process(message);
             ok = true;
             retry = false;
+        } catch (HeldInLaneException e) {
+            throw e;
         } catch (ExplicitRequeueException e) {
             ok = false;
             retry = false;
@@ -813,12 +963,102 @@ public class ConsumerImplV2 implements Consumer, IConsumeInfo {
                 logger.error("Client business retry fail. Original message: {}. Exception:", message.getReadableContent(), e);
             }
         }
+        if (null != rdyController)
+            rdyController.onConsumed(1, System.nanoTime() - startInNano);
         long end = System.currentTimeMillis() - start;
         if(PERF_LOG.isDebugEnabled())
             PERF_LOG.debug("Message handler took {} milliSec to finish consuming message for connection {}. Success:{}, Retry:{}", end, connection.getAddress(), ok, retry);
         if(end > this.config.getMsgTimeoutInMillisecond())
             PERF_LOG.warn("Message handler took {} milliSec to finish consuming message. Limitation is {}", end, this.config.getMsgTimeoutInMillisecond());
 
+        NSQCommand cmd = responseOf(message, connection, ok, explicitRequeue, skip, end);
+        if (cmd != null && !closing.get()) {
+            onResponse(connection.command(cmd), cmd, message, connection, skip);
+        }
+        afterConsume(message, connection, ok);
+    }
+
+    /**
+     * Process message in its key ordered lane. Failed message holds its lane, so that later messages of its key wait
+     * for it, and it is consumed again in lane after backoff, without taking a worker thread while it waits. Message
+     * held for half of message timeout is requeued as usual. Explicitly requeued message is consumed again after its
+     * next consuming time, if it is within the hold.
+     * @throws HeldInLaneException if message holds its lane, to be consumed again
+     */
+    private void processInLane(final NSQMessage message, final NSQConnection connection) throws Exception {
+        try {
+            handler.process(message);
+            laneRetries.remove(message);
+        } catch (RetryBusinessException e) {
+            laneRetries.remove(message);
+            throw e;
+        } catch (Exception e) {
+            LaneRetry retry = laneRetries.remove(message);
+            final Integer nextConsuming = message.getNextConsumingInSecond();
+            //message failed without next consuming time is finished, no later message waits for it
+            if (null == nextConsuming || closing.get()) {
+                throw e;
+            }
+            if (null == retry) {
+                retry = new LaneRetry(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.config.getMsgTimeoutInMillisecond() / 2));
+            }
+            long wait = e instanceof ExplicitRequeueException ? Math.max(TimeUnit.SECONDS.toMillis(nextConsuming), retry.backoff) : retry.backoff;
+            if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(wait) > retry.holdUntil) {
+                logger.warn("Message {} is held in key ordered lane for too long, requeue it and later messages of its key go first.", message);
+                throw e;
+            }
+            retry.backoff = Math.min(retry.backoff * 2, LANE_RETRY_MAX_BACKOFF_IN_MILLISECOND);
+            final SerialExecutor lane = keyOrderedLanes.laneOf(message);
+            final Runnable task = consumeTask(message, connection);
+            lane.hold();
+            try {
+                scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        lane.resume(task);
+                    }
+                }, wait, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException re) {
+                //consumer is closing, lane goes on and failure is handled as usual
+                lane.resume(NO_OP);
+                throw e;
+            }
+            laneRetries.put(message, retry);
+            logger.info("Message {} fails in key ordered lane, consume it again in {} milliseconds. {}", message, wait, e.toString());
+            throw HeldInLaneException.INSTANCE;
+        }
+    }
+
+    /**
+     * Retry of failed message holding its key ordered lane.
+     */
+    private static class LaneRetry {
+        final long holdUntil;
+        long backoff = LANE_RETRY_BACKOFF_IN_MILLISECOND;
+
+        LaneRetry(long holdUntil) {
+            this.holdUntil = holdUntil;
+        }
+    }
+
+    /**
+     * Thrown out of consume when failed message holds its key ordered lane, so that it is neither responded nor
+     * counted as consumed.
+     */
+    private static class HeldInLaneException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        static final HeldInLaneException INSTANCE = new HeldInLaneException();
+
+        private HeldInLaneException() {
+            super("Message held in key ordered lane.", null, false, false);
+        }
+    }
+
+    /**
+     * Decide command responding to consumed message, expected rdy of connection declines on failure.
+     * @return command to respond, null if no response needed
+     */
+    private NSQCommand responseOf(final NSQMessage message, final NSQConnection connection, boolean ok, boolean explicitRequeue, boolean skip, long end) {
         // The client commands ReQueue into NSQd.
         final Integer nextConsumingWaiting = message.getNextConsumingInSecond();
         // It is too complex.
@@ -847,7 +1087,7 @@ public class ConsumerImplV2 implements Consumer, IConsumeInfo {
                         logger.info("Do a Finish by SDK, given that client process handler has failed and next consuming time elapse not specified. MessageID: {} , Hex: {}", id, message.newHexString(id));
                     }
                 }
-                if(!explicitRequeue)
+                if(!explicitRequeue && !isRdyApportioned())
                     connection.declineExpectedRdy();
             }
         } else {
@@ -868,32 +1108,33 @@ public class ConsumerImplV2 implements Consumer, IConsumeInfo {
                 cmd = null;
             }
         }
-        if (cmd != null) {
-            final String cmdStr = cmd.toString();
-            if (!closing.get()) {
-                ChannelFuture future = connection.command(cmd);
-                if (null != future) {
-                    future.addListener(new ChannelFutureListener() {
-                        @Override
-                        public void operationComplete(ChannelFuture future) throws Exception {
-                            if (!future.isSuccess()) {
-                                logger.error("Fail to send {}. Message {} will be delivered to consumer in another round.", cmdStr, message.getMessageID());
-                            } else if (PERF_LOG.isDebugEnabled()) {
-                                PERF_LOG.debug("Command {} to {} for message {} sent.", cmdStr, connection.getAddress(), message.getMessageID());
-                            }
-                        }
-                    });
-                    if(!skip) {
-                        if (cmd instanceof Finish) {
-                            finCallback.apply(null);
-                        } else {
-                            reqCallback.apply(null);
-                        }
+        return cmd;
+    }
+
+    private void onResponse(ChannelFuture future, final NSQCommand cmd, final NSQMessage message, final NSQConnection connection, boolean skip) {
+        final String cmdStr = cmd.toString();
+        if (null != future) {
+            future.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if (!future.isSuccess()) {
+                        logger.error("Fail to send {}. Message {} will be delivered to consumer in another round.", cmdStr, message.getMessageID());
+                    } else if (PERF_LOG.isDebugEnabled()) {
+                        PERF_LOG.debug("Command {} to {} for message {} sent.", cmdStr, connection.getAddress(), message.getMessageID());
                     }
                 }
+            });
+            if(!skip) {
+                if (cmd instanceof Finish) {
+                    finCallback.apply(null);
+                } else {
+                    reqCallback.apply(null);
+                }
             }
         }
-        // Post
+    }
+
+    private void afterConsume(final NSQMessage message, final NSQConnection connection, boolean ok) {
         //log warn
         if (!ok) {
             int attempt = message.getReadableAttempts();
@@ -913,11 +1154,84 @@ public class ConsumerImplV2 implements Consumer, IConsumeInfo {
             }
             //TODO: connection.setMessageConsumptionFailed(start);
 //            logger.warn("Exception occurs in message handler. Please check it right now {} , Original message: {}.", message, message.getReadableContent());
-        } else if (!this.config.isOrdered()){
+        } else if (!this.config.isOrdered() && !isRdyApportioned()){
             connection.increaseExpectedRdy(this.computedExpectedRdy);
         }
     }
 
+    /**
+     * Consume messages from one connection with batch message handler. Skipped messages are not passed to handler,
+     * and responses of all messages are sent in bulk after batch is processed.
+     * @param messages   messages from connection
+     * @param connection a NSQConnection
+     */
+    private void consumeBatch(final List<NSQMessage> messages, final NSQConnection connection) {
+        final List<NSQMessage> toProcess = new ArrayList<>(messages.size());
+        final Set<NSQMessage> skipped = Collections.newSetFromMap(new IdentityHashMap<NSQMessage, Boolean>());
+        for (NSQMessage message : messages) {
+            if (needSkip4MsgKV(message) || !checkExtFilter(message, connection)) {
+                skipped.add(message);
+                skipCallback.apply(null);
+            } else {
+                toProcess.add(message);
+            }
+        }
+        final MessageBatch batch = new MessageBatch(toProcess);
+        boolean retry = false;
+        long start = System.currentTimeMillis();
+        long startInNano = System.nanoTime();
+        if (!toProcess.isEmpty()) {
+            try {
+                batchHandler.process(batch);
+            } catch (RetryBusinessException e) {
+                retry = true;
+            } catch (Exception e) {
+                batch.failAll();
+                logger.error("Client business has one error in batch of {} messages from {}. Exception:", batch.size(), connection.getAddress(), e);
+            }
+            if (retry) {
+                logger.info("Client has told SDK to do batch of {} messages again.", batch.size());
+                batch.reset();
+                try {
+                    batchHandler.process(batch);
+                } catch (Exception e) {
+                    batch.failAll();
+                    logger.error("Client business retry fail in batch of {} messages from {}. Exception:", batch.size(), connection.getAddress(), e);
+                }
+            }
+        }
+        if (null != rdyController && !toProcess.isEmpty())
+            rdyController.onConsumed(toProcess.size(), System.nanoTime() - startInNano);
+        long end = System.currentTimeMillis() - start;
+        if(PERF_LOG.isDebugEnabled())
+            PERF_LOG.debug("Batch message handler took {} milliSec to finish consuming {} messages for connection {}. Retry:{}", end, batch.size(), connection.getAddress(), retry);
+        if(end > this.config.getMsgTimeoutInMillisecond())
+            PERF_LOG.warn("Batch message handler took {} milliSec to finish consuming {} messages. Limitation is {}", end, batch.size(), this.config.getMsgTimeoutInMillisecond());
+
+        final List<NSQCommand> cmds = new ArrayList<>(messages.size());
+        final List<NSQMessage> responded = new ArrayList<>(messages.size());
+        final boolean[] oks = new boolean[messages.size()];
+        for (int i = 0; i < messages.size(); i++) {
+            NSQMessage message = messages.get(i);
+            boolean skip = skipped.contains(message);
+            oks[i] = skip || !batch.isFailed(message);
+            NSQCommand cmd = responseOf(message, connection, oks[i], false, skip, end);
+            if (null != cmd) {
+                cmds.add(cmd);
+                responded.add(message);
+            }
+        }
+        if (!cmds.isEmpty() && !closing.get()) {
+            List<ChannelFuture> futures = connection.command(cmds);
+            for (int i = 0; i < cmds.size(); i++) {
+                onResponse(futures.get(i), cmds.get(i), responded.get(i), connection, skipped.contains(responded.get(i)));
+            }
+        }
+        for (int i = 0; i < messages.size(); i++) {
+            afterConsume(messages.get(i), connection, oks[i]);
+        }
+    }
+
     /**
      * @deprecated
      * @param conn NSQConnection
@@ -961,6 +1275,7 @@ public class ConsumerImplV2 implements Consumer, IConsumeInfo {
                     Thread.currentThread().interrupt();
                 }
                 close(connections);
+                eventLoopGroup.release();
                 logger.info("The consumer has been closed.");
             } finally {
                 cLock.writeLock().unlock();
@@ -1131,18 +1446,14 @@ public class ConsumerImplV2 implements Consumer, IConsumeInfo {
     /**
      * connection heart beat validation for consumer, invoked by netty idle event.
      * @param conn NSQConnection
-     * @return  {@link Boolean#TRUE} if success, {@link Boolean#FALSE} otherwise.
+     * @return  future of heartbeat sent, null if connection is not connected.
      */
     @Override
-    public boolean validateHeartbeat(NSQConnection conn) {
+    public ChannelFuture validateHeartbeat(NSQConnection conn) {
         if (!conn.isConnected()) {
-            return false;
-        }
-        final ChannelFuture future = conn.command(Nop.getInstance());
-        if (null != future && future.awaitUninterruptibly(config.getQueryTimeoutInMillisecond(), TimeUnit.MILLISECONDS)) {
-            return future.isSuccess();
+            return null;
         }
-        return false;
+        return conn.command(Nop.getInstance());
     }
 
     @Override
@@ -1314,9 +1625,43 @@ public class ConsumerImplV2 implements Consumer, IConsumeInfo {
         return null;
     }
 
+    /**
+     * @return {@link Boolean#TRUE} when rdy of connections is apportioned on redistribution, instead of stepping on
+     * consumption results
+     */
+    private boolean isRdyApportioned() {
+        return null != rdyController || maxInFlight > 0;
+    }
+
     private void redistributeRdy() {
         if(backoff.get())
             return;
+        if (isRdyApportioned()) {
+            List<NSQConnection> conns = new ArrayList<>(address_2_conn.values());
+            if (!conns.isEmpty()) {
+                int inFlight = null != rdyController ? rdyController.nextInFlight(queue4Consume.get()) : maxInFlight;
+                int[] current = new int[conns.size()];
+                boolean[] writable = new boolean[conns.size()];
+                for (int i = 0; i < conns.size(); i++) {
+                    current[i] = conns.get(i).getExpectedRdy();
+                    writable[i] = conns.get(i).isWritable();
+                }
+                int[] rdy;
+                if (maxInFlight > 0) {
+                    long[] connReceived = new long[conns.size()];
+                    for (int i = 0; i < conns.size(); i++) {
+                        LongAdder adder = conn_2_received.get(conns.get(i));
+                        connReceived[i] = null == adder ? 0 : adder.sumThenReset();
+                    }
+                    rdy = InFlightBudget.apportion(Math.min(inFlight, maxInFlight), connReceived, current, writable, rdyRound++);
+                } else {
+                    rdy = InFlightBudget.holdUnwritable(AdaptiveRdyController.share(inFlight, conns.size()), current, writable);
+                }
+                for (int i = 0; i < conns.size(); i++) {
+                    conns.get(i).apportionExpectedRdy(rdy[i]);
+                }
+            }
+        }
         for(NSQConnection conn:address_2_conn.values()) {
             if(null != conn) {
                 conn.mayUpdateRdy();
@@ -0,0 +1,137 @@
+package com.youzan.nsq.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Apportions max messages in flight of consumer to its connections as RDY, after max-in-flight of go-nsq. Connections
+ * which received messages in last round have backlog, and they share budget in proportion to messages received, while
+ * idle connections keep RDY 1. When budget is less than connections, RDY 1 is given to connections with backlog first,
+ * then to idle connections in rotation, and the rest of connections get RDY 0. Connections which are not writable
+ * could not flush acknowledgements, so they get no more RDY than they have, and RDY they are not given goes to
+ * writable connections.
+ */
+class InFlightBudget {
+
+    private InFlightBudget() {
+    }
+
+    /**
+     * @param budget   max messages in flight of consumer
+     * @param received messages received by each connection in last round
+     * @param current  RDY each connection has
+     * @param writable whether each connection is writable
+     * @param rotation round number, rotates idle connections given RDY when budget is less than connections
+     * @return RDY of each connection, at most {@link AdaptiveRdyController#MAX_RDY_PER_CONNECTION}
+     */
+    static int[] apportion(int budget, final long[] received, int[] current, boolean[] writable, long rotation) {
+        int connections = received.length;
+        int[] rdy = new int[connections];
+        if (connections == 0) {
+            return rdy;
+        }
+        List<Integer> active = new ArrayList<>();
+        List<Integer> idle = new ArrayList<>();
+        long total = 0;
+        for (int i = 0; i < connections; i++) {
+            if (received[i] > 0) {
+                active.add(i);
+                total += received[i];
+            } else {
+                idle.add(i);
+            }
+        }
+        Collections.sort(active, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(received[b], received[a]);
+            }
+        });
+
+        //connections in order to be given RDY
+        List<Integer> order = new ArrayList<>(active);
+        for (int i = 0; i < idle.size(); i++) {
+            order.add(idle.get((int) ((rotation + i) % idle.size())));
+        }
+
+        if (budget < connections) {
+            for (int i = 0; i < budget; i++) {
+                rdy[order.get(i)] = 1;
+            }
+            return holdUnwritable(rdy, current, writable, order);
+        }
+
+        Arrays.fill(rdy, 1);
+        int rest = budget - connections;
+        if (active.isEmpty()) {
+            //no backlog to follow, share evenly
+            for (int i = 0; i < connections; i++) {
+                rdy[i] += rest / connections + (i < rest % connections ? 1 : 0);
+            }
+        } else {
+            int given = 0;
+            for (int i : active) {
+                int share = (int) (rest * received[i] / total);
+                rdy[i] += share;
+                given += share;
+            }
+            for (int i = 0; given < rest; i = (i + 1) % active.size(), given++) {
+                rdy[active.get(i)]++;
+            }
+        }
+        for (int i = 0; i < connections; i++) {
+            rdy[i] = Math.min(rdy[i], AdaptiveRdyController.MAX_RDY_PER_CONNECTION);
+        }
+        return holdUnwritable(rdy, current, writable, order);
+    }
+
+    /**
+     * Keep connections which are not writable from getting more RDY than they have, and give RDY they are not given
+     * to writable connections, up to {@link AdaptiveRdyController#MAX_RDY_PER_CONNECTION}.
+     * @param rdy      RDY of each connection to apply
+     * @param current  RDY each connection has
+     * @param writable whether each connection is writable
+     * @return RDY of each connection
+     */
+    static int[] holdUnwritable(int[] rdy, int[] current, boolean[] writable) {
+        List<Integer> order = new ArrayList<>(rdy.length);
+        for (int i = 0; i < rdy.length; i++) {
+            order.add(i);
+        }
+        return holdUnwritable(rdy, current, writable, order);
+    }
+
+    private static int[] holdUnwritable(int[] rdy, int[] current, boolean[] writable, List<Integer> order) {
+        int held = 0;
+        for (int i = 0; i < rdy.length; i++) {
+            if (!writable[i] && rdy[i] > current[i]) {
+                held += rdy[i] - Math.max(0, current[i]);
+                rdy[i] = Math.max(0, current[i]);
+            }
+        }
+        //connections with no RDY first
+        for (int i = 0; i < order.size() && held > 0; i++) {
+            int conn = order.get(i);
+            if (writable[conn] && rdy[conn] == 0) {
+                rdy[conn] = 1;
+                held--;
+            }
+        }
+        boolean given = true;
+        while (held > 0 && given) {
+            given = false;
+            for (int i = 0; i < order.size() && held > 0; i++) {
+                int conn = order.get(i);
+                if (writable[conn] && rdy[conn] < AdaptiveRdyController.MAX_RDY_PER_CONNECTION) {
+                    rdy[conn]++;
+                    held--;
+                    given = true;
+                }
+            }
+        }
+        return rdy;
+    }
+}
@@ -0,0 +1,38 @@
+package com.youzan.nsq.client;
+
+import com.youzan.nsq.client.entity.NSQMessage;
+import com.youzan.util.SerialExecutor;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * Worker lanes for key ordered consumption. Each lane runs messages one at a time on consumer worker executor, and
+ * message is dispatched to lane hashed by its key, so messages of one key are consumed in order of arrival, while
+ * messages of different keys are consumed in parallel across lanes. Messages without key are spread across lanes by
+ * message ID.
+ */
+class KeyOrderedLanes {
+    private final SerialExecutor[] lanes;
+    private final MessageKeyExtractor extractor;
+
+    KeyOrderedLanes(Executor executor, int lanes, MessageKeyExtractor extractor) {
+        this.lanes = new SerialExecutor[lanes];
+        for (int i = 0; i < lanes; i++) {
+            this.lanes[i] = new SerialExecutor(executor);
+        }
+        this.extractor = extractor;
+    }
+
+    /**
+     * @param message message to consume
+     * @return lane of message key
+     */
+    SerialExecutor laneOf(NSQMessage message) {
+        Object key = this.extractor.keyOf(message);
+        int hash = null == key ? Arrays.hashCode(message.getMessageID()) : key.hashCode();
+        //spread higher bits, as in HashMap
+        hash ^= hash >>> 16;
+        return this.lanes[(hash & Integer.MAX_VALUE) % this.lanes.length];
+    }
+}
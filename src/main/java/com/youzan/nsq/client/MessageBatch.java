@@ -0,0 +1,58 @@
+package com.youzan.nsq.client;
+
+import com.youzan.nsq.client.entity.NSQMessage;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Messages from one connection passed to {@link BatchMessageHandler}, in order of arrival. Client reports failure of
+ * each message with {@link #fail(NSQMessage)}, messages not marked failed are regarded as consumed.
+ */
+public class MessageBatch implements Iterable<NSQMessage> {
+    private final List<NSQMessage> messages;
+    private final Set<NSQMessage> failed = Collections.newSetFromMap(new IdentityHashMap<NSQMessage, Boolean>());
+
+    MessageBatch(List<NSQMessage> messages) {
+        this.messages = Collections.unmodifiableList(messages);
+    }
+
+    public List<NSQMessage> getMessages() {
+        return this.messages;
+    }
+
+    public int size() {
+        return this.messages.size();
+    }
+
+    @Override
+    public Iterator<NSQMessage> iterator() {
+        return this.messages.iterator();
+    }
+
+    /**
+     * Mark message failed, failed message is requeued with its next consuming delay.
+     * @param message message in batch
+     */
+    public synchronized void fail(NSQMessage message) {
+        if (!this.messages.contains(message)) {
+            throw new IllegalArgumentException("Message is not in batch.");
+        }
+        this.failed.add(message);
+    }
+
+    public synchronized boolean isFailed(NSQMessage message) {
+        return this.failed.contains(message);
+    }
+
+    synchronized void failAll() {
+        this.failed.addAll(this.messages);
+    }
+
+    synchronized void reset() {
+        this.failed.clear();
+    }
+}
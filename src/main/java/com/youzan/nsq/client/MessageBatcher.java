@@ -0,0 +1,71 @@
+package com.youzan.nsq.client;
+
+import com.youzan.nsq.client.core.NSQConnection;
+import com.youzan.nsq.client.entity.NSQMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulates messages of one connection into batches for {@link BatchMessageHandler}. Batch is dispatched when it
+ * reaches batch size or current RDY of connection, whichever is smaller, as nsqd never has more messages than RDY in
+ * flight on a connection, or when its first message has waited for batch wait time. Messages are added on event loop of
+ * connection and wait is timed on the same event loop, so no lock is needed.
+ */
+class MessageBatcher {
+    interface Dispatcher {
+        void dispatch(List<NSQMessage> messages, NSQConnection connection);
+    }
+
+    private final NSQConnection connection;
+    private final int batchSize;
+    private final int waitInMillisecond;
+    private final Dispatcher dispatcher;
+    private List<NSQMessage> pending;
+    private ScheduledFuture<?> waitTimeout;
+
+    private final Runnable waitTimeoutTask = new Runnable() {
+        @Override
+        public void run() {
+            waitTimeout = null;
+            dispatch();
+        }
+    };
+
+    MessageBatcher(NSQConnection connection, int batchSize, int waitInMillisecond, Dispatcher dispatcher) {
+        this.connection = connection;
+        this.batchSize = batchSize;
+        this.waitInMillisecond = waitInMillisecond;
+        this.dispatcher = dispatcher;
+        this.pending = new ArrayList<>(batchSize);
+    }
+
+    /**
+     * Add message to pending batch, invoked on event loop of connection.
+     * @param message message from connection
+     */
+    void add(NSQMessage message) {
+        this.pending.add(message);
+        int fill = Math.min(this.batchSize, Math.max(1, this.connection.getCurrentRdyCount()));
+        if (this.pending.size() >= fill || this.waitInMillisecond == 0) {
+            if (null != this.waitTimeout) {
+                this.waitTimeout.cancel(false);
+                this.waitTimeout = null;
+            }
+            dispatch();
+        } else if (null == this.waitTimeout) {
+            this.waitTimeout = this.connection.eventLoop().schedule(this.waitTimeoutTask, this.waitInMillisecond, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void dispatch() {
+        if (this.pending.isEmpty()) {
+            return;
+        }
+        List<NSQMessage> messages = this.pending;
+        this.pending = new ArrayList<>(this.batchSize);
+        this.dispatcher.dispatch(messages, this.connection);
+    }
+}
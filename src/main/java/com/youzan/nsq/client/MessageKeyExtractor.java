@@ -0,0 +1,17 @@
+package com.youzan.nsq.client;
+
+import com.youzan.nsq.client.entity.NSQMessage;
+
+/**
+ * Extracts business key of message for key ordered consumption. Messages of the same key from one connection are
+ * consumed in order of arrival.
+ */
+public interface MessageKeyExtractor {
+
+    /**
+     * @param message message received
+     * @return business key of message, null for message which does not need to be ordered
+     */
+    Object keyOf(NSQMessage message);
+
+}
@@ -5,10 +5,12 @@ import com.youzan.nsq.client.entity.Message;
 import com.youzan.nsq.client.entity.NSQConfig;
 import com.youzan.nsq.client.entity.Topic;
 import com.youzan.nsq.client.exception.NSQException;
+import com.youzan.nsq.client.serializer.Serializer;
 import com.youzan.util.IOUtil;
 
 import java.io.Closeable;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Because of too many topics, we create some connections with brokers when actually first time uses.
@@ -56,6 +58,20 @@ public interface Producer extends Client, Closeable {
      */
     MessageReceipt publishAndGetReceipt(Message message) throws NSQException;
 
+    /**
+     * publish message and return receipt, within pass in timeout. Wait for partition info, connection borrow,
+     * response from nsqd and backoff between retries are all bounded by remaining time before deadline. Lookup of
+     * partition info and connection made to nsqd in borrow are bounded by lookupd http timeout, and connect timeout
+     * plus query timeout respectively, they are not interrupted by deadline, which is checked before and after them.
+     * @param message message to publish
+     * @param timeout timeout of publish
+     * @param unit time unit of timeout
+     * @return receipt of publish
+     * @throws NSQException {@link com.youzan.nsq.client.exception.NSQDeadlineExceededException} if publish does not
+     * finish before deadline, other exception raised in publish process.
+     */
+    MessageReceipt publishAndGetReceipt(Message message, long timeout, TimeUnit unit) throws NSQException;
+
     /**
      * Use it to produce only one 'message' sending to MQ.
      * partition info is not specified in this function,
@@ -75,6 +91,16 @@ public interface Producer extends Client, Closeable {
      */
     void publish(byte[] message, Topic topic) throws NSQException;
 
+    /**
+     * publish object to specified topic, object is serialized into message body with pass in serializer.
+     * @param obj object to be sent
+     * @param topic the specified topic
+     * @param serializer serializer for pass in object
+     * @param <T> type of object
+     * @throws NSQException {@link NSQException}
+     */
+    <T> void publish(T obj, Topic topic, Serializer<? super T> serializer) throws NSQException;
+
     /**
      * Publish batch messages sending to nsqd in specified batch size, concurrently.
      * Producer tries publishing messages to ALL topic's partitions concurrently.
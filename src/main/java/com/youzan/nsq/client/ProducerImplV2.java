@@ -1,25 +1,33 @@
 package com.youzan.nsq.client;
 
+import com.youzan.nsq.client.claimcheck.BlobStore;
+import com.youzan.nsq.client.claimcheck.ClaimCheck;
 import com.youzan.nsq.client.configs.ConfigAccessAgent;
 import com.youzan.nsq.client.core.LookupAddressUpdate;
 import com.youzan.nsq.client.core.NSQConnection;
 import com.youzan.nsq.client.core.NSQSimpleClient;
+import com.youzan.nsq.client.core.TopicActivityHistory;
 import com.youzan.nsq.client.core.command.Pub;
+import com.youzan.nsq.client.core.pool.producer.AIMDConcurrencyLimiter;
 import com.youzan.nsq.client.core.pool.producer.KeyedPooledConnectionFactory;
+import com.youzan.nsq.client.core.pool.producer.ThreadAffineConnectionBinder;
 import com.youzan.nsq.client.entity.*;
 import com.youzan.nsq.client.exception.*;
 import com.youzan.nsq.client.network.frame.ErrorFrame;
 import com.youzan.nsq.client.network.frame.NSQFrame;
 import com.youzan.nsq.client.network.frame.ResponseFrame;
+import com.youzan.nsq.client.serializer.Serializer;
 import com.youzan.util.HostUtil;
 import com.youzan.util.IOUtil;
 import com.youzan.util.NamedThreadFactory;
 import com.youzan.util.ProducerWorkerThreadFactory;
+import io.netty.channel.ChannelFuture;
 import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
 import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
@@ -50,12 +58,14 @@ public class ProducerImplV2 implements Producer {
     private final GenericKeyedObjectPoolConfig poolConfig;
     private final KeyedPooledConnectionFactory factory;
     private GenericKeyedObjectPool<Address, NSQConnection> bigPool = null;
+    //binds publishing threads to connections, null if it is not enabled
+    private ThreadAffineConnectionBinder affineBinder = null;
     private final ScheduledExecutorService scheduler = Executors
             .newSingleThreadScheduledExecutor(new ProducerWorkerThreadFactory(this.getClass().getName(), Thread.NORM_PRIORITY));
 
     private final ExecutorService pubExec;
 
-    private final ConcurrentHashMap<String, Long> topic_2_lastActiveTime = new ConcurrentHashMap<>();
+    private final TopicActivityHistory topicActivityHistory = new TopicActivityHistory();
 
     private final AtomicInteger success = new AtomicInteger(0);
     private final AtomicInteger total = new AtomicInteger(0);
@@ -63,6 +73,8 @@ public class ProducerImplV2 implements Producer {
 
     private final NSQConfig config;
     private final NSQSimpleClient simpleClient;
+    //publish concurrency limiter per nsqd, null if it is not enabled
+    private final AIMDConcurrencyLimiter limiter;
     /**
      * @param config NSQConfig
      */
@@ -73,6 +85,12 @@ public class ProducerImplV2 implements Producer {
         this.poolConfig = new GenericKeyedObjectPoolConfig();
         this.factory = new KeyedPooledConnectionFactory(this.config, this);
         this.pubExec = Executors.newFixedThreadPool(this.config.getPublishWorkerPoolSize(), new NamedThreadFactory(this.getClass().getName() + "-pubExec", Thread.NORM_PRIORITY));
+        if (this.config.isPublishConcurrencyLimitEnabled()) {
+            this.limiter = new AIMDConcurrencyLimiter(this.config.getConnectionSize(), this.config.getConnectionSize(),
+                    this.config.getPublishLatencyThresholdInMillisecond(), AIMDConcurrencyLimiter.DEFAULT_BACKOFF_RATIO);
+        } else {
+            this.limiter = null;
+        }
     }
 
     public NSQConfig getConfig() {
@@ -104,34 +122,32 @@ public class ProducerImplV2 implements Producer {
     }
 
     class ExpiredTopicCleaner implements Runnable {
-        private Long expiration = 3600 * 1000L;
+        //default to topic activity retention in config
+        private Long expiration = null;
 
         public void setExpiration(long expration) {
             this.expiration = expration;
         }
 
         public long getExpiration() {
-            return this.expiration;
+            return null == this.expiration ? config.getTopicActivityRetentionInMillisecond() : this.expiration;
         }
 
         @Override
         public void run() {
-            final long allow = System.currentTimeMillis() - this.expiration;
-            final Map<String, Long> expiredTopicsMap = new HashMap<>();
-            for (Map.Entry<String, Long> pair : topic_2_lastActiveTime.entrySet()) {
-                if (pair.getValue() < allow) {
-                    expiredTopicsMap.put(pair.getKey(), pair.getValue());
-                }
-            }
+            final long allow = System.currentTimeMillis() - getExpiration();
+            final Map<String, Long> expiredTopicsMap = topicActivityHistory.getExpiredTopics(allow);
             if(expiredTopicsMap.size() > 0) {
                 try {
                     long now = System.currentTimeMillis();
                     simpleClient.removeTopics(expiredTopicsMap.keySet());
+                    if (null != affineBinder)
+                        affineBinder.unbind(expiredTopicsMap.keySet());
                     logger.info("Expired {} topic resource cleaner exits in {} milliSec.", expiredTopicsMap.size(), System.currentTimeMillis() - now);
                     logger.info("Publish. Total: {} , Success: {}.", total.get(), success.get());
                 } finally {
                     for (Map.Entry<String, Long> pair : expiredTopicsMap.entrySet()) {
-                        topic_2_lastActiveTime.remove(pair.getKey(), pair.getValue());
+                        topicActivityHistory.remove(pair.getKey(), pair.getValue());
                     }
                 }
             } else {
@@ -147,33 +163,104 @@ public class ProducerImplV2 implements Producer {
         return this.EXPIRED_TOPIC_CLEANER;
     }
 
+    /**
+     * Prewarm topics published within retention, so that next publish does not pay for partition lookup and connection
+     * creation on caller thread.
+     */
+    class TopicPrewarmer implements Runnable {
+        @Override
+        public void run() {
+            try {
+                List<String> topics = topicActivityHistory.getPrewarmTopics(System.currentTimeMillis() - config.getTopicActivityRetentionInMillisecond());
+                if (topics.size() > 0) {
+                    long now = System.currentTimeMillis();
+                    prewarm(topics, true);
+                    logger.info("Prewarm {} topics in {} milliSec.", topics.size(), System.currentTimeMillis() - now);
+                }
+                saveTopicActivityHistory();
+            } catch (Exception e) {
+                logger.error("Fail to prewarm topics.", e);
+            }
+        }
+    }
+
+    private final TopicPrewarmer TOPIC_PREWARMER = new TopicPrewarmer();
+
+    public TopicPrewarmer getTopicPrewarmer() {
+        return this.TOPIC_PREWARMER;
+    }
+
+    public TopicActivityHistory getTopicActivityHistory() {
+        return this.topicActivityHistory;
+    }
+
+    /**
+     * resolve partitions of pass in topics, and prepare connections to nsqd of partitions
+     * @param topics topics to prewarm
+     * @param skipFailedTopic {@link Boolean#TRUE} to skip topic failing to resolve partitions, otherwise exception thrown
+     * @throws NSQException exception in resolving partitions of topic
+     */
+    private void prewarm(Collection<String> topics, boolean skipFailedTopic) throws NSQException {
+        Set<Address> nsqdAddrs = new HashSet<>();
+        Object[] noSharding = new Object[]{Message.NO_SHARDING};
+        for (String topic : topics) {
+            try {
+                this.simpleClient.putTopic(topic);
+                nsqdAddrs.addAll(
+                        Arrays.asList(
+                                this.simpleClient.getPartitionNodes(new Topic(topic), noSharding, true)
+                        )
+                );
+            } catch (InterruptedException e) {
+                logger.error("error waiting for topic 2 partition info updating.");
+                Thread.currentThread().interrupt();
+                return;
+            } catch (NSQException e) {
+                if (!skipFailedTopic)
+                    throw e;
+                logger.error("fail to get partition info for {}", topic, e);
+            }
+        }
+        logger.info("total {} addresses to initialize", nsqdAddrs.size());
+        for(Address addr : nsqdAddrs)
+            try {
+                this.bigPool.preparePool(addr);
+            } catch (Exception e) {
+                logger.error("fail to initialize connection to {}", addr);
+            }
+    }
+
+    private void loadTopicActivityHistory() {
+        String path = this.config.getTopicActivityHistoryFile();
+        if (null == path) {
+            return;
+        }
+        try {
+            int cnt = this.topicActivityHistory.load(new File(path));
+            logger.info("{} topics loaded from topic activity history {}.", cnt, path);
+        } catch (IOException e) {
+            logger.warn("Fail to load topic activity history from {}.", path, e);
+        }
+    }
+
+    private void saveTopicActivityHistory() {
+        String path = this.config.getTopicActivityHistoryFile();
+        if (null == path) {
+            return;
+        }
+        try {
+            this.topicActivityHistory.save(new File(path));
+        } catch (IOException e) {
+            logger.warn("Fail to save topic activity history to {}.", path, e);
+        }
+    }
+
     @Override
     public void start(String... topics) throws NSQException {
         this.start();
         if(null != topics && topics.length > 0) {
-            Set<Address> nsqdAddrs = new HashSet<>();
-            Object[] noSharding = new Object[]{Message.NO_SHARDING};
             logger.info("start initializing connections for {}", topics);
-            for (String topic : topics) {
-                try {
-                    this.simpleClient.putTopic(topic);
-                    nsqdAddrs.addAll(
-                            Arrays.asList(
-                                    this.simpleClient.getPartitionNodes(new Topic(topic), noSharding, true)
-                            )
-                    );
-                } catch (InterruptedException e) {
-                    logger.error("error waiting for topic 2 partition info updating.");
-                    Thread.currentThread().interrupt();
-                }
-            }
-            logger.info("total {} addresses to initialize", nsqdAddrs.size());
-            for(Address addr : nsqdAddrs)
-                try {
-                    this.bigPool.preparePool(addr);
-                } catch (Exception e) {
-                    logger.error("fail to initialize connection to {}", addr);
-                }
+            prewarm(Arrays.asList(topics), false);
         }
     }
 
@@ -210,13 +297,36 @@ public class ProducerImplV2 implements Producer {
             this.poolConfig.setMaxWaitMillis(this.config.getConnWaitTimeoutForProducerInMilliSec());
             // new instance without performing to connect
             this.bigPool = new GenericKeyedObjectPool<>(this.factory, this.poolConfig);
+            //at least half of connections per nsqd are left for threads not bound
+            int affineSize = Math.min(this.config.getThreadAffineConnectionSize(), this.config.getConnectionSize() / 2);
+            if (affineSize > 0) {
+                this.affineBinder = new ThreadAffineConnectionBinder(this.bigPool, affineSize, this.poolConfig.getMinEvictableIdleTimeMillis());
+                scheduler.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            affineBinder.evictIdle();
+                        } catch (Exception e) {
+                            logger.error("Fail to evict idle bound connections.", e);
+                        }
+                    }
+                }, this.config.getProducerConnectionEvictIntervalInMillSec(), this.config.getProducerConnectionEvictIntervalInMillSec(), TimeUnit.MILLISECONDS);
+            }
             if (this.config.getUserSpecifiedLookupAddress()) {
                 LookupAddressUpdate.getInstance().setUpDefaultSeedLookupConfig(this.simpleClient.getLookupLocalID(), this.config.getLookupAddresses());
             }
             //simple client starts and LookupAddressUpdate instance initialized there.
             this.simpleClient.start();
-            if(this.config.getEnableCleanIdleTopicResourceForProducer())
-                scheduler.scheduleAtFixedRate(EXPIRED_TOPIC_CLEANER, 30, 30, TimeUnit.MINUTES);
+            if(this.config.getEnableCleanIdleTopicResourceForProducer()) {
+                long cleanInterval = Math.min(TimeUnit.MINUTES.toMillis(30), this.config.getTopicActivityRetentionInMillisecond());
+                scheduler.scheduleAtFixedRate(EXPIRED_TOPIC_CLEANER, cleanInterval, cleanInterval, TimeUnit.MILLISECONDS);
+            }
+            //prewarm topics in history after a cold start, and keep them warm
+            loadTopicActivityHistory();
+            long prewarmInterval = this.config.getTopicPrewarmIntervalInMillisecond();
+            if (prewarmInterval > 0) {
+                scheduler.scheduleWithFixedDelay(TOPIC_PREWARMER, 0, prewarmInterval, TimeUnit.MILLISECONDS);
+            }
             logger.info("The producer {} has been started.", this);
         }
     }
@@ -238,7 +348,7 @@ public class ProducerImplV2 implements Producer {
     protected NSQConnection getNSQConnection(Topic topic, Object topicShardingID, final Context cxt) throws NSQException {
         Address[] partitonAddrs;
         try {
-            partitonAddrs = simpleClient.getPartitionNodes(topic, new Object[]{topicShardingID}, true);
+            partitonAddrs = simpleClient.getPartitionNodes(topic, new Object[]{topicShardingID}, true, cxt);
         } catch (InterruptedException e) {
             logger.warn("Thread interrupted waiting for partition selector update, Topic {}. Ignore if SDK is shutting down.", topic.getTopicText());
             Thread.currentThread().interrupt();
@@ -249,13 +359,51 @@ public class ProducerImplV2 implements Producer {
         }
         final int size = partitonAddrs.length;
         int c = 0, index = (this.offset++);
+        int limited = 0, unwritable = 0;
         while (c < size) {
             // current broker | next broker when have a try again
             final int effectedIndex = (index++ & Integer.MAX_VALUE) % size;
             final Address address = partitonAddrs[effectedIndex];
+            if (null != this.limiter && !acquirePermit(address, size, cxt)) {
+                limited++;
+                c++;
+                continue;
+            }
             long borrowConnStart = System.currentTimeMillis();
+            boolean borrowed = false;
             try {
-                return bigPool.borrowObject(address);
+                NSQConnection conn = null;
+                if (null != this.affineBinder) {
+                    conn = this.affineBinder.acquire(address);
+                }
+                if (null == conn) {
+                    if (cxt.hasDeadline()) {
+                        cxt.checkDeadline("connection borrow");
+                        //borrow wait is capped by deadline
+                        conn = bigPool.borrowObject(address, cxt.capTimeout(this.poolConfig.getMaxWaitMillis()));
+                        if (cxt.getRemainingInMillisecond() <= 0) {
+                            //new connection made in borrow is bounded by connect and query timeout, not by deadline
+                            returnConnection(conn);
+                            throw new NSQDeadlineExceededException("connection borrow from " + address, cxt.getTimeoutInMillisecond());
+                        }
+                    } else {
+                        conn = bigPool.borrowObject(address);
+                    }
+                }
+                if (conn.isWritable() || (c == size - 1 && awaitWritable(conn, cxt))) {
+                    borrowed = true;
+                    return conn;
+                }
+                //skip connection with write buffer above high water mark
+                unwritable++;
+                returnConnection(conn);
+            } catch (NSQDeadlineExceededException deadlineExp) {
+                throw deadlineExp;
+            } catch (NoSuchElementException exhausted) {
+                if (cxt.hasDeadline() && cxt.getRemainingInMillisecond() <= 0) {
+                    throw new NSQDeadlineExceededException("connection borrow from " + address, cxt.getTimeoutInMillisecond());
+                }
+                logger.error("Fail to fetch connection for publish. DataNode Size: {} , CurrentRetries: {} , Address: {} , Exception:", size, c, address, exhausted);
             } catch (NSQNoConnectionException badConn){
                 logger.error("Fail to create connection. DataNode Size: {} , CurrentRetries: {} , Address: {} , Exception:", size, c, address, badConn);
                 if (c >= size) {
@@ -265,6 +413,9 @@ public class ProducerImplV2 implements Producer {
             } catch (Exception e) {
                 logger.error("Fail to fetch connection for publish. DataNode Size: {} , CurrentRetries: {} , Address: {} , Exception:", size, c, address, e);
             } finally {
+                if (!borrowed && null != this.limiter) {
+                    this.limiter.release(address);
+                }
                 long borrowConnEnd = System.currentTimeMillis() - borrowConnStart;
                 if(PERF_LOG.isDebugEnabled()) {
                     PERF_LOG.debug("{}: took {} milliSec to borrow connection from producer pool. CurrentRetries is {}", cxt.getTraceID(), borrowConnEnd, c);
@@ -272,9 +423,54 @@ public class ProducerImplV2 implements Producer {
             }
             c++;
         }
+        if (limited == size) {
+            throw new NSQConcurrencyLimitException("Publish concurrency of all " + size + " nsqd data nodes for " + topic + " reach limit.");
+        }
+        if (unwritable > 0 && unwritable + limited == size) {
+            throw new NSQUnwritableConnectionException("Write buffers of connections to all " + size + " nsqd data nodes for " + topic + " are full.");
+        }
         return null;
     }
 
+    /**
+     * wait for last candidate connection to become writable when unwritable policy is block, wait is capped by deadline.
+     */
+    private boolean awaitWritable(final NSQConnection conn, final Context cxt) {
+        if (this.config.getUnwritablePolicy() != NSQConfig.UnwritablePolicy.BLOCK) {
+            return false;
+        }
+        try {
+            return conn.awaitWritable(cxt.capTimeout(this.config.getConnWaitTimeoutForProducerInMilliSec()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * acquire publish permit from concurrency limiter, wait is divided among candidate nsqd addresses, and capped by
+     * deadline.
+     */
+    private boolean acquirePermit(final Address address, int candidates, final Context cxt) {
+        long wait = cxt.capTimeout(this.config.getConnWaitTimeoutForProducerInMilliSec() / candidates);
+        try {
+            return this.limiter.tryAcquire(address, wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void releasePermit(final NSQConnection conn, boolean sampled, boolean dropped, long latencyInMillisecond) {
+        if (null == this.limiter || null == conn) {
+            return;
+        }
+        if (sampled)
+            this.limiter.release(conn.getAddress(), latencyInMillisecond, dropped);
+        else
+            this.limiter.release(conn.getAddress());
+    }
+
     public void publish(String message, String topic) throws NSQException {
         publish(message.getBytes(IOUtil.DEFAULT_CHARSET), topic);
     }
@@ -300,30 +496,54 @@ public class ProducerImplV2 implements Producer {
 
     @Override
     public MessageReceipt publishAndGetReceipt(final Message message) throws NSQException {
+        return publishAndGetReceipt(message, new Context());
+    }
+
+    @Override
+    public MessageReceipt publishAndGetReceipt(final Message message, long timeout, TimeUnit unit) throws NSQException {
         final Context cxt = new Context();
+        cxt.setDeadline(timeout, unit);
+        return publishAndGetReceipt(message, cxt);
+    }
+
+    private MessageReceipt publishAndGetReceipt(final Message message, final Context cxt) throws NSQException {
         if(PERF_LOG.isDebugEnabled()) {
             cxt.setTraceID(pubTraceIdGen.getAndIncrement());
         }
-        if (message == null || message.getMessageBody().isEmpty()) {
+        if (message == null) {
             throw new IllegalArgumentException("Your input message is blank! Please check it!");
         }
-        Topic topic = message.getTopic();
-        if (null == topic || null == topic.getTopicText() || topic.getTopicText().isEmpty()) {
-            throw new IllegalArgumentException("Your input topic name is blank!");
-        }
-        if (!started.get() || closing.get()) {
-            throw new IllegalStateException("Producer must be started before producing messages!");
-        }
-        total.incrementAndGet();
-
         try{
+            if (message.getMessageBodyLength() == 0) {
+                throw new IllegalArgumentException("Your input message is blank! Please check it!");
+            }
+            Topic topic = message.getTopic();
+            if (null == topic || null == topic.getTopicText() || topic.getTopicText().isEmpty()) {
+                throw new IllegalArgumentException("Your input topic name is blank!");
+            }
+            if (!started.get() || closing.get()) {
+                throw new IllegalStateException("Producer must be started before producing messages!");
+            }
+            total.incrementAndGet();
+
             //TODO: poll before timeout
-            return sendPUB(message, cxt);
+            Message toSend = offloadIfNeeded(message);
+            try {
+                return sendPUB(toSend, cxt);
+            } catch (NSQException | RuntimeException e) {
+                if (toSend != message) {
+                    deleteOffloaded(toSend.getMessageBodyInByte());
+                }
+                throw e;
+            }
         }catch (NSQPubException pubE){
             logger.error(pubE.getLocalizedMessage());
             pubE.punchExceptions(logger);
             List<? extends NSQException> exceptions = pubE.getNestedExceptions();
             throw exceptions.get(exceptions.size() - 1);
+        }finally {
+            //PUB written retains its own reference on message body until it is encoded, it is safe to release here
+            message.release();
         }
     }
 
@@ -354,6 +574,12 @@ public class ProducerImplV2 implements Producer {
         publish(msg);
     }
 
+    @Override
+    public <T> void publish(T obj, Topic topic, Serializer<? super T> serializer) throws NSQException {
+        Message msg = Message.create(topic, obj, serializer);
+        publish(msg);
+    }
+
     private class MpubCallable implements Callable<List> {
         private final Producer producer;
         private final List<byte[]> msgs;
@@ -453,9 +679,10 @@ public class ProducerImplV2 implements Producer {
         long start = System.currentTimeMillis();
         int retry = this.config.getPublishRetry();
         while (c++ < retry) {
+            cxt.checkDeadline("publish retry " + c);
             returnCon = true;
             //while put topic, topic expiration is not allowed
-            topic_2_lastActiveTime.put(msg.getTopic().getTopicText(), start);
+            topicActivityHistory.record(msg.getTopic().getTopicText(), start);
             this.simpleClient.putTopic(msg.getTopic().getTopicText());
             try {
                 //performance logging
@@ -473,7 +700,7 @@ public class ProducerImplV2 implements Producer {
                 //update msg partition with connection address partition
                 msg.getTopic().setPartitionID(conn.getAddress().getPartition());
             }
-            catch (NSQTopicNotFoundException | NSQLookupAddressNotFoundException | NSQSeedLookupConfigNotFoundException exp) {
+            catch (NSQTopicNotFoundException | NSQLookupAddressNotFoundException | NSQSeedLookupConfigNotFoundException | NSQDeadlineExceededException | NSQUnwritableConnectionException exp) {
                 //throw it directly
                 throw exp;
             }
@@ -487,6 +714,9 @@ public class ProducerImplV2 implements Producer {
                 exceptions.add(nsqe);
                 continue;
             }
+            //publish result sampled for concurrency limiter
+            final long pubStart = System.currentTimeMillis();
+            boolean sampled = false, dropped = false;
             //create PUB command
             try {
                 String host = conn.getAddress().getHost();
@@ -509,7 +739,8 @@ public class ProducerImplV2 implements Producer {
                     PERF_LOG.debug("{}: took {} milliSec to send msg to and hear response from nsqd.", cxt.getTraceID(), pubAndWaitEnd);
                 }
 
-                handleResponse(msg.getTopic(), frame, conn);
+                handleResponse(msg.getTopic(), frame, conn, cxt);
+                sampled = true;
                 //when hit this line what we have are response frame
                 success.addAndGet(msg.getMessageCount());
                 if(msg.isTraced() && frame instanceof ResponseFrame && conn.getAddress().isHA()) {
@@ -531,6 +762,16 @@ public class ProducerImplV2 implements Producer {
             }
             catch (Exception e) {
                 returnCon = false;
+                if (e instanceof NSQPubFailedException || e instanceof TimeoutException) {
+                    //pushback from nsqd
+                    sampled = true;
+                    dropped = true;
+                }
+                if (e instanceof TimeoutException && cxt.getRemainingInMillisecond() <= 0) {
+                    //response may arrive later, connection is not reusable
+                    invalidConnection(conn);
+                    throw new NSQDeadlineExceededException("publish to " + conn.getAddress(), cxt.getTimeoutInMillisecond());
+                }
                 logger.info("Try invalidating partition selectors for {}, due to exception {}.", msg.getTopic(), e.getMessage());
                 this.simpleClient.invalidatePartitionsSelector(msg.getTopic().getTopicText());
                 invalidConnection(conn);
@@ -558,6 +799,7 @@ public class ProducerImplV2 implements Producer {
                     throw new NSQPubException(exceptions);
                 }
             } finally {
+                releasePermit(conn, sampled, dropped, System.currentTimeMillis() - pubStart);
                 if(returnCon) {
                     long returnConnStart = System.currentTimeMillis();
                     returnConnection(conn);
@@ -573,8 +815,41 @@ public class ProducerImplV2 implements Producer {
         throw new NSQPubException(exceptions);
     }
 
+    /**
+     * store message body in claim check blob store if it exceeds threshold
+     */
+    private Message offloadIfNeeded(final Message msg) throws NSQException {
+        BlobStore store = this.config.getClaimCheckBlobStore();
+        if (null == store) {
+            return msg;
+        }
+        try {
+            return ClaimCheck.offload(msg, store, this.config.getClaimCheckThresholdInByte());
+        } catch (IOException e) {
+            throw new NSQException("Fail to store message body to claim check blob store " + store, e);
+        }
+    }
+
+    /**
+     * delete blob of message body stored in claim check blob store, as message fails to be published and no consumer
+     * resolves it
+     */
+    private void deleteOffloaded(final byte[] claimCheck) {
+        BlobStore store = this.config.getClaimCheckBlobStore();
+        String reference = ClaimCheck.getReference(claimCheck);
+        try {
+            store.delete(reference);
+        } catch (IOException e) {
+            logger.warn("Fail to delete claim check blob {} of message failed to publish from {}.", reference, store, e);
+        }
+    }
+
     private void invalidConnection(final NSQConnection conn) {
         if(null != conn) {
+            if (null != this.affineBinder && this.affineBinder.invalidate(conn)) {
+                logger.info("Bound connection to {} invalidated.", conn.getAddress());
+                return;
+            }
             Address addr = conn.getAddress();
             try {
                 this.bigPool.invalidateObject(addr, conn);
@@ -586,6 +861,9 @@ public class ProducerImplV2 implements Producer {
     }
 
     private void returnConnection(final NSQConnection conn) {
+        if (null != this.affineBinder && this.affineBinder.release(conn)) {
+            return;
+        }
         this.bigPool.returnObject(conn.getAddress(), conn);
     }
 
@@ -597,7 +875,7 @@ public class ProducerImplV2 implements Producer {
        return PubCmdFactory.getInstance(!this.config.getUserSpecifiedLookupAddress()).create(msg, this.config);
     }
 
-    private void handleResponse(final Topic topic, NSQFrame frame, NSQConnection conn) throws NSQException {
+    private void handleResponse(final Topic topic, NSQFrame frame, NSQConnection conn, final Context cxt) throws NSQException {
         if (frame == null) {
             logger.warn("the nsq frame is null.");
             return;
@@ -628,7 +906,7 @@ public class ProducerImplV2 implements Producer {
                         this.simpleClient.invalidatePartitionsSelector(topic.getTopicText());
                         //backoff for nsqd consensus, if there is one
                         try {
-                            Thread.sleep(NSQ_LEADER_NOT_READY_TIMEOUT);
+                            Thread.sleep(cxt.capTimeout(NSQ_LEADER_NOT_READY_TIMEOUT));
                         } catch (InterruptedException e) {
                             logger.error("Publish process interrupted waiting for nsqd consensus.");
                             Thread.currentThread().interrupt();
@@ -716,8 +994,26 @@ public class ProducerImplV2 implements Producer {
 
         try{
             //TODO: poll before timeout
-            Message msgWrapper = Message.create(topic, messages);
-            sendPUB(msgWrapper, cxt);
+            List<byte[]> toSend = messages;
+            BlobStore store = this.config.getClaimCheckBlobStore();
+            if (null != store) {
+                try {
+                    toSend = ClaimCheck.offload(topic.getTopicText(), messages, store, this.config.getClaimCheckThresholdInByte());
+                } catch (IOException e) {
+                    throw new NSQException("Fail to store message bodies to claim check blob store " + store, e);
+                }
+            }
+            Message msgWrapper = Message.create(topic, toSend);
+            try {
+                sendPUB(msgWrapper, cxt);
+            } catch (NSQException | RuntimeException e) {
+                for (int i = 0; i < toSend.size(); i++) {
+                    if (toSend.get(i) != messages.get(i)) {
+                        deleteOffloaded(toSend.get(i));
+                    }
+                }
+                throw e;
+            }
         }catch (NSQPubException pubE){
             logger.error(pubE.getLocalizedMessage());
             pubE.punchExceptions(logger);
@@ -727,7 +1023,7 @@ public class ProducerImplV2 implements Producer {
     }
 
     @Override
-    public boolean validateHeartbeat(NSQConnection conn) {
+    public ChannelFuture validateHeartbeat(NSQConnection conn) {
         return simpleClient.validateHeartbeat(conn);
     }
 
@@ -741,13 +1037,18 @@ public class ProducerImplV2 implements Producer {
         if(this.started.get() && this.closing.compareAndSet(Boolean.FALSE, Boolean.TRUE)) {
             LookupAddressUpdate.getInstance().removeDefaultSeedLookupConfig(this.simpleClient.getLookupLocalID());
             IOUtil.closeQuietly(simpleClient);
-            if (factory != null) {
-                factory.close();
+            if (affineBinder != null) {
+                affineBinder.close();
             }
             if (bigPool != null) {
                 bigPool.close();
             }
+            //release event loop group after connections closed
+            if (factory != null) {
+                factory.close();
+            }
             scheduler.shutdownNow();
+            saveTopicActivityHistory();
             logger.info("The producer has been closed.");
             LookupAddressUpdate.getInstance().closed();
         }
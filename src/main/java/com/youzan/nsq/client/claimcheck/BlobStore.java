@@ -0,0 +1,40 @@
+package com.youzan.nsq.client.claimcheck;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+
+/**
+ * Blob store for claim check of oversized message bodies. Producer stores message body larger than threshold in blob
+ * store and publishes reference returned by {@link BlobStore#put(String, ByteBuf)} instead, consumer resolves message
+ * body from blob store with that reference.
+ * Retention of blobs is up to implementation, as message may be consumed by more than one channel, SDK does not
+ * delete blob after message is consumed. Producer deletes blob with {@link BlobStore#delete(String)} when message
+ * fails to be published, including publish timeout and exceeded deadline, so blobs of failed publish are not left.
+ */
+public interface BlobStore {
+
+    /**
+     * Store readable bytes of pass in buffer. Reader index of buffer is not modified.
+     * @param topic topic message body publishes to
+     * @param body message body
+     * @return reference to stored blob
+     * @throws IOException exception in storing blob
+     */
+    String put(String topic, ByteBuf body) throws IOException;
+
+    /**
+     * Read blob with pass in reference.
+     * @param reference reference to stored blob
+     * @return blob content
+     * @throws IOException exception in reading blob, or blob does not exist.
+     */
+    byte[] get(String reference) throws IOException;
+
+    /**
+     * Delete blob with pass in reference.
+     * @param reference reference to stored blob
+     * @throws IOException exception in deleting blob
+     */
+    void delete(String reference) throws IOException;
+}
@@ -0,0 +1,112 @@
+package com.youzan.nsq.client.claimcheck;
+
+import com.youzan.nsq.client.entity.Message;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Claim check for oversized message bodies. Message body larger than threshold is stored in {@link BlobStore}, and
+ * message published to nsqd carries reference to stored blob, in format:
+ * <pre>
+ *     ##nsq_claim_check:[reference]
+ * </pre>
+ */
+public final class ClaimCheck {
+    public static final String CLAIM_CHECK_PREFIX = "##nsq_claim_check:";
+    private static final byte[] CLAIM_CHECK_PREFIX_BYTES = CLAIM_CHECK_PREFIX.getBytes(StandardCharsets.UTF_8);
+
+    private ClaimCheck() {
+    }
+
+    /**
+     * @param body message body
+     * @return {@link Boolean#TRUE} if pass in message body is a claim check reference.
+     */
+    public static boolean isClaimCheck(final byte[] body) {
+        if (null == body || body.length <= CLAIM_CHECK_PREFIX_BYTES.length) {
+            return false;
+        }
+        for (int i = 0; i < CLAIM_CHECK_PREFIX_BYTES.length; i++) {
+            if (body[i] != CLAIM_CHECK_PREFIX_BYTES[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param body message body which is a claim check reference
+     * @return reference to blob
+     */
+    public static String getReference(final byte[] body) {
+        if (!isClaimCheck(body)) {
+            throw new IllegalArgumentException("Pass in message body is not a claim check.");
+        }
+        return new String(body, CLAIM_CHECK_PREFIX_BYTES.length, body.length - CLAIM_CHECK_PREFIX_BYTES.length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Store message body in blob store if its length is larger than threshold.
+     * @param msg message to publish
+     * @param store blob store
+     * @param threshold message body length threshold in byte
+     * @return message with claim check reference as body, or pass in message if its body is not larger than threshold.
+     * @throws IOException exception in storing message body
+     */
+    public static Message offload(final Message msg, final BlobStore store, int threshold) throws IOException {
+        if (msg.getMessageBodyLength() <= threshold) {
+            return msg;
+        }
+        ByteBuf body = msg.hasMessageBodyBuf() ? msg.getMessageBodyBuf() : Unpooled.wrappedBuffer(msg.getMessageBodyInByte());
+        String reference = store.put(msg.getTopic().getTopicText(), body);
+        return msg.copyWithMessageBody(toClaimCheck(reference));
+    }
+
+    /**
+     * Store message bodies larger than threshold in blob store, for multi publish.
+     * @param topic topic messages publish to
+     * @param bodies message bodies
+     * @param store blob store
+     * @param threshold message body length threshold in byte
+     * @return message bodies with oversized ones replaced by claim check reference
+     * @throws IOException exception in storing message body
+     */
+    public static List<byte[]> offload(final String topic, final List<byte[]> bodies, final BlobStore store, int threshold) throws IOException {
+        List<byte[]> offloaded = null;
+        for (int i = 0; i < bodies.size(); i++) {
+            byte[] body = bodies.get(i);
+            if (body.length > threshold) {
+                if (null == offloaded)
+                    offloaded = new ArrayList<>(bodies);
+                offloaded.set(i, toClaimCheck(store.put(topic, Unpooled.wrappedBuffer(body))));
+            }
+        }
+        return null == offloaded ? bodies : offloaded;
+    }
+
+    /**
+     * Resolve message body from blob store, if pass in message body is a claim check reference.
+     * @param body message body
+     * @param store blob store
+     * @return message body in blob store, or pass in message body if it is not a claim check reference
+     * @throws IOException exception in reading blob
+     */
+    public static byte[] resolve(final byte[] body, final BlobStore store) throws IOException {
+        if (!isClaimCheck(body)) {
+            return body;
+        }
+        return store.get(getReference(body));
+    }
+
+    private static byte[] toClaimCheck(String reference) {
+        byte[] ref = reference.getBytes(StandardCharsets.UTF_8);
+        byte[] claimCheck = new byte[CLAIM_CHECK_PREFIX_BYTES.length + ref.length];
+        System.arraycopy(CLAIM_CHECK_PREFIX_BYTES, 0, claimCheck, 0, CLAIM_CHECK_PREFIX_BYTES.length);
+        System.arraycopy(ref, 0, claimCheck, CLAIM_CHECK_PREFIX_BYTES.length, ref.length);
+        return claimCheck;
+    }
+}
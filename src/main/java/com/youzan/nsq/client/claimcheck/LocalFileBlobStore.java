@@ -0,0 +1,75 @@
+package com.youzan.nsq.client.claimcheck;
+
+import io.netty.buffer.ByteBuf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * Blob store on local file system, one file per blob under base directory. It works for producer and consumer on the
+ * same host, or on a shared file system, mainly for test purpose.
+ */
+public class LocalFileBlobStore implements BlobStore {
+    private static final Logger logger = LoggerFactory.getLogger(LocalFileBlobStore.class);
+
+    private final Path baseDir;
+
+    public LocalFileBlobStore(final File baseDir) throws IOException {
+        if (null == baseDir) {
+            throw new IllegalArgumentException("Base directory for blob store is null.");
+        }
+        this.baseDir = Files.createDirectories(baseDir.toPath()).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public String put(String topic, ByteBuf body) throws IOException {
+        String reference = topic + "-" + UUID.randomUUID().toString();
+        Path tmp = baseDir.resolve(reference + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            int idx = body.readerIndex();
+            int len = body.readableBytes();
+            long pos = 0;
+            while (pos < len) {
+                pos += body.getBytes(idx + (int) pos, channel, pos, len - (int) pos);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        //blob becomes visible once it is completely written
+        Files.move(tmp, resolve(reference));
+        return reference;
+    }
+
+    @Override
+    public byte[] get(String reference) throws IOException {
+        return Files.readAllBytes(resolve(reference));
+    }
+
+    @Override
+    public void delete(String reference) throws IOException {
+        if (!Files.deleteIfExists(resolve(reference))) {
+            logger.warn("Blob {} to delete does not exist.", reference);
+        }
+    }
+
+    private Path resolve(String reference) throws IOException {
+        Path blob = baseDir.resolve(reference).normalize();
+        if (!baseDir.equals(blob.getParent())) {
+            throw new IOException("Invalid blob reference " + reference);
+        }
+        return blob;
+    }
+
+    @Override
+    public String toString() {
+        return "LocalFileBlobStore{" + "baseDir=" + baseDir + '}';
+    }
+}
@@ -6,6 +6,7 @@ package com.youzan.nsq.client.core;
 import com.youzan.nsq.client.entity.Address;
 import com.youzan.nsq.client.exception.NSQException;
 import com.youzan.nsq.client.network.frame.NSQFrame;
+import io.netty.channel.ChannelFuture;
 import io.netty.util.AttributeKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,7 +53,14 @@ public interface Client extends Closeable {
      */
     void backoff(final NSQConnection conn);
 
-    boolean validateHeartbeat(final NSQConnection conn);
+    /**
+     * Send heartbeat to validate connection. It is called on event loop of connection, so it should not wait for the
+     * heartbeat to be sent.
+     *
+     * @param conn NSQConnection
+     * @return future of heartbeat sent, null if connection is invalid
+     */
+    ChannelFuture validateHeartbeat(final NSQConnection conn);
 
     Set<NSQConnection> clearDataNode(Address address);
 
@@ -7,10 +7,12 @@ import com.youzan.nsq.client.network.frame.ErrorFrame;
 import com.youzan.nsq.client.network.frame.NSQFrame;
 import com.youzan.nsq.client.network.frame.ResponseFrame;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.EventLoop;
 import io.netty.util.AttributeKey;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 
@@ -33,12 +35,39 @@ public interface NSQConnection extends Closeable {
 
     boolean isConnected();
 
+    /**
+     * @return {@link Boolean#TRUE} if bytes pending in outbound buffer of connection are below write buffer high water
+     * mark
+     */
+    boolean isWritable();
+
+    /**
+     * Wait for connection to become writable.
+     *
+     * @param timeoutInMillisecond max time to wait
+     * @return {@link Boolean#TRUE} if connection is writable
+     * @throws InterruptedException if interrupted in waiting
+     */
+    boolean awaitWritable(long timeoutInMillisecond) throws InterruptedException;
+
+    /**
+     * Wake up threads waiting for connection to become writable, invoked on writability change of channel.
+     */
+    void onWritabilityChanged();
+
     long getId();
 
     int getExpectedRdy();
 
     void setExpectedRdy(int expectedRdy);
 
+    /**
+     * Set expected rdy apportioned by consumer, which changes every round of redistribution. Changes of expected rdy,
+     * and of rdy sent after it, are logged at debug until {@link #setExpectedRdy(int)} is invoked.
+     * @param expectedRdy expected rdy apportioned to connection
+     */
+    void apportionExpectedRdy(int expectedRdy);
+
     int getCurrentRdyCount();
 
     void setCurrentRdyCount(int newRdyCnt);
@@ -81,6 +110,19 @@ public interface NSQConnection extends Closeable {
 
     ChannelFuture command(final NSQCommand command);
 
+    /**
+     * Write commands in bulk, which are flushed once on event loop of connection.
+     *
+     * @param commands commands to write
+     * @return futures of commands, in order of pass in commands
+     */
+    List<ChannelFuture> command(final List<? extends NSQCommand> commands);
+
+    /**
+     * @return event loop of underlying channel
+     */
+    EventLoop eventLoop();
+
     void addResponseFrame(ResponseFrame frame);
 
     void addErrorFrame(ErrorFrame frame);
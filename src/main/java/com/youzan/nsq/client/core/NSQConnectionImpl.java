@@ -7,15 +7,21 @@ import com.youzan.nsq.client.exception.NSQNoConnectionException;
 import com.youzan.nsq.client.network.frame.ErrorFrame;
 import com.youzan.nsq.client.network.frame.NSQFrame;
 import com.youzan.nsq.client.network.frame.ResponseFrame;
+import com.youzan.nsq.client.network.netty.NSQFlushCoalescingHandler;
 import com.youzan.util.SystemUtil;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.EventLoop;
+import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -37,6 +43,7 @@ public class NSQConnectionImpl implements Serializable, NSQConnection, Comparabl
     private static final long serialVersionUID = 7139923487863469738L;
 
     private final ReentrantReadWriteLock conLock = new ReentrantReadWriteLock();
+    private final Object writableLock = new Object();
     private final Long id; // primary key
     private final long queryTimeoutInMillisecond;
 
@@ -61,6 +68,8 @@ public class NSQConnectionImpl implements Serializable, NSQConnection, Comparabl
     private AtomicInteger currentRdy = new AtomicInteger(0);
     private AtomicInteger lastRdy = new AtomicInteger(0);
     private AtomicInteger expectedRdy = new AtomicInteger(0);
+    //expected rdy is apportioned by consumer every round, rdy changes are logged at debug
+    private volatile boolean rdyApportioned = false;
 
     private final AtomicLong latestInternalID = new AtomicLong(-1L);
     private final AtomicLong latestDiskQueueOffset = new AtomicLong(-1L);
@@ -173,22 +182,71 @@ public class NSQConnectionImpl implements Serializable, NSQConnection, Comparabl
         if (cmd == null) {
             return null;
         }
+        //reference counted command is retained on writing thread, and released by encoder on event loop
+        ReferenceCountUtil.retain(cmd);
 
+        if (NSQFlushCoalescingHandler.isCoalescable(cmd) && this.config.getCommandFlushBatchSize() > 1) {
+            //flushed in bursts by flush coalescing handler in pipeline
+            if (channel.eventLoop().inEventLoop()) {
+                return channel.write(cmd);
+            }
+            //write without flush from other thread does not wake up event loop, submit it as task instead
+            final ChannelPromise promise = channel.newPromise();
+            channel.eventLoop().execute(new Runnable() {
+                @Override
+                public void run() {
+                    channel.write(cmd, promise);
+                }
+            });
+            return promise;
+        }
         // Use Netty Pipeline
         return channel.writeAndFlush(cmd);
     }
 
+    @Override
+    public List<ChannelFuture> command(final List<? extends NSQCommand> commands) {
+        final List<ChannelFuture> futures = new ArrayList<>(commands.size());
+        for (int i = 0; i < commands.size(); i++) {
+            futures.add(channel.newPromise());
+            ReferenceCountUtil.retain(commands.get(i));
+        }
+        Runnable write = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < commands.size(); i++) {
+                    channel.write(commands.get(i), (ChannelPromise) futures.get(i));
+                }
+                channel.flush();
+            }
+        };
+        if (channel.eventLoop().inEventLoop()) {
+            write.run();
+        } else {
+            channel.eventLoop().execute(write);
+        }
+        return futures;
+    }
+
+    @Override
+    public EventLoop eventLoop() {
+        return channel.eventLoop();
+    }
+
     private NSQFrame _commandAndGetResposne(final Context cxt, final NSQCommand command) throws TimeoutException, InterruptedException, ExecutionException {
-        if (!requests.offer(command, queryTimeoutInMillisecond, TimeUnit.MILLISECONDS)) {
+        //query timeout is capped by deadline in context
+        long timeout = null != cxt ? cxt.capTimeout(queryTimeoutInMillisecond) : queryTimeoutInMillisecond;
+        if (!requests.offer(command, timeout, TimeUnit.MILLISECONDS)) {
             throw new TimeoutException(
-                    "The command timeout in " + queryTimeoutInMillisecond + " milliSec. The command name is : " + command.getClass().getName());
+                    "The command timeout in " + timeout + " milliSec. The command name is : " + command.getClass().getName());
         }
         responses.clear(); // clear
         command(command);
-        final NSQFrame frame = responses.poll(queryTimeoutInMillisecond, TimeUnit.MILLISECONDS);
+        timeout = null != cxt ? cxt.capTimeout(queryTimeoutInMillisecond) : queryTimeoutInMillisecond;
+        final NSQFrame frame = responses.poll(timeout, TimeUnit.MILLISECONDS);
         if (frame == null) {
             throw new TimeoutException(
-                    "The command timeout receiving response frame in " + queryTimeoutInMillisecond + " milliSec. The command name is : " + command.getClass().getName());
+                    "The command timeout receiving response frame in " + timeout + " milliSec. The command name is : " + command.getClass().getName());
         }
         requests.poll(); // clear
         return frame;
@@ -254,6 +312,33 @@ public class NSQConnectionImpl implements Serializable, NSQConnection, Comparabl
         return !closing.get() && channel.isActive();
     }
 
+    @Override
+    public boolean isWritable() {
+        return channel.isWritable();
+    }
+
+    @Override
+    public boolean awaitWritable(long timeoutInMillisecond) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMillisecond);
+        synchronized (writableLock) {
+            while (!channel.isWritable() && _isConnected()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                TimeUnit.NANOSECONDS.timedWait(writableLock, remaining);
+            }
+        }
+        return channel.isWritable();
+    }
+
+    @Override
+    public void onWritabilityChanged() {
+        synchronized (writableLock) {
+            writableLock.notifyAll();
+        }
+    }
+
     @Override
     public boolean isIdentitySent() {
         return _isConnected() && identitySent.get();
@@ -471,6 +556,10 @@ public class NSQConnectionImpl implements Serializable, NSQConnection, Comparabl
     }
 
     public boolean increaseExpectedRdy(int rdyCeiling) {
+        //no more messages for connection which could not flush acknowledgements
+        if (!channel.isWritable()) {
+            return false;
+        }
         int currentExpRdy = this.expectedRdy.get();
         int newExpRdy = this.config.getExpectedRdyUpdatePolicy().expectedRdyIncrease(currentExpRdy,
                 rdyCeiling);
@@ -482,11 +571,20 @@ public class NSQConnectionImpl implements Serializable, NSQConnection, Comparabl
     }
 
     public void setExpectedRdy(int expectedRdy) {
+        this.rdyApportioned = false;
         int originalExpectedRdy = this.expectedRdy.get();
         if (originalExpectedRdy != expectedRdy && this.expectedRdy.compareAndSet(originalExpectedRdy, expectedRdy))
             logger.info("Expected rdy set to {} from {}, connection: {}", expectedRdy, originalExpectedRdy, this);
     }
 
+    @Override
+    public void apportionExpectedRdy(int expectedRdy) {
+        this.rdyApportioned = true;
+        int originalExpectedRdy = this.expectedRdy.getAndSet(expectedRdy);
+        if (originalExpectedRdy != expectedRdy && logger.isDebugEnabled())
+            logger.debug("Expected rdy apportioned to {} from {}, connection: {}", expectedRdy, originalExpectedRdy, this);
+    }
+
     public int getCurrentRdyCount() {
         return this.currentRdy.get();
     }
@@ -614,7 +712,10 @@ public class NSQConnectionImpl implements Serializable, NSQConnection, Comparabl
                         if (channelFuture.isSuccess()) {
                             int lastRdy = getCurrentRdyCount();
                             setCurrentRdyCount(newRdy);
-                            logger.info("{}: rdy adjust from {} to {}", getAddress(), lastRdy, newRdy);
+                            if (!rdyApportioned)
+                                logger.info("{}: rdy adjust from {} to {}", getAddress(), lastRdy, newRdy);
+                            else if (logger.isDebugEnabled())
+                                logger.debug("{}: rdy adjust from {} to {}", getAddress(), lastRdy, newRdy);
                         }
                     }
                 });
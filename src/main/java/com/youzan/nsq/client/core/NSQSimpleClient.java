@@ -282,6 +282,22 @@ public class NSQSimpleClient implements Client, Closeable {
      * @throws NSQException exception raised in get nsqd node from lookup or nsqd partition node not found
      */
     public Address[] getPartitionNodes(Topic topic, Object[] topicShardingIDs, boolean write) throws NSQException, InterruptedException {
+        return getPartitionNodes(topic, topicShardingIDs, write, null);
+    }
+
+    /**
+     * function try fetching nsqd tcp addresses for pass in topic, sharding ID, and if it is writing. Wait for partition
+     * selector update is bounded by deadline in pass in context. Lookup itself is bounded by http connect and read
+     * timeout of lookupd, not by deadline; deadline is checked before lookup starts and after it returns.
+     * @param topic             topic
+     * @param topicShardingIDs  shartdingID, default value is {@link Message#NO_SHARDING}
+     * @param write             write access control, {@link Boolean#TRUE} for write and otherwise read.
+     * @param cxt               context with deadline, nullable
+     * @return array of nsqd nodes associated with passin topic
+     * @throws NSQException exception raised in get nsqd node from lookup or nsqd partition node not found,
+     * {@link com.youzan.nsq.client.exception.NSQDeadlineExceededException} if deadline in context expires.
+     */
+    public Address[] getPartitionNodes(Topic topic, Object[] topicShardingIDs, boolean write, final Context cxt) throws NSQException, InterruptedException {
         IPartitionsSelector aPs;
         List<Address> nodes = new ArrayList<>();
 
@@ -340,7 +356,13 @@ public class NSQSimpleClient implements Client, Closeable {
                     }
 
                     if (!ts.tryLock()) {
-                        Thread.sleep(TOPIC_PARTITION_TIMEOUT);
+                        if (null != cxt) {
+                            cxt.checkDeadline("partition selector update");
+                            Thread.sleep(cxt.capTimeout(TOPIC_PARTITION_TIMEOUT));
+                            cxt.checkDeadline("partition selector update");
+                        } else {
+                            Thread.sleep(TOPIC_PARTITION_TIMEOUT);
+                        }
                         logger.info("Try again for partition selector for topic {}", topic.getTopicText());
                         //partition selector is being updating, try again from top
                         continue;
@@ -351,9 +373,14 @@ public class NSQSimpleClient implements Client, Closeable {
                         aPs = topic_2_partitionsSelector.get(topic.getTopicText());
                         if (null != aPs)
                             continue;
+                        if (null != cxt)
+                            cxt.checkDeadline("partition lookup");
                         aPs = lookup.lookup(topic.getTopicText(), this.useLocalLookupd, true);
                         if (null != aPs) {
                             topic_2_partitionsSelector.put(topic.getTopicText(), aPs);
+                            //selector is kept for following calls even if deadline expires in lookup
+                            if (null != cxt)
+                                cxt.checkDeadline("partition lookup");
                             for (Partitions aPartitions : aPs.dumpAllPartitions()) {
                                 //for partitions
                                 if (aPartitions.hasPartitionDataNodes() && topicShardingIDs[0] != Message.NO_SHARDING) {
@@ -429,9 +456,8 @@ public class NSQSimpleClient implements Client, Closeable {
     }
 
     @Override
-    public boolean validateHeartbeat(NSQConnection conn) {
-        final ChannelFuture future = conn.command(Nop.getInstance());
-        return null != future && future.awaitUninterruptibly(2000, TimeUnit.MILLISECONDS) ? future.isSuccess() : false;
+    public ChannelFuture validateHeartbeat(NSQConnection conn) {
+        return conn.command(Nop.getInstance());
     }
 
     @Override
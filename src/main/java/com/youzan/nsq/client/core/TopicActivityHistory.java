@@ -0,0 +1,182 @@
+package com.youzan.nsq.client.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publish activity history per topic, for producer to expire idle topic resources and prewarm topics likely to be
+ * published soon. History could be saved to and loaded from file, so that producer prewarms after a cold start.
+ */
+public class TopicActivityHistory {
+    private static final Logger logger = LoggerFactory.getLogger(TopicActivityHistory.class);
+    private static final String SEPARATOR = "\t";
+
+    private final ConcurrentHashMap<String, Activity> topic_2_activity = new ConcurrentHashMap<>();
+
+    static class Activity {
+        private volatile long lastActiveTime;
+        private final AtomicLong publishCount;
+
+        Activity(long lastActiveTime, long publishCount) {
+            this.lastActiveTime = lastActiveTime;
+            this.publishCount = new AtomicLong(publishCount);
+        }
+    }
+
+    /**
+     * record publish activity of pass in topic
+     * @param topic topic name
+     * @param activeTime time of publish, in milliseconds
+     */
+    public void record(String topic, long activeTime) {
+        Activity activity = topic_2_activity.get(topic);
+        if (null == activity) {
+            Activity newActivity = new Activity(activeTime, 0L);
+            activity = topic_2_activity.putIfAbsent(topic, newActivity);
+            if (null == activity)
+                activity = newActivity;
+        }
+        activity.lastActiveTime = Math.max(activity.lastActiveTime, activeTime);
+        activity.publishCount.incrementAndGet();
+    }
+
+    /**
+     * @param topic topic name
+     * @return last active time of pass in topic, -1 if topic is not found in history
+     */
+    public long getLastActiveTime(String topic) {
+        Activity activity = topic_2_activity.get(topic);
+        return null == activity ? -1L : activity.lastActiveTime;
+    }
+
+    /**
+     * @param topic topic name
+     * @return publish count of pass in topic recorded in history
+     */
+    public long getPublishCount(String topic) {
+        Activity activity = topic_2_activity.get(topic);
+        return null == activity ? 0L : activity.publishCount.get();
+    }
+
+    /**
+     * @param allow time in milliseconds, topics last active before which are expired
+     * @return expired topics, mapping to last active time
+     */
+    public Map<String, Long> getExpiredTopics(long allow) {
+        Map<String, Long> expired = new HashMap<>();
+        for (Map.Entry<String, Activity> pair : topic_2_activity.entrySet()) {
+            long lastActiveTime = pair.getValue().lastActiveTime;
+            if (lastActiveTime < allow) {
+                expired.put(pair.getKey(), lastActiveTime);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * remove topic from history, if topic is not active after pass in last active time
+     * @param topic topic name
+     * @param lastActiveTime last active time when topic is regarded as expired
+     * @return {@link Boolean#TRUE} if topic removed
+     */
+    public boolean remove(String topic, long lastActiveTime) {
+        Activity activity = topic_2_activity.get(topic);
+        return null != activity && activity.lastActiveTime == lastActiveTime && topic_2_activity.remove(topic, activity);
+    }
+
+    /**
+     * @param since time in milliseconds
+     * @return topics active since pass in time, ordered by publish count in descending order
+     */
+    public List<String> getPrewarmTopics(long since) {
+        final Map<String, Long> counts = new HashMap<>();
+        for (Map.Entry<String, Activity> pair : topic_2_activity.entrySet()) {
+            if (pair.getValue().lastActiveTime >= since) {
+                counts.put(pair.getKey(), pair.getValue().publishCount.get());
+            }
+        }
+        List<String> topics = new ArrayList<>(counts.keySet());
+        Collections.sort(topics, new Comparator<String>() {
+            @Override
+            public int compare(String o1, String o2) {
+                return Long.compare(counts.get(o2), counts.get(o1));
+            }
+        });
+        return topics;
+    }
+
+    public int size() {
+        return topic_2_activity.size();
+    }
+
+    /**
+     * save history to pass in file, in lines of topic, last active time and publish count
+     * @param file file to save history
+     * @throws IOException exception in writing file
+     */
+    public void save(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (null != parent && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Fail to create directory " + parent);
+        }
+        File tmp = new File(file.getAbsolutePath() + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, Activity> pair : topic_2_activity.entrySet()) {
+                writer.write(pair.getKey() + SEPARATOR + pair.getValue().lastActiveTime + SEPARATOR + pair.getValue().publishCount.get());
+                writer.newLine();
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * load history from pass in file, malformed lines are skipped
+     * @param file file history saved in
+     * @return number of topics loaded
+     * @throws IOException exception in reading file
+     */
+    public int load(File file) throws IOException {
+        if (!file.isFile()) {
+            return 0;
+        }
+        int cnt = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while (null != (line = reader.readLine())) {
+                String[] fields = line.split(SEPARATOR);
+                if (fields.length != 3) {
+                    continue;
+                }
+                try {
+                    Activity loaded = new Activity(Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+                    if (null == topic_2_activity.putIfAbsent(fields[0], loaded)) {
+                        cnt++;
+                    }
+                } catch (NumberFormatException e) {
+                    logger.warn("Skip malformed topic activity history: {}", line);
+                }
+            }
+        }
+        return cnt;
+    }
+}
@@ -0,0 +1,19 @@
+package com.youzan.nsq.client.core.command;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * Command which is able to encode itself into {@link ByteBuf} directly, without going through
+ * {@link NSQCommand#getBytes()}.
+ */
+public interface ByteBufCommand extends NSQCommand {
+
+    /**
+     * Encode current command into buffer allocated from pass in allocator. Caller takes over the returned buffer and
+     * is responsible to release it.
+     * @param alloc allocator to allocate buffer from
+     * @return encoded command, or null if current command does not support encoding into buffer
+     */
+    ByteBuf encode(ByteBufAllocator alloc);
+}
@@ -5,6 +5,11 @@ package com.youzan.nsq.client.core.command;
 
 import com.youzan.nsq.client.entity.Message;
 import com.youzan.nsq.client.entity.Topic;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.util.ReferenceCounted;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,15 +20,19 @@ import java.util.List;
 /**
  * @author <a href="mailto:my_email@email.exmaple.com">zhaoxi (linzuxiong)</a>
  *
- * 
+ * Pub with message body in buffer is reference counted on message body. Connection retains one reference on the
+ * writing thread before command is written, and netty releases it once command is encoded or write fails, so message
+ * body outlives the write even when publish returns (and releases message) before event loop encodes command.
  */
-public class Pub implements NSQCommand {
+public class Pub implements ByteBufCommand, ReferenceCounted {
     private static final Logger logger = LoggerFactory.getLogger(Pub.class);
     public final static int MSG_SIZE = 4;
     public final static int TRACE_ID_SIZE = 8;
 
     protected final Topic topic;
     private final List<byte[]> body = new ArrayList<>(1);
+    //message body in buffer, reference is owned by message
+    private final ByteBuf bodyBuf;
     protected byte[] bytes = null;
     protected int partitionOverride = -1;
 
@@ -33,11 +42,50 @@ public class Pub implements NSQCommand {
      */
     public Pub(Message msg) {
         this.topic = msg.getTopic();
-        this.body.add(msg.getMessageBodyInByte());
+        if(msg.hasMessageBodyBuf()) {
+            this.bodyBuf = msg.getMessageBodyBuf();
+        } else {
+            this.bodyBuf = null;
+            this.body.add(msg.getMessageBodyInByte());
+        }
     }
 
     Pub(Topic topic) {
         this.topic = topic;
+        this.bodyBuf = null;
+    }
+
+    /**
+     * Encode command header and message body buffer into one composite buffer, message body is NOT copied. A retained
+     * duplicate of message body is added, which is released after buffer is written into socket. Reference retained
+     * for the write is released by encoder after encoding, so current command could be encoded again in retry.
+     * @param alloc allocator to allocate buffer from
+     * @return composite buffer, or null if message body is not held in buffer.
+     */
+    @Override
+    public ByteBuf encode(ByteBufAllocator alloc) {
+        if(null == this.bodyBuf)
+            return null;
+        ByteBuf prefix = alloc.buffer();
+        try {
+            writePrefix(prefix, this.bodyBuf.readableBytes());
+        } catch (RuntimeException e) {
+            prefix.release();
+            throw e;
+        }
+        CompositeByteBuf buf = alloc.compositeBuffer(2);
+        buf.addComponents(true, prefix, this.bodyBuf.retainedDuplicate());
+        return buf;
+    }
+
+    /**
+     * write command header and everything ahead of message body into pass in buffer.
+     * @param out buffer to write to
+     * @param bodyLength length of message body
+     */
+    protected void writePrefix(final ByteBuf out, int bodyLength) {
+        out.writeBytes(this.getHeader().getBytes(NSQCommand.DEFAULT_CHARSET))
+                .writeInt(bodyLength);
     }
 
     @Override
@@ -90,9 +138,59 @@ public class Pub implements NSQCommand {
 
     @Override
     public List<byte[]> getBody() {
+        if(null != this.bodyBuf && this.body.isEmpty()) {
+            //copy for command which is not encoded via buffer
+            this.body.add(ByteBufUtil.getBytes(this.bodyBuf));
+        }
         return body;
     }
 
+    @Override
+    public int refCnt() {
+        return null == this.bodyBuf ? 1 : this.bodyBuf.refCnt();
+    }
+
+    @Override
+    public Pub retain() {
+        if(null != this.bodyBuf)
+            this.bodyBuf.retain();
+        return this;
+    }
+
+    @Override
+    public Pub retain(int increment) {
+        if(null != this.bodyBuf)
+            this.bodyBuf.retain(increment);
+        return this;
+    }
+
+    @Override
+    public Pub touch() {
+        if(null != this.bodyBuf)
+            this.bodyBuf.touch();
+        return this;
+    }
+
+    @Override
+    public Pub touch(Object hint) {
+        if(null != this.bodyBuf)
+            this.bodyBuf.touch(hint);
+        return this;
+    }
+
+    /**
+     * Pub without message body in buffer is not reference counted, and it is never released.
+     */
+    @Override
+    public boolean release() {
+        return null != this.bodyBuf && this.bodyBuf.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return null != this.bodyBuf && this.bodyBuf.release(decrement);
+    }
+
     protected String getTopicText() {
         return this.topic.getTopicText();
     }
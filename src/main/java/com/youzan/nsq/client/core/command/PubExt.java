@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.youzan.nsq.client.entity.Message;
 import com.youzan.util.SystemUtil;
+import io.netty.buffer.ByteBuf;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -87,6 +88,14 @@ public class PubExt extends Pub {
         return bytes;
     }
 
+    @Override
+    protected void writePrefix(final ByteBuf out, int bodyLength) {
+        out.writeBytes(this.getHeader().getBytes(NSQCommand.DEFAULT_CHARSET))
+                .writeInt(2 + jsonHeaderBytes.length + bodyLength)
+                .writeShort(jsonHeaderBytes.length)
+                .writeBytes(jsonHeaderBytes);
+    }
+
     @Override
     public String getHeader() {
         return String.format("PUB_EXT %s%s\n", topic.getTopicText(), this.getPartitionStr());
@@ -1,6 +1,7 @@
 package com.youzan.nsq.client.core.command;
 
 import com.youzan.nsq.client.entity.Message;
+import io.netty.buffer.ByteBuf;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,6 +55,13 @@ public class PubTrace extends Pub{
         return bytes;
     }
 
+    @Override
+    protected void writePrefix(final ByteBuf out, int bodyLength) {
+        out.writeBytes(this.getHeader().getBytes(NSQCommand.DEFAULT_CHARSET))
+                .writeInt(TRACE_ID_SIZE + bodyLength)
+                .writeBytes(this.getTraceId());
+    }
+
     public byte[] getTraceId(){
         return this.traceId;
     }
@@ -6,14 +6,13 @@ import com.youzan.nsq.client.core.NSQConnectionImpl;
 import com.youzan.nsq.client.entity.Address;
 import com.youzan.nsq.client.entity.NSQConfig;
 import com.youzan.nsq.client.exception.NSQNoConnectionException;
+import com.youzan.nsq.client.network.netty.NSQClientEventLoopGroup;
 import com.youzan.nsq.client.network.netty.NSQClientInitializer;
+import com.youzan.nsq.client.network.netty.NSQTransport;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
-import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,7 +30,7 @@ public class FixedPool {
 
     private final AtomicInteger connectionIDGenerator = new AtomicInteger(0);
     private final Bootstrap bootstrap;
-    private final EventLoopGroup eventLoopGroup;
+    private final NSQClientEventLoopGroup eventLoopGroup;
     private final int size;
 
 
@@ -47,17 +46,15 @@ public class FixedPool {
         this.config = config;
         this.connections = new ArrayList<>(size);
         this.bootstrap = new Bootstrap();
-        this.eventLoopGroup = new NioEventLoopGroup(config.getThreadPoolSize4IO());
+        this.eventLoopGroup = NSQClientEventLoopGroup.of(config, "Consumer");
     }
 
 
     public void prepare(boolean isOrdered) throws NSQNoConnectionException {
         bootstrap.option(ChannelOption.SO_KEEPALIVE, true);
-        bootstrap.option(ChannelOption.TCP_NODELAY, true);
         bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.getConnectTimeoutInMillisecond());
-        bootstrap.group(eventLoopGroup);
-        bootstrap.channel(NioSocketChannel.class);
-        bootstrap.handler(new NSQClientInitializer());
+        NSQTransport.initBootstrap(bootstrap, eventLoopGroup.get(), config);
+        bootstrap.handler(new NSQClientInitializer(config.getIdleTimeoutInSecond()));
         for (int i = 0; i < size; i++) {
             final ChannelFuture future = bootstrap.connect(address.getHost(), address.getPort());
             // Wait until the connection attempt succeeds or fails.
@@ -89,8 +86,6 @@ public class FixedPool {
 
     public void close() {
         connections.clear();
-        if (!eventLoopGroup.isShuttingDown()) {
-            eventLoopGroup.shutdownGracefully(1, 2, TimeUnit.SECONDS);
-        }
+        eventLoopGroup.release();
     }
 }
@@ -0,0 +1,157 @@
+package com.youzan.nsq.client.core.pool.producer;
+
+import com.youzan.nsq.client.entity.Address;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive publish concurrency limiter per nsqd data node(host:port), in additive-increase/multiplicative-decrease.
+ * Limit grows by 1 per limit(about one window) of successful publishes responded within latency threshold, and
+ * decreases by backoff ratio when publish is dropped(E_PUB_FAILED, timeout) or responded slower than latency threshold.
+ * Limit decreases at most once per latency threshold, so one overload event does not collapse limit.
+ */
+public class AIMDConcurrencyLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(AIMDConcurrencyLimiter.class);
+    public static final double DEFAULT_BACKOFF_RATIO = 0.5;
+
+    private final ConcurrentMap<String, NodeLimit> nodeLimits = new ConcurrentHashMap<>();
+    private final int maxLimit;
+    private final int initialLimit;
+    private final long latencyThresholdInMillisecond;
+    private final double backoffRatio;
+
+    /**
+     * @param initialLimit initial concurrency limit per data node
+     * @param maxLimit max concurrency limit per data node
+     * @param latencyThresholdInMillisecond publish latency above which it is regarded as pushback of data node
+     * @param backoffRatio ratio to multiply limit with on pushback, in (0, 1)
+     */
+    public AIMDConcurrencyLimiter(int initialLimit, int maxLimit, long latencyThresholdInMillisecond, double backoffRatio) {
+        if (maxLimit < 1 || initialLimit < 1 || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Invalid limit, initial limit: " + initialLimit + ", max limit: " + maxLimit);
+        }
+        if (backoffRatio <= 0d || backoffRatio >= 1d) {
+            throw new IllegalArgumentException("Backoff ratio should be in (0, 1).");
+        }
+        this.initialLimit = initialLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdInMillisecond = latencyThresholdInMillisecond;
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * Try acquiring publish permit of data node pass in address belongs to, wait at most pass in wait time.
+     * @param address nsqd address
+     * @param waitInMillisecond max time to wait for permit, 0 for fail fast
+     * @return {@link Boolean#TRUE} if permit acquired, which should be released with
+     * {@link AIMDConcurrencyLimiter#release(Address, long, boolean)} or {@link AIMDConcurrencyLimiter#release(Address)}
+     * @throws InterruptedException interrupted when waiting
+     */
+    public boolean tryAcquire(final Address address, long waitInMillisecond) throws InterruptedException {
+        return getNodeLimit(address).tryAcquire(waitInMillisecond);
+    }
+
+    /**
+     * Release publish permit, with publish result sampled for limit adjustment.
+     * @param address nsqd address
+     * @param latencyInMillisecond publish latency
+     * @param dropped {@link Boolean#TRUE} if publish is rejected by data node or timeout
+     */
+    public void release(final Address address, long latencyInMillisecond, boolean dropped) {
+        getNodeLimit(address).release(latencyInMillisecond, dropped, true);
+    }
+
+    /**
+     * Release publish permit, without sampling publish result.
+     * @param address nsqd address
+     */
+    public void release(final Address address) {
+        getNodeLimit(address).release(0L, false, false);
+    }
+
+    /**
+     * @param address nsqd address
+     * @return current concurrency limit of data node pass in address belongs to
+     */
+    public int getLimit(final Address address) {
+        return getNodeLimit(address).getLimit();
+    }
+
+    /**
+     * @param address nsqd address
+     * @return publish in flight to data node pass in address belongs to
+     */
+    public int getInFlight(final Address address) {
+        return getNodeLimit(address).getInFlight();
+    }
+
+    private NodeLimit getNodeLimit(final Address address) {
+        String node = address.getHost() + ":" + address.getPort();
+        NodeLimit limit = nodeLimits.get(node);
+        if (null == limit) {
+            NodeLimit newLimit = new NodeLimit(node);
+            limit = nodeLimits.putIfAbsent(node, newLimit);
+            if (null == limit)
+                limit = newLimit;
+        }
+        return limit;
+    }
+
+    private class NodeLimit {
+        private final String node;
+        private double limit = initialLimit;
+        private int inFlight = 0;
+        private long lastDecreaseInNano;
+
+        NodeLimit(String node) {
+            this.node = node;
+            //allow first decrease right away, as nano time may be negative
+            this.lastDecreaseInNano = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(latencyThresholdInMillisecond) - 1L;
+        }
+
+        synchronized boolean tryAcquire(long waitInMillisecond) throws InterruptedException {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(waitInMillisecond);
+            final long deadline = System.nanoTime() + remaining;
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0L) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                remaining = deadline - System.nanoTime();
+            }
+            inFlight++;
+            return true;
+        }
+
+        synchronized void release(long latencyInMillisecond, boolean dropped, boolean sampled) {
+            inFlight--;
+            if (sampled) {
+                if (dropped || latencyInMillisecond > latencyThresholdInMillisecond) {
+                    long now = System.nanoTime();
+                    if (now - lastDecreaseInNano > TimeUnit.MILLISECONDS.toNanos(latencyThresholdInMillisecond)) {
+                        lastDecreaseInNano = now;
+                        double old = limit;
+                        limit = Math.max(1d, limit * backoffRatio);
+                        logger.warn("Publish concurrency limit of {} decreases from {} to {}, dropped: {}, latency: {} milliSec.",
+                                node, (int) old, (int) limit, dropped, latencyInMillisecond);
+                    }
+                } else if (limit < maxLimit) {
+                    limit = Math.min(maxLimit, limit + 1d / limit);
+                }
+            }
+            notifyAll();
+        }
+
+        synchronized int getLimit() {
+            return (int) limit;
+        }
+
+        synchronized int getInFlight() {
+            return inFlight;
+        }
+    }
+}
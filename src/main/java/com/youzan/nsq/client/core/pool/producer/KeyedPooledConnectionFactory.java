@@ -6,13 +6,14 @@ import com.youzan.nsq.client.core.NSQConnectionImpl;
 import com.youzan.nsq.client.entity.Address;
 import com.youzan.nsq.client.entity.NSQConfig;
 import com.youzan.nsq.client.exception.NSQNoConnectionException;
+import com.youzan.nsq.client.network.netty.NSQClientEventLoopGroup;
 import com.youzan.nsq.client.network.netty.NSQClientInitializer;
+import com.youzan.nsq.client.network.netty.NSQTransport;
 import com.youzan.util.IOUtil;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
 import org.apache.commons.pool2.PooledObject;
 import org.apache.commons.pool2.impl.DefaultPooledObject;
@@ -47,15 +48,16 @@ public class KeyedPooledConnectionFactory extends BaseKeyedPooledObjectFactory<A
      */
     private final Client client;
 
+    private final NSQClientEventLoopGroup eventLoopGroup;
+
     public KeyedPooledConnectionFactory(NSQConfig config, Client client) {
         this.config = config;
         this.client = client;
+        this.eventLoopGroup = NSQClientEventLoopGroup.of(config, "Producer");
         bootstrap.option(ChannelOption.SO_KEEPALIVE, true);
-        bootstrap.option(ChannelOption.TCP_NODELAY, true);
         bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.getConnectTimeoutInMillisecond());
-        bootstrap.group(NSQConfig.getEventLoopGroup());
-        bootstrap.channel(NioSocketChannel.class);
-        bootstrap.handler(new NSQClientInitializer());
+        NSQTransport.initBootstrap(bootstrap, eventLoopGroup.get(), config);
+        bootstrap.handler(new NSQClientInitializer(config.getIdleTimeoutInSecond()));
     }
 
     @Override
@@ -134,6 +136,6 @@ public class KeyedPooledConnectionFactory extends BaseKeyedPooledObjectFactory<A
 
 
     public void close() {
-
+        this.eventLoopGroup.release();
     }
 }
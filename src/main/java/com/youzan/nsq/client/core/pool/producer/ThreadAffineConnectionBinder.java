@@ -0,0 +1,231 @@
+package com.youzan.nsq.client.core.pool.producer;
+
+import com.youzan.nsq.client.core.NSQConnection;
+import com.youzan.nsq.client.entity.Address;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Binds publishing threads to stable connections per address. A fixed number of connections per address are borrowed
+ * from connection pool and kept in slots, and each thread maps to one slot by thread id. A thread acquires its slot
+ * with one CAS and no pool lock, and falls back to connection pool when its slot is busy with another thread or
+ * connection of slot could not be borrowed.
+ * Bound connection idle longer than max idle time is returned to connection pool, so that it goes through validation
+ * and idle eviction of pool again before it is bound next time. Bound connections of topic are returned to connection
+ * pool when topic expires.
+ */
+public class ThreadAffineConnectionBinder {
+    private static final Logger logger = LoggerFactory.getLogger(ThreadAffineConnectionBinder.class);
+
+    private final GenericKeyedObjectPool<Address, NSQConnection> pool;
+    private final int slotSize;
+    private final long maxIdleInNano;
+    private final ConcurrentMap<Address, Slot[]> address_2_slots = new ConcurrentHashMap<>();
+
+    private static class Slot {
+        private final AtomicBoolean busy = new AtomicBoolean(false);
+        //accessed by thread owning busy flag only
+        private NSQConnection conn;
+        private long lastReleasedInNano;
+    }
+
+    /**
+     * @param pool connection pool to borrow bound connections from
+     * @param slotSize number of connections bound per address, which should be smaller than max connections per
+     *                 address of pool
+     * @param maxIdleInMillisecond max idle time of bound connection before it is returned to pool
+     */
+    public ThreadAffineConnectionBinder(final GenericKeyedObjectPool<Address, NSQConnection> pool, int slotSize, long maxIdleInMillisecond) {
+        if (slotSize < 1 || slotSize >= pool.getMaxTotalPerKey()) {
+            throw new IllegalArgumentException("Slot size should be positive and smaller than max connections per key of pool.");
+        }
+        if (maxIdleInMillisecond <= 0) {
+            throw new IllegalArgumentException("Max idle time should be positive.");
+        }
+        this.pool = pool;
+        this.slotSize = slotSize;
+        this.maxIdleInNano = TimeUnit.MILLISECONDS.toNanos(maxIdleInMillisecond);
+    }
+
+    /**
+     * Acquire connection bound to current thread for pass in address.
+     * @param address nsqd address
+     * @return bound connection, or null if slot of current thread is busy, or connection could not be borrowed without
+     * waiting. Connection returned should be released via {@link ThreadAffineConnectionBinder#release(NSQConnection)}
+     * or {@link ThreadAffineConnectionBinder#invalidate(NSQConnection)}.
+     */
+    public NSQConnection acquire(final Address address) {
+        final Slot slot = getSlot(address);
+        if (!slot.busy.compareAndSet(false, true)) {
+            return null;
+        }
+        NSQConnection conn = slot.conn;
+        if (null != conn && conn.isConnected()) {
+            if (System.nanoTime() - slot.lastReleasedInNano < this.maxIdleInNano) {
+                return conn;
+            }
+            //idle too long, borrow again so that pool validates it
+            slot.conn = null;
+            returnQuietly(address, conn);
+        } else if (null != conn) {
+            slot.conn = null;
+            invalidateQuietly(conn);
+        }
+        try {
+            //no wait for connection to bind, as thread could fall back to connection pool
+            conn = this.pool.borrowObject(address, 0L);
+            slot.conn = conn;
+            return conn;
+        } catch (Exception e) {
+            logger.debug("Fail to borrow connection to bind for {}. Fallback to connection pool.", address, e);
+            slot.busy.set(false);
+            return null;
+        }
+    }
+
+    /**
+     * Release connection if it is bound to current thread.
+     * @param conn connection to release
+     * @return {@link Boolean#TRUE} if connection is bound and released, otherwise connection should be returned to
+     * connection pool
+     */
+    public boolean release(final NSQConnection conn) {
+        final Slot slot = findSlot(conn);
+        if (null == slot) {
+            return false;
+        }
+        slot.lastReleasedInNano = System.nanoTime();
+        slot.busy.set(false);
+        return true;
+    }
+
+    /**
+     * Unbind and invalidate connection if it is bound to current thread.
+     * @param conn connection to invalidate
+     * @return {@link Boolean#TRUE} if connection is bound and invalidated, otherwise connection should be invalidated
+     * in connection pool
+     */
+    public boolean invalidate(final NSQConnection conn) {
+        final Slot slot = findSlot(conn);
+        if (null == slot) {
+            return false;
+        }
+        slot.conn = null;
+        invalidateQuietly(conn);
+        slot.busy.set(false);
+        return true;
+    }
+
+    /**
+     * Return bound connections idle longer than max idle time to connection pool, for validation and idle eviction
+     * of pool.
+     */
+    public void evictIdle() {
+        final long now = System.nanoTime();
+        for (Map.Entry<Address, Slot[]> pair : address_2_slots.entrySet()) {
+            for (Slot slot : pair.getValue()) {
+                if (slot.busy.compareAndSet(false, true)) {
+                    NSQConnection conn = slot.conn;
+                    if (null != conn && now - slot.lastReleasedInNano >= this.maxIdleInNano) {
+                        slot.conn = null;
+                        returnQuietly(pair.getKey(), conn);
+                    }
+                    slot.busy.set(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Unbind connections of pass in topics and return idle ones to connection pool. Connection busy with thread is
+     * returned to connection pool when thread releases it.
+     * @param topics expired topics
+     */
+    public void unbind(final Collection<String> topics) {
+        Iterator<Map.Entry<Address, Slot[]>> it = address_2_slots.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Address, Slot[]> pair = it.next();
+            if (topics.contains(pair.getKey().getTopic())) {
+                it.remove();
+                returnIdle(pair.getKey(), pair.getValue());
+            }
+        }
+    }
+
+    /**
+     * return all idle bound connections to connection pool
+     */
+    public void close() {
+        for (Map.Entry<Address, Slot[]> pair : address_2_slots.entrySet()) {
+            returnIdle(pair.getKey(), pair.getValue());
+        }
+        address_2_slots.clear();
+    }
+
+    private void returnIdle(final Address address, final Slot[] slots) {
+        for (Slot slot : slots) {
+            if (slot.busy.compareAndSet(false, true)) {
+                NSQConnection conn = slot.conn;
+                slot.conn = null;
+                if (null != conn) {
+                    returnQuietly(address, conn);
+                }
+            }
+        }
+    }
+
+    private Slot findSlot(final NSQConnection conn) {
+        if (null == conn) {
+            return null;
+        }
+        Slot[] slots = address_2_slots.get(conn.getAddress());
+        if (null == slots) {
+            return null;
+        }
+        Slot slot = slots[slotIndex()];
+        return slot.busy.get() && slot.conn == conn ? slot : null;
+    }
+
+    private Slot getSlot(final Address address) {
+        Slot[] slots = address_2_slots.get(address);
+        if (null == slots) {
+            Slot[] newSlots = new Slot[this.slotSize];
+            for (int i = 0; i < newSlots.length; i++) {
+                newSlots[i] = new Slot();
+            }
+            slots = address_2_slots.putIfAbsent(address, newSlots);
+            if (null == slots)
+                slots = newSlots;
+        }
+        return slots[slotIndex()];
+    }
+
+    private int slotIndex() {
+        return (int) ((Thread.currentThread().getId() & Long.MAX_VALUE) % this.slotSize);
+    }
+
+    private void returnQuietly(final Address address, final NSQConnection conn) {
+        try {
+            this.pool.returnObject(address, conn);
+        } catch (Exception e) {
+            logger.warn("Fail to return bound connection to {}.", address);
+        }
+    }
+
+    private void invalidateQuietly(final NSQConnection conn) {
+        try {
+            this.pool.invalidateObject(conn.getAddress(), conn);
+        } catch (Exception e) {
+            logger.error("Fail to invalidate bound connection to {}", conn.getAddress());
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.youzan.nsq.client.entity;
 
+import com.youzan.nsq.client.exception.NSQDeadlineExceededException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Context for set/get extra properties like tracing ID
@@ -22,4 +24,61 @@ public class Context {
     public long getTraceID() {
         return this.traceID;
     }
+
+    //deadline in nano time, 0L for no deadline
+    private long deadlineInNano = 0L;
+    private long timeoutInMillisecond = 0L;
+
+    /**
+     * Set deadline of current call, starting from now.
+     * @param timeout timeout
+     * @param unit time unit of timeout
+     */
+    public void setDeadline(long timeout, TimeUnit unit) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Timeout should be positive.");
+        }
+        this.timeoutInMillisecond = unit.toMillis(timeout);
+        this.deadlineInNano = System.nanoTime() + unit.toNanos(timeout);
+    }
+
+    /**
+     * @return timeout in millisecond of deadline, 0L if there is no deadline.
+     */
+    public long getTimeoutInMillisecond() {
+        return this.timeoutInMillisecond;
+    }
+
+    public boolean hasDeadline() {
+        return this.deadlineInNano != 0L;
+    }
+
+    /**
+     * @return remaining time in millisecond before deadline, {@link Long#MAX_VALUE} if there is no deadline.
+     */
+    public long getRemainingInMillisecond() {
+        if (!hasDeadline()) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(this.deadlineInNano - System.nanoTime());
+    }
+
+    /**
+     * Cap pass in timeout with remaining time before deadline.
+     * @param timeoutInMillisecond timeout in millisecond
+     * @return smaller one of pass in timeout and remaining time before deadline
+     */
+    public long capTimeout(long timeoutInMillisecond) {
+        return Math.max(0L, Math.min(timeoutInMillisecond, getRemainingInMillisecond()));
+    }
+
+    /**
+     * @param stage stage of call
+     * @throws NSQDeadlineExceededException if deadline expires
+     */
+    public void checkDeadline(String stage) throws NSQDeadlineExceededException {
+        if (hasDeadline() && System.nanoTime() - this.deadlineInNano >= 0) {
+            throw new NSQDeadlineExceededException(stage, this.timeoutInMillisecond);
+        }
+    }
 }
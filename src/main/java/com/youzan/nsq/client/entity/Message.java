@@ -1,12 +1,20 @@
 package com.youzan.nsq.client.entity;
 
+import com.youzan.nsq.client.serializer.Serializer;
 import com.youzan.util.IOUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * NSQ message class. Instance of Message presents one NSQ message will be sent from producer.
@@ -30,6 +38,9 @@ public class Message {
 
     //common part, message body
     private final byte[] messageBody;
+    //message body in buffer, exclusive with messageBody
+    private final ByteBuf messageBodyBuf;
+    private final AtomicBoolean released = new AtomicBoolean(false);
     private Object jsonHeaderExt;
     private String desiredTag = null;
 
@@ -53,16 +64,95 @@ public class Message {
         return new MessagesWrapper(topic, messageBodies);
     }
 
+    /**
+     * Create message with body in {@link ByteBuffer}, heap or direct. Readable bytes between position and limit of
+     * pass in buffer are sent without copying them into a byte array, so content of the buffer should not be modified
+     * until publish returns.
+     * @param topic topic message publishes to
+     * @param messageBody message body buffer
+     * @return {@link Message}
+     */
+    public static Message create(Topic topic, ByteBuffer messageBody) {
+        return new Message(0L, topic, Unpooled.wrappedBuffer(messageBody));
+    }
+
+    /**
+     * Create message with body in reference counted {@link ByteBuf}. Readable bytes of pass in buffer are written to
+     * socket as they are. Message takes over ONE reference of pass in buffer, which is released once producer
+     * publish returns, no matter it succeeds or not. Invoke {@link Message#release()} for message which is not
+     * published.
+     * @param topic topic message publishes to
+     * @param messageBody message body buffer
+     * @return {@link Message}
+     */
+    public static Message create(Topic topic, ByteBuf messageBody) {
+        return new Message(0L, topic, messageBody);
+    }
+
+    /**
+     * Create message with object serialized by pass in serializer. Object is serialized into a buffer which is written
+     * to socket as it is, no intermediate byte array is created.
+     * @param topic topic message publishes to
+     * @param obj object to serialize as message body
+     * @param serializer serializer for pass in object
+     * @param <T> type of object
+     * @return {@link Message}
+     * @throws IllegalArgumentException if object fails to be serialized
+     */
+    public static <T> Message create(Topic topic, T obj, Serializer<? super T> serializer) throws IllegalArgumentException {
+        if (null == serializer) {
+            throw new IllegalArgumentException("Serializer is null.");
+        }
+        ByteBuf buf = null;
+        try {
+            int sizeHint = serializer.sizeHint(obj);
+            buf = sizeHint > 0 ? ByteBufAllocator.DEFAULT.buffer(sizeHint) : ByteBufAllocator.DEFAULT.buffer();
+            serializer.serialize(obj, buf);
+        } catch (IOException | RuntimeException e) {
+            if (null != buf) {
+                buf.release();
+            }
+            throw new IllegalArgumentException("Fail to serialize message body with " + serializer.getClass().getName(), e);
+        }
+        return new Message(0L, topic, buf);
+    }
+
     Message(long traceID, final Topic topic, byte[] messageBody) {
         this.traceID = traceID;
         this.topic = Topic.newInstacne(topic, false);
         this.messageBody = messageBody;
+        this.messageBodyBuf = null;
+    }
+
+    Message(long traceID, final Topic topic, final ByteBuf messageBodyBuf) {
+        if (null == messageBodyBuf) {
+            throw new IllegalArgumentException("Message body buffer is null.");
+        }
+        this.traceID = traceID;
+        this.topic = Topic.newInstacne(topic, false);
+        this.messageBody = null;
+        this.messageBodyBuf = messageBodyBuf;
     }
 
     Message(Topic topic, byte[] messageBody){
         this(0L, topic, messageBody);
     }
 
+    /**
+     * Create a message with the same meta data as current message(trace ID, sharding, tag, json header extension),
+     * and pass in message body.
+     * @param messageBody new message body
+     * @return {@link Message}
+     */
+    public Message copyWithMessageBody(byte[] messageBody) {
+        Message msg = new Message(this.traceID, this.topic, messageBody);
+        msg.topicSharding = this.topicSharding;
+        msg.traced = this.traced;
+        msg.jsonHeaderExt = this.jsonHeaderExt;
+        msg.desiredTag = this.desiredTag;
+        return msg;
+    }
+
     public long getTraceID(){
         return this.traceID;
     }
@@ -76,15 +166,57 @@ public class Message {
     }
 
     public String getMessageBody(){
+        if(null != this.messageBodyBuf)
+            return this.messageBodyBuf.toString(IOUtil.DEFAULT_CHARSET);
         return new String(this.messageBody, IOUtil.DEFAULT_CHARSET);
     }
 
+    /**
+     * @return message body in byte array. For message created with buffer, readable bytes are copied into a new array.
+     */
     public byte[] getMessageBodyInByte(){
+        if(null != this.messageBodyBuf)
+            return ByteBufUtil.getBytes(this.messageBodyBuf);
         return this.messageBody;
     }
 
+    /**
+     * @return length of message body in byte
+     */
+    public int getMessageBodyLength() {
+        if(null != this.messageBodyBuf)
+            return this.messageBodyBuf.readableBytes();
+        return null == this.messageBody ? 0 : this.messageBody.length;
+    }
+
+    /**
+     * @return {@link Boolean#TRUE} if message body is held in {@link ByteBuf}
+     */
+    public boolean hasMessageBodyBuf() {
+        return null != this.messageBodyBuf;
+    }
+
+    /**
+     * @return message body buffer, reference count is NOT retained, or null if message is created with byte array.
+     */
+    public ByteBuf getMessageBodyBuf() {
+        return this.messageBodyBuf;
+    }
+
+    /**
+     * Release reference of message body buffer held by current message. Invoking more than once takes no effect.
+     */
+    public void release() {
+        if(null != this.messageBodyBuf && released.compareAndSet(false, true)) {
+            this.messageBodyBuf.release();
+        }
+    }
+
+    /**
+     * @return message body in byte array as a list, see {@link #getMessageBodyInByte()}
+     */
     public List<byte[]> getMessageBodiesInByte(){
-        return Arrays.asList(this.messageBody);
+        return Arrays.asList(getMessageBodyInByte());
     }
 
     public int getMessageCount() {
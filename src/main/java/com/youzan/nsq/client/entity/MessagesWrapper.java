@@ -24,6 +24,11 @@ public class MessagesWrapper extends Message {
         return this.messageBodiesInBytes.size();
     }
 
+    @Override
+    public Message copyWithMessageBody(byte[] messageBody) {
+        throw new IllegalArgumentException("copyWithMessageBody not support.");
+    }
+
     @Override
     public Message traced(){
         return this;
@@ -3,16 +3,20 @@ package com.youzan.nsq.client.entity;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.youzan.nsq.client.claimcheck.BlobStore;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.youzan.nsq.client.ConsumerExecutorFactory;
+import com.youzan.nsq.client.ConsumerExecutors;
 import com.youzan.nsq.client.Version;
 import com.youzan.util.HostUtil;
 import com.youzan.util.NotThreadSafe;
 import com.youzan.util.SystemUtil;
+import com.youzan.nsq.client.network.netty.NSQTransport;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslProvider;
 import io.netty.util.concurrent.Future;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -41,7 +45,7 @@ public class NSQConfig implements java.io.Serializable, Cloneable {
     private static final long serialVersionUID = 6624842850216901700L;
     private static final Logger logger = LoggerFactory.getLogger(NSQConfig.class);
     private static final ObjectMapper MAPPER_CONFIG = new ObjectMapper();
-    private static final EventLoopGroup DEFAULT_EVENT_LOOP_GROUP = new NioEventLoopGroup(Runtime.getRuntime().availableProcessors() * 2);
+    private static final EventLoopGroup DEFAULT_EVENT_LOOP_GROUP = NSQTransport.fromSystemProperty().newEventLoopGroup(Runtime.getRuntime().availableProcessors() * 2, null);
     private static EventLoopGroup EVENT_LOOP_GROUP = DEFAULT_EVENT_LOOP_GROUP;
 
     static {
@@ -276,6 +280,7 @@ public class NSQConfig implements java.io.Serializable, Cloneable {
     private Compression compression = Compression.NO_COMPRESSION;
     // ...
     private SslContext sslContext = null;
+    private SslProvider sslProvider = SslProvider.JDK;
     private int rdy = DEFAULT_RDY;
     private volatile boolean rdyOverride = false;
     public static final int DEFAULT_RDY = 3;
@@ -283,6 +288,15 @@ public class NSQConfig implements java.io.Serializable, Cloneable {
 
     private long producerConnectionEvictIntervalMillSec = 10 * 60 * 1000;
 
+    //adaptive publish concurrency limit per nsqd
+    private boolean publishConcurrencyLimitEnabled = false;
+    private long publishLatencyThresholdInMillisecond = 500L;
+
+    //claim check for oversized message body
+    public static final int DEFAULT_CLAIM_CHECK_THRESHOLD_IN_BYTE = 512 * 1024;
+    private transient BlobStore claimCheckBlobStore = null;
+    private int claimCheckThresholdInByte = DEFAULT_CLAIM_CHECK_THRESHOLD_IN_BYTE;
+
     static {
         PerfTune.getInstance();
     }
@@ -670,6 +684,13 @@ public class NSQConfig implements java.io.Serializable, Cloneable {
         return sslContext;
     }
 
+    /**
+     * Specify ssl context for connections and enable tls_v1. Context should be shared among connections to resume
+     * sessions, see {@link com.youzan.nsq.client.network.netty.NSQSslContexts}. When tls_v1 is enabled without ssl
+     * context, a shared context trusting system default certificates is used.
+     * @param sslContext client ssl context
+     * @return {@link NSQConfig}
+     */
     public NSQConfig setSslContext(SslContext sslContext) {
         if (null == sslContext) {
             throw new NullPointerException();
@@ -679,6 +700,25 @@ public class NSQConfig implements java.io.Serializable, Cloneable {
         return this;
     }
 
+    public SslProvider getSslProvider() {
+        return sslProvider;
+    }
+
+    /**
+     * Specify provider of shared ssl context used when tls_v1 is enabled without ssl context. {@link SslProvider#JDK}
+     * by default. {@link SslProvider#OPENSSL} engine handshakes and encrypts faster when netty-tcnative is in classpath,
+     * but client sessions are not resumed with it in netty of this version, so every connection makes a full handshake.
+     * @param sslProvider ssl provider
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setSslProvider(SslProvider sslProvider) {
+        if (null == sslProvider) {
+            throw new IllegalArgumentException("Ssl provider should not be null.");
+        }
+        this.sslProvider = sslProvider;
+        return this;
+    }
+
     /**
      * @return the tlsV1
      */
@@ -942,6 +982,556 @@ public class NSQConfig implements java.io.Serializable, Cloneable {
         return this.minIdleConn;
     }
 
+    private int threadAffineConnectionSize = 0;
+
+    private int commandFlushBatchSize = 64;
+    private long commandFlushDelayInMicrosecond = 0L;
+
+    /**
+     * Specify max number of FIN, REQ, TOUCH and RDY commands written to a connection before they are flushed. These
+     * commands are flushed in bursts, when event loop of connection runs next, after the flush delay, or when pending
+     * commands reach batch size. Default is 64, and 1 flushes every command.
+     * @param batchSize max commands pending for flush
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setCommandFlushBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Command flush batch size should be positive.");
+        }
+        this.commandFlushBatchSize = batchSize;
+        return this;
+    }
+
+    public int getCommandFlushBatchSize() {
+        return this.commandFlushBatchSize;
+    }
+
+    /**
+     * Specify delay before pending FIN, REQ, TOUCH and RDY commands are flushed, to collect more commands in one flush.
+     * Default is 0, which flushes when event loop of connection runs next.
+     * @param delay flush delay in microseconds
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setCommandFlushDelayInMicrosecond(long delay) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("Command flush delay should not be negative.");
+        }
+        this.commandFlushDelayInMicrosecond = delay;
+        return this;
+    }
+
+    public long getCommandFlushDelayInMicrosecond() {
+        return this.commandFlushDelayInMicrosecond;
+    }
+
+    private transient EventLoopGroup ioEventLoopGroup = null;
+    private int eventLoopThreads = 0;
+    private String eventLoopThreadName = null;
+
+    /**
+     * Specify event loop group for connections of clients created with this config, in place of default event loop
+     * group shared by all clients. Event loop group specified is not shut down by clients.
+     * @param group event loop group
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setIoEventLoopGroup(EventLoopGroup group) {
+        this.ioEventLoopGroup = group;
+        return this;
+    }
+
+    @JsonIgnore
+    public EventLoopGroup getIoEventLoopGroup() {
+        return this.ioEventLoopGroup;
+    }
+
+    /**
+     * Specify number of event loop threads. When it is positive and no event loop group is specified, each client
+     * creates its own event loop group, isolated from other clients, and shuts it down on close. Default is 0, which
+     * uses default event loop group shared by all clients.
+     * @param threads number of event loop threads per client, 0 to use default event loop group
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setEventLoopThreads(int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("Event loop threads should not be negative.");
+        }
+        this.eventLoopThreads = threads;
+        return this;
+    }
+
+    public int getEventLoopThreads() {
+        return this.eventLoopThreads;
+    }
+
+    /**
+     * Specify name prefix of threads in event loop group created for client. Default is NSQ-Producer-IO for producer,
+     * and NSQ-Consumer-IO for consumer.
+     * @param name thread name prefix
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setEventLoopThreadName(String name) {
+        if (StringUtils.isBlank(name)) {
+            throw new IllegalArgumentException("Event loop thread name should not be blank.");
+        }
+        this.eventLoopThreadName = name;
+        return this;
+    }
+
+    public String getEventLoopThreadName() {
+        return this.eventLoopThreadName;
+    }
+
+    private long eventLoopStallThresholdInMillisecond = 0L;
+
+    /**
+     * Specify stall threshold of event loop watchdog. When it is positive, event loops of client are probed
+     * periodically, and event loop not running probe for longer than threshold is logged in warning, with stack of its
+     * thread. Default is 0, which disables watchdog.
+     * @param threshold stall threshold in milliseconds, 0 to disable
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setEventLoopStallThresholdInMillisecond(long threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Event loop stall threshold should not be negative.");
+        }
+        this.eventLoopStallThresholdInMillisecond = threshold;
+        return this;
+    }
+
+    public long getEventLoopStallThresholdInMillisecond() {
+        return this.eventLoopStallThresholdInMillisecond;
+    }
+
+    private int messageBatchSize = 32;
+    private int messageBatchWaitInMillisecond = 50;
+
+    /**
+     * Specify max number of messages in one batch passed to batch message handler of consumer. As nsqd never has more
+     * messages than rdy in flight on a connection, batch is dispatched once it reaches current rdy of connection when
+     * rdy is smaller. Default is 32.
+     * @param size max number of messages in one batch
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setMessageBatchSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Message batch size should be positive.");
+        }
+        this.messageBatchSize = size;
+        return this;
+    }
+
+    public int getMessageBatchSize() {
+        return this.messageBatchSize;
+    }
+
+    /**
+     * Specify max time first message in batch waits for batch to fill, before batch is dispatched to batch message
+     * handler of consumer. Default is 50 milliseconds.
+     * @param wait max wait time in milliseconds
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setMessageBatchWaitInMillisecond(int wait) {
+        if (wait < 0) {
+            throw new IllegalArgumentException("Message batch wait should not be negative.");
+        }
+        this.messageBatchWaitInMillisecond = wait;
+        return this;
+    }
+
+    public int getMessageBatchWaitInMillisecond() {
+        return this.messageBatchWaitInMillisecond;
+    }
+
+    private int keyOrderedLanes = 0;
+    private String keyOrderedExtKey = null;
+
+    /**
+     * Specify number of worker lanes for key ordered consumption. When it is positive, message is consumed in lane
+     * hashed by its key, messages of one key are consumed in order and messages of different keys in parallel. Message
+     * key is read from json extension header specified by {@link #setKeyOrderedExtKey(String)}, or extracted with
+     * key extractor set to consumer. Failed message holds its lane and is consumed again after backoff, later messages
+     * of lane wait for it without taking worker threads. Message held for half of message timeout is requeued, and is
+     * consumed again after later messages of its key. Key ordered consumption does not work with ordered consumption
+     * or batch message handler. Default is 0, which disables key ordered consumption.
+     * @param lanes number of worker lanes, 0 to disable
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setKeyOrderedLanes(int lanes) {
+        if (lanes < 0) {
+            throw new IllegalArgumentException("Key ordered lanes should not be negative.");
+        }
+        this.keyOrderedLanes = lanes;
+        return this;
+    }
+
+    public int getKeyOrderedLanes() {
+        return this.keyOrderedLanes;
+    }
+
+    /**
+     * Specify json extension header, value of which is message key for key ordered consumption.
+     * @param extKey json extension header name
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setKeyOrderedExtKey(String extKey) {
+        if (StringUtils.isBlank(extKey)) {
+            throw new IllegalArgumentException("Key ordered extension key should not be blank.");
+        }
+        this.keyOrderedExtKey = extKey;
+        return this;
+    }
+
+    public String getKeyOrderedExtKey() {
+        return this.keyOrderedExtKey;
+    }
+
+    private boolean adaptiveRdy = false;
+
+    /**
+     * Specify whether RDY of consumer connections is sized by adaptive controller. When it is enabled, messages in
+     * flight of consumer are sized from measured handler latency, worker utilisation and msg timeout, in place of
+     * stepping RDY on each consumption result, and shared evenly by connections. Consumer worker pool size is taken
+     * as number of messages consumed concurrently. It does not apply to ordered consumption. Default is false.
+     * @param adaptiveRdy {@link Boolean#TRUE} to enable adaptive RDY
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setAdaptiveRdy(boolean adaptiveRdy) {
+        this.adaptiveRdy = adaptiveRdy;
+        return this;
+    }
+
+    public boolean isAdaptiveRdy() {
+        return this.adaptiveRdy;
+    }
+
+    private int maxInFlight = 0;
+
+    /**
+     * Specify max messages in flight of consumer across all its connections, like max-in-flight of go-nsq. The budget
+     * is apportioned as RDY of connections on each RDY redistribution, towards connections with backlog, while idle
+     * connections are kept at RDY 1, or 0 when budget is less than connections. With adaptive RDY enabled, messages in
+     * flight sized by adaptive controller are capped by the budget. It does not apply to ordered consumption. Default
+     * is 0, which means no budget.
+     * @param maxInFlight max messages in flight of consumer, 0 to disable
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 0) {
+            throw new IllegalArgumentException("Max in flight should not be negative.");
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    public int getMaxInFlight() {
+        return this.maxInFlight;
+    }
+
+    private NSQTransport transport = NSQTransport.AUTO;
+    private boolean tcpQuickAck = false;
+    private int busyPollInMicrosecond = 0;
+
+    /**
+     * Specify netty transport for event loop groups created for client, native epoll is used when it is available by
+     * default. Transport of shared event loop group is specified with system property
+     * {@value NSQTransport#TRANSPORT_PROPERTY}.
+     * @param transport transport, {@link NSQTransport#AUTO} by default
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setTransport(NSQTransport transport) {
+        if (null == transport) {
+            throw new IllegalArgumentException("Transport should not be null.");
+        }
+        this.transport = transport;
+        return this;
+    }
+
+    public NSQTransport getTransport() {
+        return this.transport;
+    }
+
+    /**
+     * Enable TCP_QUICKACK on connections, which takes effect with epoll transport only.
+     * @param enable {@link Boolean#TRUE} to enable TCP_QUICKACK
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setTcpQuickAck(boolean enable) {
+        this.tcpQuickAck = enable;
+        return this;
+    }
+
+    public boolean isTcpQuickAck() {
+        return this.tcpQuickAck;
+    }
+
+    /**
+     * Specify SO_BUSY_POLL on connections, which takes effect with epoll transport, and netty version supporting it.
+     * @param busyPoll busy poll timeout in microseconds, 0 to disable
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setBusyPollInMicrosecond(int busyPoll) {
+        if (busyPoll < 0) {
+            throw new IllegalArgumentException("Busy poll timeout should not be negative.");
+        }
+        this.busyPollInMicrosecond = busyPoll;
+        return this;
+    }
+
+    public int getBusyPollInMicrosecond() {
+        return this.busyPollInMicrosecond;
+    }
+
+    /**
+     * Policy of producer when write buffers of all candidate connections are above high water mark.
+     */
+    public enum UnwritablePolicy {
+        /**
+         * wait for connection to become writable within connection wait timeout, then fail
+         */
+        BLOCK,
+        /**
+         * fail publish at once
+         */
+        FAIL
+    }
+
+    private int writeBufferLowWaterMarkInByte = 32 * 1024;
+    private int writeBufferHighWaterMarkInByte = 64 * 1024;
+    private UnwritablePolicy unwritablePolicy = UnwritablePolicy.BLOCK;
+
+    /**
+     * Specify write buffer water marks of connections. Connection becomes unwritable when bytes pending in its outbound
+     * buffer exceed high water mark, and writable again when they drop below low water mark. Producer skips unwritable
+     * connections, and consumer does not increase RDY of unwritable connections. Default is 32KB and 64KB.
+     * @param lowInByte low water mark in bytes
+     * @param highInByte high water mark in bytes
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setWriteBufferWaterMark(int lowInByte, int highInByte) {
+        if (lowInByte < 0 || highInByte < lowInByte) {
+            throw new IllegalArgumentException("Write buffer water marks should be non-negative, and high water mark should not be less than low water mark.");
+        }
+        this.writeBufferLowWaterMarkInByte = lowInByte;
+        this.writeBufferHighWaterMarkInByte = highInByte;
+        return this;
+    }
+
+    public int getWriteBufferLowWaterMarkInByte() {
+        return this.writeBufferLowWaterMarkInByte;
+    }
+
+    public int getWriteBufferHighWaterMarkInByte() {
+        return this.writeBufferHighWaterMarkInByte;
+    }
+
+    /**
+     * Specify policy of producer when all candidate connections for publish are unwritable.
+     * @param policy policy, {@link UnwritablePolicy#BLOCK} by default
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setUnwritablePolicy(UnwritablePolicy policy) {
+        if (null == policy) {
+            throw new IllegalArgumentException("Unwritable policy should not be null.");
+        }
+        this.unwritablePolicy = policy;
+        return this;
+    }
+
+    public UnwritablePolicy getUnwritablePolicy() {
+        return this.unwritablePolicy;
+    }
+
+    private boolean tcpNoDelay = true;
+    private int socketSendBufferInByte = 0;
+    private int socketReceiveBufferInByte = 0;
+    private boolean pooledAllocator = true;
+    private int idleTimeoutInSecond = 120;
+
+    /**
+     * Enable TCP_NODELAY on connections, default is {@link Boolean#TRUE}.
+     * @param enable {@link Boolean#TRUE} to disable Nagle's algorithm
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setTcpNoDelay(boolean enable) {
+        this.tcpNoDelay = enable;
+        return this;
+    }
+
+    public boolean isTcpNoDelay() {
+        return this.tcpNoDelay;
+    }
+
+    /**
+     * Specify SO_SNDBUF and SO_RCVBUF of connections.
+     * @param sendBufferInByte send buffer size in bytes, 0 for system default
+     * @param receiveBufferInByte receive buffer size in bytes, 0 for system default
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setSocketBufferSize(int sendBufferInByte, int receiveBufferInByte) {
+        if (sendBufferInByte < 0 || receiveBufferInByte < 0) {
+            throw new IllegalArgumentException("Socket buffer size should not be negative.");
+        }
+        this.socketSendBufferInByte = sendBufferInByte;
+        this.socketReceiveBufferInByte = receiveBufferInByte;
+        return this;
+    }
+
+    public int getSocketSendBufferInByte() {
+        return this.socketSendBufferInByte;
+    }
+
+    public int getSocketReceiveBufferInByte() {
+        return this.socketReceiveBufferInByte;
+    }
+
+    /**
+     * Specify whether connections allocate buffers from pooled allocator, which is faster and allocates less garbage,
+     * while unpooled allocator keeps less memory reserved. Default is {@link Boolean#TRUE}.
+     * @param pooled {@link Boolean#TRUE} for pooled allocator
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setPooledAllocator(boolean pooled) {
+        this.pooledAllocator = pooled;
+        return this;
+    }
+
+    public boolean isPooledAllocator() {
+        return this.pooledAllocator;
+    }
+
+    /**
+     * Specify idle timeout of connections, after which heartbeat is validated on connection with nothing read. It
+     * should be larger than heartbeat interval. Default is 120 seconds.
+     * @param idleTimeout idle timeout in seconds
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setIdleTimeoutInSecond(int idleTimeout) {
+        if (idleTimeout < 1) {
+            throw new IllegalArgumentException("Idle timeout should be positive.");
+        }
+        this.idleTimeoutInSecond = idleTimeout;
+        return this;
+    }
+
+    public int getIdleTimeoutInSecond() {
+        return this.idleTimeoutInSecond;
+    }
+
+    /**
+     * Named profiles which set coordinated performance settings for a kind of workload.
+     */
+    public enum TuningProfile {
+        /**
+         * flush every command at once, no output buffering in nsqd, and small RDY, for lowest delivery latency
+         */
+        LOW_LATENCY,
+        /**
+         * coalesced flushes, large socket and write buffers, buffered output in nsqd, large RDY, more connections and
+         * consumer workers, for highest throughput
+         */
+        HIGH_THROUGHPUT,
+        /**
+         * unpooled allocator, small buffers, few connections, threads and RDY, and Nagle's algorithm, for least memory
+         * and threads
+         */
+        LOW_FOOTPRINT
+    }
+
+    private TuningProfile tuningProfile = null;
+
+    /**
+     * Apply settings of pass in tuning profile. Settings could still be overridden with their setters after profile
+     * is applied.
+     * @param profile tuning profile
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setTuningProfile(TuningProfile profile) {
+        if (null == profile) {
+            throw new IllegalArgumentException("Tuning profile should not be null.");
+        }
+        final int cores = Runtime.getRuntime().availableProcessors();
+        switch (profile) {
+            case LOW_LATENCY: {
+                setTcpNoDelay(true);
+                setTcpQuickAck(true);
+                setSocketBufferSize(0, 0);
+                setPooledAllocator(true);
+                setCommandFlushBatchSize(1);
+                setCommandFlushDelayInMicrosecond(0L);
+                setWriteBufferWaterMark(32 * 1024, 64 * 1024);
+                setOutputBufferSize(-1);
+                setOutputBufferTimeoutInMillisecond(null);
+                setRdy(DEFAULT_RDY);
+                setConnectionPoolSize(30);
+                setMinIdleConnectionForProducer(4);
+                setConsumerWorkerPoolSize(cores * 4);
+                break;
+            }
+            case HIGH_THROUGHPUT: {
+                setTcpNoDelay(true);
+                setTcpQuickAck(false);
+                setSocketBufferSize(1024 * 1024, 1024 * 1024);
+                setPooledAllocator(true);
+                setCommandFlushBatchSize(256);
+                setCommandFlushDelayInMicrosecond(200L);
+                setWriteBufferWaterMark(256 * 1024, 1024 * 1024);
+                setOutputBufferSize(64 * 1024);
+                setOutputBufferTimeoutInMillisecond(100);
+                setRdy(50);
+                setConnectionPoolSize(50);
+                setMinIdleConnectionForProducer(4);
+                setConsumerWorkerPoolSize(cores * 8);
+                break;
+            }
+            default: {
+                setTcpNoDelay(false);
+                setTcpQuickAck(false);
+                setSocketBufferSize(32 * 1024, 32 * 1024);
+                setPooledAllocator(false);
+                setCommandFlushBatchSize(64);
+                setCommandFlushDelayInMicrosecond(1000L);
+                setWriteBufferWaterMark(8 * 1024, 32 * 1024);
+                setOutputBufferSize(null);
+                setOutputBufferTimeoutInMillisecond(null);
+                setRdy(1);
+                setConnectionPoolSize(4);
+                setMinIdleConnectionForProducer(1);
+                setConsumerWorkerPoolSize(cores);
+            }
+        }
+        this.tuningProfile = profile;
+        return this;
+    }
+
+    /**
+     * @return tuning profile applied last, null if none is applied
+     */
+    public TuningProfile getTuningProfile() {
+        return this.tuningProfile;
+    }
+
+    /**
+     * Specify number of connections per nsqd partition bound to publishing threads in producer. Publishing thread maps to
+     * one bound connection by thread id, publishes on it without borrowing from connection pool, and falls back to
+     * connection pool when bound connection is busy with another thread or broken. Bound connections are capped to
+     * half of connection size, to leave connections for threads not bound. Bound connection idle longer than idle
+     * eviction time of pool is returned to pool, and bound connections of expired topic are returned to pool. Default
+     * is 0, which disables thread affine binding.
+     * @param size number of bound connections per nsqd partition, 0 to disable
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setThreadAffineConnectionSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Thread affine connection size should not be negative.");
+        }
+        this.threadAffineConnectionSize = size;
+        return this;
+    }
+
+    public int getThreadAffineConnectionSize() {
+        return this.threadAffineConnectionSize;
+    }
+
     public long getProducerConnectionEvictIntervalInMillSec() {
         return this.producerConnectionEvictIntervalMillSec;
     }
@@ -996,6 +1586,54 @@ public class NSQConfig implements java.io.Serializable, Cloneable {
         return this.consumerWorkerPoolSize;
     }
 
+    private int consumerConcurrency = 0;
+
+    /**
+     * Specify messages consumer handles concurrently, which sizes RDY of consumer in place of consumer worker pool
+     * size. Set it with executor not bounded by pool size, like {@link ConsumerExecutors#VIRTUAL_THREAD_PER_MESSAGE},
+     * to keep more messages of handler blocking in I/O in flight.
+     * @param concurrency messages handled concurrently
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setConsumerConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Consumer concurrency smaller than 1 is not accepted.");
+        }
+        this.consumerConcurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * @return messages consumer handles concurrently, consumer worker pool size if not specified
+     */
+    public int getConsumerConcurrency() {
+        return this.consumerConcurrency > 0 ? this.consumerConcurrency : this.consumerWorkerPoolSize;
+    }
+
+    private transient ConsumerExecutorFactory consumerExecutorFactory = null;
+
+    /**
+     * Specify factory of executor consumer runs message handler on, in place of fixed thread pool of consumer worker
+     * pool size. Use {@link ConsumerExecutors#VIRTUAL_THREAD_PER_MESSAGE} for message handler blocking in I/O.
+     * @param factory consumer executor factory
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setConsumerExecutorFactory(ConsumerExecutorFactory factory) {
+        if (null == factory) {
+            throw new IllegalArgumentException("Consumer executor factory should not be null.");
+        }
+        this.consumerExecutorFactory = factory;
+        return this;
+    }
+
+    /**
+     * @return consumer executor factory, {@link ConsumerExecutors#FIXED_THREAD_POOL} by default
+     */
+    @JsonIgnore
+    public ConsumerExecutorFactory getConsumerExecutorFactory() {
+        return null == this.consumerExecutorFactory ? ConsumerExecutors.FIXED_THREAD_POOL : this.consumerExecutorFactory;
+    }
+
     private enum ConsumePolicy {
         SKIP
     }
@@ -1085,6 +1723,62 @@ public class NSQConfig implements java.io.Serializable, Cloneable {
         return this.cleanTopicResource4Producer;
     }
 
+    private long topicActivityRetentionInMillisecond = 3600 * 1000L;
+    private long topicPrewarmIntervalInMillisecond = 0L;
+    private String topicActivityHistoryFile = null;
+
+    /**
+     * Specify retention of topic publish activity for producer. Resources(partition info, connections) of topic not
+     * published within retention are cleaned when {@link NSQConfig#setEnableCleanIdleTopicResourceForProducer(boolean)}
+     * is enabled, and topics published within retention are prewarmed when prewarm is enabled. Default is 1 hour.
+     * @param retention retention in milliseconds
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setTopicActivityRetentionInMillisecond(long retention) {
+        if (retention <= 0) {
+            throw new IllegalArgumentException("Topic activity retention should be positive.");
+        }
+        this.topicActivityRetentionInMillisecond = retention;
+        return this;
+    }
+
+    public long getTopicActivityRetentionInMillisecond() {
+        return this.topicActivityRetentionInMillisecond;
+    }
+
+    /**
+     * Specify interval for producer to prewarm topics published within retention, by resolving partitions and preparing
+     * connections to nsqd ahead of publish. Default is 0, which disables scheduled prewarm.
+     * @param interval prewarm interval in milliseconds, 0 to disable
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setTopicPrewarmIntervalInMillisecond(long interval) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("Topic prewarm interval should not be negative.");
+        }
+        this.topicPrewarmIntervalInMillisecond = interval;
+        return this;
+    }
+
+    public long getTopicPrewarmIntervalInMillisecond() {
+        return this.topicPrewarmIntervalInMillisecond;
+    }
+
+    /**
+     * Specify file to save topic activity history in, producer loads history on start and prewarms topics published
+     * within retention, then saves history on prewarm and close.
+     * @param path path of history file, null to disable
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setTopicActivityHistoryFile(String path) {
+        this.topicActivityHistoryFile = path;
+        return this;
+    }
+
+    public String getTopicActivityHistoryFile() {
+        return this.topicActivityHistoryFile;
+    }
+
     private String toFilterIdentifyJsonString() throws JsonProcessingException {
         ObjectNode root = SystemUtil.getObjectMapper().createObjectNode();
         root.put("type", this.getConsumeMessageFilterMode().getFilter().getType());
@@ -1302,4 +1996,74 @@ public class NSQConfig implements java.io.Serializable, Cloneable {
         this.threadPoolSize4IO = threadPoolSize4IO;
         return this;
     }
+
+    /**
+     * Specify blob store for claim check. For producer, message body larger than claim check threshold is stored in
+     * blob store, and only reference to it is published. For consumer, message body is resolved from blob store
+     * lazily when it is accessed. Claim check is disabled when blob store is not specified.
+     * @param blobStore blob store for message body
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setClaimCheckBlobStore(final BlobStore blobStore) {
+        this.claimCheckBlobStore = blobStore;
+        return this;
+    }
+
+    @JsonIgnore
+    public BlobStore getClaimCheckBlobStore() {
+        return this.claimCheckBlobStore;
+    }
+
+    /**
+     * Specify message body length threshold in byte, above which message body is stored in claim check blob store.
+     * @param thresholdInByte threshold in byte
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setClaimCheckThresholdInByte(int thresholdInByte) {
+        if (thresholdInByte < 0) {
+            throw new IllegalArgumentException("Claim check threshold smaller than 0 is not accepted.");
+        }
+        this.claimCheckThresholdInByte = thresholdInByte;
+        return this;
+    }
+
+    public int getClaimCheckThresholdInByte() {
+        return this.claimCheckThresholdInByte;
+    }
+
+    /**
+     * Enable adaptive publish concurrency limit per nsqd data node for producer. Concurrency limit starts from
+     * connection pool size, and adjusts in additive-increase/multiplicative-decrease on publish results. Limit
+     * decreases when nsqd responds E_PUB_FAILED, publish timeout, or publish latency exceeds threshold. Publish beyond
+     * limit waits at most {@link NSQConfig#getConnWaitTimeoutForProducerInMilliSec()}, then goes to another nsqd or
+     * fails.
+     * @param enable {@link Boolean#TRUE} to enable concurrency limit
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setPublishConcurrencyLimitEnabled(boolean enable) {
+        this.publishConcurrencyLimitEnabled = enable;
+        return this;
+    }
+
+    public boolean isPublishConcurrencyLimitEnabled() {
+        return this.publishConcurrencyLimitEnabled;
+    }
+
+    /**
+     * Specify publish latency threshold, above which publish is regarded as pushback from nsqd, and concurrency limit
+     * decreases. Default is 500ms.
+     * @param threshold latency threshold in milliseconds
+     * @return {@link NSQConfig}
+     */
+    public NSQConfig setPublishLatencyThresholdInMillisecond(long threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Publish latency threshold should be positive.");
+        }
+        this.publishLatencyThresholdInMillisecond = threshold;
+        return this;
+    }
+
+    public long getPublishLatencyThresholdInMillisecond() {
+        return this.publishLatencyThresholdInMillisecond;
+    }
 }
@@ -3,11 +3,14 @@ package com.youzan.nsq.client.entity;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.youzan.nsq.client.Consumer;
 import com.youzan.nsq.client.MessageMetadata;
+import com.youzan.nsq.client.claimcheck.ClaimCheck;
 import com.youzan.nsq.client.core.command.Close;
 import com.youzan.nsq.client.core.command.PubExt;
 import com.youzan.nsq.client.exception.NSQException;
+import com.youzan.nsq.client.serializer.Serializer;
 import com.youzan.util.IOUtil;
 import com.youzan.util.SystemUtil;
+import io.netty.buffer.Unpooled;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,6 +29,8 @@ public class NSQMessage implements MessageMetadata, Serializable{
     private final byte[] attempts;
     private final byte[] messageID;
     private final byte[] messageBody;
+    //message body resolved from claim check blob store
+    private transient byte[] resolvedMessageBody = null;
     final Address address;
     final Long connectionID; // be sure that is not null
 
@@ -259,6 +264,18 @@ public class NSQMessage implements MessageMetadata, Serializable{
      * @return the messageBody
      */
     public byte[] getMessageBody() {
+        if (null != resolvedMessageBody) {
+            return resolvedMessageBody;
+        }
+        if (ClaimCheck.isClaimCheck(messageBody) && null != consumer && null != consumer.getConfig()
+                && null != consumer.getConfig().getClaimCheckBlobStore()) {
+            try {
+                resolvedMessageBody = ClaimCheck.resolve(messageBody, consumer.getConfig().getClaimCheckBlobStore());
+            } catch (IOException e) {
+                throw new IllegalStateException("Fail to resolve message body of claim check " + ClaimCheck.getReference(messageBody), e);
+            }
+            return resolvedMessageBody;
+        }
         return messageBody;
     }
 
@@ -271,6 +288,8 @@ public class NSQMessage implements MessageMetadata, Serializable{
     final int readableAttempts;
     final String readableMsgID;
     protected String readableContent = null;
+    //deserialized message body, with serializer and type it is deserialized by
+    private transient volatile Content content = null;
     private Integer nextConsumingInSecond; // recommend the value is 60 sec
     final long internalID;
     final long traceID;
@@ -285,6 +304,7 @@ public class NSQMessage implements MessageMetadata, Serializable{
         if (null != readableContent) {
             return readableContent;
         }
+        byte[] messageBody = getMessageBody();
         if (messageBody != null && messageBody.length > 0) {
             readableContent = new String(messageBody, IOUtil.DEFAULT_CHARSET);
         } else {
@@ -293,6 +313,45 @@ public class NSQMessage implements MessageMetadata, Serializable{
         return readableContent;
     }
 
+    /**
+     * Deserialize message body with pass in serializer. Message body is deserialized once and deserialized object is
+     * cached for following invocations with the same serializer and type.
+     *
+     * @param type type of object to deserialize into
+     * @param serializer serializer which message body is serialized by in producer
+     * @param <T> type of object
+     * @return deserialized object, or null if message body is empty
+     * @throws IOException exception in deserialization
+     */
+    public <T> T getContent(final Class<T> type, final Serializer<? super T> serializer) throws IOException {
+        Content cached = content;
+        if (null != cached && serializer == cached.serializer && type == cached.type) {
+            return type.cast(cached.value);
+        }
+        byte[] messageBody = getMessageBody();
+        if (messageBody == null || messageBody.length == 0) {
+            return null;
+        }
+        T obj = type.cast(serializer.deserialize(Unpooled.wrappedBuffer(messageBody), type));
+        content = new Content(serializer, type, obj);
+        return obj;
+    }
+
+    /**
+     * Deserialized message body with serializer and type it is deserialized by, which are read and replaced together.
+     */
+    private static final class Content {
+        final Serializer<?> serializer;
+        final Class<?> type;
+        final Object value;
+
+        Content(Serializer<?> serializer, Class<?> type, Object value) {
+            this.serializer = serializer;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
     /**
      * @param readableContent the readableContent to set
      */
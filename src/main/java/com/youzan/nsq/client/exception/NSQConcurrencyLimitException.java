@@ -0,0 +1,12 @@
+package com.youzan.nsq.client.exception;
+
+/**
+ * Raised when publish concurrency of all candidate nsqd data nodes reach their limit, and no permit is released
+ * within connection wait timeout.
+ */
+public class NSQConcurrencyLimitException extends NSQException {
+
+    public NSQConcurrencyLimitException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,23 @@
+package com.youzan.nsq.client.exception;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Raised when deadline of one call expires, stage in which deadline expires is included in message.
+ */
+public class NSQDeadlineExceededException extends NSQTimeoutException {
+
+    private final String stage;
+
+    public NSQDeadlineExceededException(String stage, long timeoutInMillisecond) {
+        super(new TimeoutException("Deadline of " + timeoutInMillisecond + " milliSec exceeded in " + stage + "."));
+        this.stage = stage;
+    }
+
+    /**
+     * @return stage in which deadline expires
+     */
+    public String getStage() {
+        return this.stage;
+    }
+}
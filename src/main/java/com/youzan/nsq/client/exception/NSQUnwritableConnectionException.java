@@ -0,0 +1,12 @@
+package com.youzan.nsq.client.exception;
+
+/**
+ * Raised when write buffers of all candidate connections for publish are above high water mark, and none of them
+ * becomes writable within connection wait timeout, or unwritable policy is fail.
+ */
+public class NSQUnwritableConnectionException extends NSQException {
+
+    public NSQUnwritableConnectionException(String message) {
+        super(message);
+    }
+}
@@ -24,56 +24,29 @@ public class ErrorFrame extends NSQFrame {
         return new String(getData(), DEFAULT_CHARSET).trim();
     }
 
+    //error prefixes in order of matching, compared in bytes without decoding frame data
+    private static final Response[] ERRORS = new Response[]{
+            Response.E_INVALID, Response.E_BAD_TOPIC, Response.E_BAD_MESSAGE, Response.E_FAILED_ON_NOT_LEADER,
+            Response.E_FAILED_ON_NOT_WRITABLE, Response.E_TOPIC_NOT_EXIST, Response.E_PUB_FAILED, Response.E_MPUB_FAILED,
+            Response.E_FIN_FAILED, Response.E_SUB_ORDER_IS_MUST, Response.E_TAG_NOT_SUPPORT, Response.E_SUB_EXTEND_NEED,
+            Response.E_BAD_TAG, Response.E_EXT_NOT_SUPPORT, Response.E_BAD_BODY
+    };
+    private static final byte[][] ERROR_PREFIXES = new byte[ERRORS.length][];
+
+    static {
+        for (int i = 0; i < ERRORS.length; i++) {
+            String prefix = ERRORS[i] == Response.E_INVALID ? "E_INVALID " : ERRORS[i].getContent();
+            ERROR_PREFIXES[i] = prefix.getBytes(ASCII);
+        }
+    }
+
     /**
      * @return the err
      */
     public Response getError() {
-        final String content = getMessage();
-        if (null != content && !content.isEmpty()) {
-            if (content.startsWith("E_INVALID ")) {
-                return Response.E_INVALID;
-            }
-            if (content.startsWith("E_BAD_TOPIC")) {
-                return Response.E_BAD_TOPIC;
-            }
-            if (content.startsWith("E_BAD_MESSAGE")) {
-                return Response.E_BAD_MESSAGE;
-            }
-            if (content.startsWith("E_FAILED_ON_NOT_LEADER")) {
-                return Response.E_FAILED_ON_NOT_LEADER;
-            }
-            if (content.startsWith("E_FAILED_ON_NOT_WRITABLE")) {
-                return Response.E_FAILED_ON_NOT_WRITABLE;
-            }
-            if (content.startsWith("E_TOPIC_NOT_EXIST")) {
-                return Response.E_TOPIC_NOT_EXIST;
-            }
-            if (content.startsWith("E_PUB_FAILED")) {
-                return Response.E_PUB_FAILED;
-            }
-            if (content.startsWith("E_MPUB_FAILED")) {
-                return Response.E_MPUB_FAILED;
-            }
-            if (content.startsWith("E_FIN_FAILED")) {
-                return Response.E_FIN_FAILED;
-            }
-            if (content.startsWith("E_SUB_ORDER_IS_MUST")) {
-               return Response.E_SUB_ORDER_IS_MUST;
-            }
-            if (content.startsWith("E_TAG_NOT_SUPPORT")) {
-                return Response.E_TAG_NOT_SUPPORT;
-            }
-            if (content.startsWith("E_SUB_EXTEND_NEED")) {
-                return Response.E_SUB_EXTEND_NEED;
-            }
-            if (content.startsWith(Response.E_BAD_TAG.getContent())) {
-                return Response.E_BAD_TAG;
-            }
-            if (content.startsWith(Response.E_EXT_NOT_SUPPORT.getContent())) {
-                return Response.E_EXT_NOT_SUPPORT;
-            }
-            if (content.startsWith(Response.E_BAD_BODY.getContent())) {
-                return Response.E_BAD_BODY;
+        for (int i = 0; i < ERRORS.length; i++) {
+            if (contentStartsWith(ERROR_PREFIXES[i])) {
+                return ERRORS[i];
             }
         }
         return null;
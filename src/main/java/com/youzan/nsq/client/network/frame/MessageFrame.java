@@ -1,10 +1,11 @@
 package com.youzan.nsq.client.network.frame;
 
 import com.youzan.nsq.client.entity.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 public class MessageFrame extends NSQFrame {
@@ -97,55 +98,68 @@ public class MessageFrame extends NSQFrame {
     }
 
     public void setData(byte[] bytes, boolean shouldExt) {
-        System.arraycopy(bytes, 0, timestamp, 0, 8);
-        System.arraycopy(bytes, 8, attempts, 0, 2);
-
-        System.arraycopy(bytes, 10, messageID, 0, 16);
-        System.arraycopy(bytes, 10, internalID, 0, 8);
-        System.arraycopy(bytes, 18, traceID, 0, 8);
-
-        int messageBodyStart;
-        int messageBodySize;
-        if(!shouldExt) {
-            messageBodyStart = 26;//8 + 2 + 16;
-        } else {
+        setData(Unpooled.wrappedBuffer(bytes), shouldExt);
+    }
+
+    /**
+     * read message fields in place from pass in buffer, each field is copied once into its own array, and buffer is
+     * not retained by frame.
+     * @param data frame data
+     * @param shouldExt {@link Boolean#TRUE} if message is of extension format
+     */
+    public void setData(final ByteBuf data, boolean shouldExt) {
+        final int start = data.readerIndex();
+        final int end = start + data.readableBytes();
+        data.getBytes(start, timestamp);
+        data.getBytes(start + 8, attempts);
+
+        data.getBytes(start + 10, messageID);
+        data.getBytes(start + 10, internalID);
+        data.getBytes(start + 18, traceID);
+
+        int messageBodyStart = start + 26;//8 + 2 + 16;
+        if(shouldExt) {
             //read ext content & length here
             //version
-            System.arraycopy(bytes, 26, extVerBytes, 0, 1);
+            extVerBytes[0] = data.getByte(start + 26);
             int extVer = (int)extVerBytes[0];
             switch (extVer) {
                 case 0:
-                    messageBodyStart = 27;//8+2+16+1
+                    messageBodyStart = start + 27;//8+2+16+1
                     break;
                 default:
-                    byte[] extBytesLenBytes = new byte[2];
                     //ext content length
-                    System.arraycopy(bytes, 27, extBytesLenBytes, 0, 2);
-                    int extBytesLen = ByteBuffer.wrap(extBytesLenBytes).getShort();
+                    int extBytesLen = data.getShort(start + 27);
                     //allocate
                     extBytes = new byte[extBytesLen];
-                    System.arraycopy(bytes, 29, extBytes, 0, extBytesLen);
-                    messageBodyStart = 29 + extBytesLen;//8 + 2 + 16 + 1 + 2 + extBytesLen;
+                    data.getBytes(start + 29, extBytes);
+                    messageBodyStart = start + 29 + extBytesLen;//8 + 2 + 16 + 1 + 2 + extBytesLen;
             }
         }
-        messageBodySize = bytes.length - (messageBodyStart);
-        messageBody = new byte[messageBodySize];
+        messageBodyStart = readExtraFields(data, messageBodyStart);
+        messageBody = new byte[end - messageBodyStart];
+        data.getBytes(messageBodyStart, messageBody);
+    }
 
-        System.arraycopy(bytes, messageBodyStart, messageBody, 0, messageBodySize);
+    /**
+     * read fields between message header and message body
+     * @param data frame data
+     * @param index index in buffer where extra fields start
+     * @return index in buffer where message body starts
+     */
+    int readExtraFields(final ByteBuf data, int index) {
+        return index;
+    }
+
+    @Override
+    public void setData(ByteBuf data) {
+        setData(data, false);
     }
 
     @Override
     @Deprecated
     public void setData(byte[] bytes) {
-        final int messageBodySize = bytes.length - (8 + 2 + 16);
-        messageBody = new byte[messageBodySize];
-        System.arraycopy(bytes, 0, timestamp, 0, 8);
-        System.arraycopy(bytes, 8, attempts, 0, 2);
-
-        System.arraycopy(bytes, 10, messageID, 0, 16);
-        System.arraycopy(bytes, 10, internalID, 0, 8);
-        System.arraycopy(bytes, 18, traceID, 0, 8);
-        System.arraycopy(bytes, 26, messageBody, 0, messageBodySize);
+        setData(Unpooled.wrappedBuffer(bytes), false);
     }
 
     @Override
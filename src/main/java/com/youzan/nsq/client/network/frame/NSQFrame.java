@@ -1,6 +1,7 @@
 package com.youzan.nsq.client.network.frame;
 
 import com.youzan.nsq.client.entity.Response;
+import io.netty.buffer.ByteBuf;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,6 +57,16 @@ public abstract class NSQFrame {
         this.data = data;
     }
 
+    /**
+     * set frame data from pass in buffer, readable bytes of which are frame data. Buffer is not retained by frame.
+     * @param data frame data
+     */
+    public void setData(ByteBuf data) {
+        final byte[] bytes = new byte[data.readableBytes()];
+        data.getBytes(data.readerIndex(), bytes);
+        setData(bytes);
+    }
+
     public static NSQFrame newInstance(final int type) {
         switch (type) {
             case 0:
@@ -89,7 +100,78 @@ public abstract class NSQFrame {
         }
     }
 
+    private static final byte[] HEARTBEAT_BYTES = Response._HEARTBEAT_.getContent().getBytes(ASCII);
+
     public boolean isHeartBeat() {
-        return Response._HEARTBEAT_.getContent().equals(this.getMessage());
+        return contentEquals(HEARTBEAT_BYTES);
+    }
+
+    /**
+     * compare frame data, with leading and trailing whitespace trimmed as {@link #getMessage()} does, with pass in
+     * bytes, without decoding frame data into {@link String}
+     * @param expected expected content in bytes
+     * @return {@link Boolean#TRUE} if trimmed frame data equals expected content
+     */
+    protected boolean contentEquals(final byte[] expected) {
+        final byte[] bytes = this.data;
+        if (null == bytes) {
+            return false;
+        }
+        final int start = trimmedStart(bytes);
+        final int end = trimmedEnd(bytes, start);
+        return end - start == expected.length && regionMatches(bytes, start, expected);
+    }
+
+    /**
+     * @param prefix expected prefix in bytes
+     * @return {@link Boolean#TRUE} if frame data, with leading whitespace trimmed, starts with pass in prefix
+     */
+    protected boolean contentStartsWith(final byte[] prefix) {
+        final byte[] bytes = this.data;
+        if (null == bytes) {
+            return false;
+        }
+        final int start = trimmedStart(bytes);
+        return bytes.length - start >= prefix.length && regionMatches(bytes, start, prefix);
+    }
+
+    private static boolean regionMatches(final byte[] bytes, int offset, final byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (bytes[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //whitespace as in String#trim, multi-byte UTF-8 sequences consist of bytes above 0x7f only
+    static int trimmedStart(final byte[] bytes) {
+        int start = 0;
+        while (start < bytes.length && (bytes[start] & 0xff) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    static int trimmedEnd(final byte[] bytes, int start) {
+        int end = bytes.length;
+        while (end > start && (bytes[end - 1] & 0xff) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * read big-endian int64 in place
+     */
+    static long getLong(final byte[] bytes, int index) {
+        return ((long) getInt(bytes, index) << 32) | (getInt(bytes, index + 4) & 0xffffffffL);
+    }
+
+    /**
+     * read big-endian int32 in place
+     */
+    static int getInt(final byte[] bytes, int index) {
+        return (bytes[index] & 0xff) << 24 | (bytes[index + 1] & 0xff) << 16 | (bytes[index + 2] & 0xff) << 8 | (bytes[index + 3] & 0xff);
     }
 }
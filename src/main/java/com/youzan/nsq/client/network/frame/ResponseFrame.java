@@ -3,14 +3,17 @@ package com.youzan.nsq.client.network.frame;
 import com.youzan.nsq.client.MessageMetadata;
 import com.youzan.nsq.client.MessageReceipt;
 
+import com.youzan.nsq.client.entity.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.ByteBuffer;
-
 public class ResponseFrame extends NSQFrame implements MessageMetadata{
     private static final Logger logger = LoggerFactory.getLogger(ResponseFrame.class);
-    private MessageReceipt receipt = new MessageReceipt();
+    private static final byte[] OK_BYTES = Response.OK.getContent().getBytes(ASCII);
+    //OK + internal ID + trace ID + disk queue offset + disk queue data size
+    private static final int RECEIPT_LENGTH = 2 + 8 + 8 + 8 + 4;
+    //parsed lazily, as most response frames are heartbeats and OKs without receipt
+    private MessageReceipt receipt;
 
     @Override
     public FrameType getType() {
@@ -22,10 +25,11 @@ public class ResponseFrame extends NSQFrame implements MessageMetadata{
         return new String(getData(), DEFAULT_CHARSET).trim();
     }
 
-    @Override
-    public void setData(byte[] data) {
-        super.setData(data);
-        generateReceipt();
+    /**
+     * @return {@link Boolean#TRUE} if response is OK without meta data
+     */
+    public boolean isOK() {
+        return contentEquals(OK_BYTES);
     }
 
     @Override
@@ -35,9 +39,9 @@ public class ResponseFrame extends NSQFrame implements MessageMetadata{
 
     @Override
     public String toMetadataStr() {
-        String resMsg = getMessage();
         //check if has meta data
-        if(resMsg.startsWith("OK") && resMsg.length() > 2){
+        if(hasReceipt()){
+            MessageReceipt receipt = getReceipt();
             StringBuilder sb = new StringBuilder();
             sb.append(this.getClass().toString() + " meta-data:").append("\n");
             sb.append("\t[internalID]:\t").append(receipt.getInternalID()).append("\n");
@@ -51,42 +55,32 @@ public class ResponseFrame extends NSQFrame implements MessageMetadata{
     }
 
     /**
-     * Generate message receipt for publish response
-     * @return messageReceipt
+     * check if response is OK followed by meta data
      */
-    private void generateReceipt() {
-        String resMsg = getMessage();
-        //check if has meta data
-        if (resMsg.startsWith("OK") && resMsg.length() > 2) {
-            byte[] data = getData();
-
-            //internal ID
-            byte[] internalIDByte = new byte[8];
-            System.arraycopy(data, 2, internalIDByte, 0, 8);
-            long internalID = ByteBuffer.wrap(internalIDByte).getLong();
-            receipt.setInternalID(internalID);
-
-            //traceID
-            byte[] traceIDByte = new byte[8];
-            System.arraycopy(data, 10, traceIDByte, 0, 8);
-            long traceID = ByteBuffer.wrap(traceIDByte).getLong();
-            receipt.setTraceID(traceID);
-
-            //disk queue offset
-            byte[] diskqueueOffsetByte = new byte[8];
-            System.arraycopy(data, 18, diskqueueOffsetByte, 0, 8);
-            long diskQueueOffset = ByteBuffer.wrap(diskqueueOffsetByte).getLong();
-            receipt.setDiskQueueOffset(diskQueueOffset);
+    private boolean hasReceipt() {
+        byte[] data = getData();
+        return null != data && data.length >= RECEIPT_LENGTH && contentStartsWith(OK_BYTES) && !isOK();
+    }
 
-            //disk queue data size
-            byte[] diskqueueSizeByte = new byte[4];
-            System.arraycopy(data, 26, diskqueueSizeByte, 0, 4);
-            int diskQueueSize = ByteBuffer.wrap(diskqueueSizeByte).getInt();
-            receipt.setDiskQueueSize(diskQueueSize);
+    /**
+     * Generate message receipt for publish response, reading meta data in place
+     */
+    private void generateReceipt(final MessageReceipt receipt) {
+        if (hasReceipt()) {
+            byte[] data = getData();
+            receipt.setInternalID(getLong(data, 2));
+            receipt.setTraceID(getLong(data, 10));
+            receipt.setDiskQueueOffset(getLong(data, 18));
+            receipt.setDiskQueueSize(getInt(data, 26));
         }
     }
 
     public MessageReceipt getReceipt() {
+        if (null == this.receipt) {
+            MessageReceipt receipt = new MessageReceipt();
+            generateReceipt(receipt);
+            this.receipt = receipt;
+        }
         return this.receipt;
     }
 }
@@ -0,0 +1,214 @@
+package com.youzan.nsq.client.network.netty;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Detects stalled event loops. Watchdog thread submits a probe task to each event loop of watched group periodically,
+ * and measures how late the probe runs. When a probe is pending for longer than stall threshold, event loop is
+ * reported as stalled, with stack of its thread at the time, which shows what blocks the event loop. One probe per event
+ * loop is pending at most, and probes are reused, so overhead is one task per event loop per check interval.
+ */
+public class EventLoopWatchdog {
+    private static final Logger logger = LoggerFactory.getLogger(EventLoopWatchdog.class);
+    private static final long MIN_CHECK_INTERVAL_IN_MILLISECOND = 10L;
+
+    private static final Map<EventLoopGroup, EventLoopWatchdog> GROUP_2_WATCHDOG = new IdentityHashMap<>();
+
+    /**
+     * Callback of stalled event loop.
+     */
+    public interface StallListener {
+        /**
+         * @param thread thread of stalled event loop
+         * @param stallInMillisecond time event loop has not run probe for
+         * @param stackTrace stack of event loop thread when stall is detected
+         */
+        void onStall(Thread thread, long stallInMillisecond, StackTraceElement[] stackTrace);
+    }
+
+    private static final StallListener LOGGING_LISTENER = new StallListener() {
+        @Override
+        public void onStall(Thread thread, long stallInMillisecond, StackTraceElement[] stackTrace) {
+            StringBuilder sb = new StringBuilder();
+            for (StackTraceElement element : stackTrace) {
+                sb.append("\n\tat ").append(element);
+            }
+            logger.warn("Event loop thread {} stalls for {} milliseconds.{}", thread.getName(), stallInMillisecond, sb);
+        }
+    };
+
+    private final EventLoopGroup group;
+    private final long thresholdInNano;
+    private final long intervalInMillisecond;
+    private final StallListener listener;
+    private final AtomicLong stallCount = new AtomicLong(0);
+    //clients watching group via watch(), guarded by GROUP_2_WATCHDOG
+    private int watchers = 0;
+    private final List<Probe> probes = new ArrayList<>();
+    private ScheduledExecutorService scheduler;
+
+    private class Probe implements Runnable {
+        private final EventExecutor loop;
+        //0 when no probe is pending
+        private volatile long pendingSince = 0L;
+        private volatile Thread thread;
+        private volatile boolean reported = false;
+
+        Probe(EventExecutor loop) {
+            this.loop = loop;
+        }
+
+        @Override
+        public void run() {
+            this.thread = Thread.currentThread();
+            this.reported = false;
+            this.pendingSince = 0L;
+        }
+
+        void check(long now) {
+            long since = this.pendingSince;
+            if (since == 0L) {
+                if (this.loop.isShuttingDown()) {
+                    return;
+                }
+                this.pendingSince = now;
+                try {
+                    this.loop.execute(this);
+                } catch (RejectedExecutionException e) {
+                    this.pendingSince = 0L;
+                }
+                return;
+            }
+            long stall = now - since;
+            Thread thread = this.thread;
+            if (stall > thresholdInNano && !this.reported && null != thread) {
+                this.reported = true;
+                stallCount.incrementAndGet();
+                try {
+                    listener.onStall(thread, TimeUnit.NANOSECONDS.toMillis(stall), thread.getStackTrace());
+                } catch (Exception e) {
+                    logger.error("Fail to report stalled event loop.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param group event loop group to watch
+     * @param thresholdInMillisecond stall threshold, event loop not running probe for longer than which is reported
+     * @param listener callback of stalled event loop
+     */
+    public EventLoopWatchdog(EventLoopGroup group, long thresholdInMillisecond, StallListener listener) {
+        if (thresholdInMillisecond <= 0) {
+            throw new IllegalArgumentException("Stall threshold should be positive.");
+        }
+        this.group = group;
+        this.thresholdInNano = TimeUnit.MILLISECONDS.toNanos(thresholdInMillisecond);
+        this.intervalInMillisecond = Math.max(MIN_CHECK_INTERVAL_IN_MILLISECOND, thresholdInMillisecond / 2);
+        this.listener = null == listener ? LOGGING_LISTENER : listener;
+    }
+
+    /**
+     * Start watching event loops, stalls are logged in warning. Watchdog is shared by watchers of the same group, and
+     * each call should be paired with {@link #unwatch(EventLoopGroup)}.
+     * @param group event loop group to watch
+     * @param thresholdInMillisecond stall threshold, ignored if group is already watched
+     * @return watchdog of event loop group, which is shared for the same group
+     */
+    public static EventLoopWatchdog watch(EventLoopGroup group, long thresholdInMillisecond) {
+        synchronized (GROUP_2_WATCHDOG) {
+            EventLoopWatchdog watchdog = GROUP_2_WATCHDOG.get(group);
+            if (null == watchdog) {
+                watchdog = new EventLoopWatchdog(group, thresholdInMillisecond, null);
+                watchdog.start();
+                GROUP_2_WATCHDOG.put(group, watchdog);
+            } else if (watchdog.thresholdInNano != TimeUnit.MILLISECONDS.toNanos(thresholdInMillisecond)) {
+                logger.warn("Event loop group is already watched with stall threshold {} milliseconds, threshold {} milliseconds is ignored.",
+                        TimeUnit.NANOSECONDS.toMillis(watchdog.thresholdInNano), thresholdInMillisecond);
+            }
+            watchdog.watchers++;
+            return watchdog;
+        }
+    }
+
+    /**
+     * Release one watcher of pass in group. Watchdog stops when last watcher of group is released.
+     * @param group event loop group
+     */
+    public static void unwatch(EventLoopGroup group) {
+        EventLoopWatchdog watchdog;
+        synchronized (GROUP_2_WATCHDOG) {
+            watchdog = GROUP_2_WATCHDOG.get(group);
+            if (null == watchdog || --watchdog.watchers > 0) {
+                return;
+            }
+            GROUP_2_WATCHDOG.remove(group);
+        }
+        watchdog.stop();
+    }
+
+    /**
+     * @param group event loop group
+     * @return true if pass in group is watched via {@link #watch(EventLoopGroup, long)}
+     */
+    static boolean isWatched(EventLoopGroup group) {
+        synchronized (GROUP_2_WATCHDOG) {
+            return GROUP_2_WATCHDOG.containsKey(group);
+        }
+    }
+
+    public synchronized void start() {
+        if (null != this.scheduler) {
+            return;
+        }
+        for (EventExecutor loop : this.group) {
+            this.probes.add(new Probe(loop));
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "NSQ-EventLoopWatchdog");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                long now = System.nanoTime();
+                for (Probe probe : probes) {
+                    probe.check(now);
+                }
+            }
+        }, this.intervalInMillisecond, this.intervalInMillisecond, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (null != this.scheduler) {
+            this.scheduler.shutdownNow();
+            this.scheduler = null;
+            this.probes.clear();
+        }
+    }
+
+    /**
+     * @return number of stalls detected
+     */
+    public long getStallCount() {
+        return this.stallCount.get();
+    }
+}
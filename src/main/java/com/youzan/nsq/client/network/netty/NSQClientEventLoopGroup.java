@@ -0,0 +1,76 @@
+package com.youzan.nsq.client.network.netty;
+
+import com.youzan.nsq.client.entity.NSQConfig;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event loop group of a producer or consumer, resolved from config in order of:
+ * <ul>
+ * <li>event loop group specified in config, which is shared and shut down by caller;</li>
+ * <li>new event loop group owned by client, when number of event loop threads is specified in config. Its threads
+ * are named after thread name in config, or client role by default;</li>
+ * <li>default event loop group shared by all clients, {@link NSQConfig#getEventLoopGroup()}.</li>
+ * </ul>
+ * When event loop stall threshold is specified in config, resolved event loop group is watched by
+ * {@link EventLoopWatchdog}, which is shared by clients of the same group, until all of them are released.
+ */
+public class NSQClientEventLoopGroup {
+    private final EventLoopGroup group;
+    private final boolean owned;
+    private boolean watched = false;
+
+    private NSQClientEventLoopGroup(EventLoopGroup group, boolean owned) {
+        this.group = group;
+        this.owned = owned;
+    }
+
+    /**
+     * @param config nsq config of client
+     * @param role client role, used in thread name when thread name is not specified in config
+     * @return event loop group for client
+     */
+    public static NSQClientEventLoopGroup of(final NSQConfig config, final String role) {
+        NSQClientEventLoopGroup clientGroup;
+        if (null != config.getIoEventLoopGroup()) {
+            clientGroup = new NSQClientEventLoopGroup(config.getIoEventLoopGroup(), false);
+        } else if (config.getEventLoopThreads() > 0) {
+            String name = null != config.getEventLoopThreadName() ? config.getEventLoopThreadName() : "NSQ-" + role + "-IO";
+            EventLoopGroup group = config.getTransport().newEventLoopGroup(config.getEventLoopThreads(), new DefaultThreadFactory(name));
+            clientGroup = new NSQClientEventLoopGroup(group, true);
+        } else {
+            clientGroup = new NSQClientEventLoopGroup(NSQConfig.getEventLoopGroup(), false);
+        }
+        if (config.getEventLoopStallThresholdInMillisecond() > 0) {
+            EventLoopWatchdog.watch(clientGroup.get(), config.getEventLoopStallThresholdInMillisecond());
+            clientGroup.watched = true;
+        }
+        return clientGroup;
+    }
+
+    public EventLoopGroup get() {
+        return this.group;
+    }
+
+    /**
+     * @return {@link Boolean#TRUE} if event loop group is created for and owned by client
+     */
+    public boolean isOwned() {
+        return this.owned;
+    }
+
+    /**
+     * stop watching event loop group, and shut it down if it is owned by client
+     */
+    public synchronized void release() {
+        if (this.watched) {
+            this.watched = false;
+            EventLoopWatchdog.unwatch(this.group);
+        }
+        if (this.owned && !this.group.isShuttingDown()) {
+            this.group.shutdownGracefully(1, 2, TimeUnit.SECONDS);
+        }
+    }
+}
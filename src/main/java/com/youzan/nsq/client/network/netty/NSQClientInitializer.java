@@ -7,6 +7,19 @@ import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.timeout.IdleStateHandler;
 
 public class NSQClientInitializer extends ChannelInitializer<SocketChannel> {
+    private final int idleTimeoutInSecond;
+
+    public NSQClientInitializer() {
+        this(120);
+    }
+
+    /**
+     * @param idleTimeoutInSecond reader, writer and all idle timeout of connection
+     */
+    public NSQClientInitializer(int idleTimeoutInSecond) {
+        this.idleTimeoutInSecond = idleTimeoutInSecond;
+    }
+
     @Override
     protected void initChannel(SocketChannel ch) throws Exception {
         ChannelPipeline pipeline = ch.pipeline();
@@ -14,10 +27,11 @@ public class NSQClientInitializer extends ChannelInitializer<SocketChannel> {
         LengthFieldBasedFrameDecoder dec = new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, Integer_BYTES);
         dec.setSingleDecode(true);
 
-        pipeline.addLast("IdleStateHandler", new IdleStateHandler(120, 120, 120));
+        pipeline.addLast("IdleStateHandler", new IdleStateHandler(idleTimeoutInSecond, idleTimeoutInSecond, idleTimeoutInSecond));
         pipeline.addLast("LengthFieldBasedFrameDecoder", dec); // in
         pipeline.addLast("NSQDecoder", new NSQDecoder()); // in
         pipeline.addLast("NSQEncoder", new NSQEncoder()); // out
+        pipeline.addLast("FlushCoalescingHandler", new NSQFlushCoalescingHandler()); // out
         pipeline.addLast("FeatureDetectionHandler", new NSQFeatureDetectionHandler()); // in
         pipeline.addLast("NSQHandler", new NSQHandler()); // in
     }
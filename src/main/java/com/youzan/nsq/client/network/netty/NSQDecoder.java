@@ -14,29 +14,59 @@ import java.util.List;
 
 public class NSQDecoder extends MessageToMessageDecoder<ByteBuf> {
 
+    //per channel flags, cached once they are set on channel, as decoder is not shared among channels
+    private Attribute<Boolean> attrOrder;
+    private Attribute<Boolean> attrExt;
+    private Boolean isOrdered;
+    private Boolean ext;
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        super.handlerAdded(ctx);
+        this.attrOrder = ctx.channel().attr(Client.ORDERED);
+        this.attrExt = ctx.channel().attr(NSQConnection.EXTEND_SUPPORT);
+    }
+
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
         final int size = in.readInt();
         final int frameType = in.readInt();
-        Attribute<Boolean> attrOrder =  ctx.channel().attr(Client.ORDERED);
-        Boolean isOrdered = null == attrOrder.get() ? false : attrOrder.get();
 
-        Attribute<Boolean> attrExt =  ctx.channel().attr(NSQConnection.EXTEND_SUPPORT);
-        Boolean ext = null == attrExt.get() ? false : attrExt.get();
-
-        final NSQFrame frame = NSQFrame.newInstance(frameType, isOrdered);
+        final NSQFrame frame = NSQFrame.newInstance(frameType, isOrdered());
         if (frame == null) {
             // uhh, bad response from server.. what should we do?
             final String tip = String.format("Bad frame id from server (%d). It will be disconnected!", frameType);
             throw new NSQException(tip);
         }
         frame.setSize(size);
-        final byte[] body = new byte[size - 4];
-        in.readBytes(body);
+        //frame data is read in place from slice of inbound buffer, which is released after decode
+        final ByteBuf data = in.readSlice(size - 4);
         if (frame instanceof MessageFrame)
-            ((MessageFrame) frame).setData(body, ext);
+            ((MessageFrame) frame).setData(data, isExt());
         else
-            frame.setData(body);
+            frame.setData(data);
         out.add(frame);
     }
+
+    private boolean isOrdered() {
+        if (null != this.isOrdered) {
+            return this.isOrdered;
+        }
+        Boolean val = this.attrOrder.get();
+        if (null == val) {
+            return false;
+        }
+        return this.isOrdered = val;
+    }
+
+    private boolean isExt() {
+        if (null != this.ext) {
+            return this.ext;
+        }
+        Boolean val = this.attrExt.get();
+        if (null == val) {
+            return false;
+        }
+        return this.ext = val;
+    }
 }
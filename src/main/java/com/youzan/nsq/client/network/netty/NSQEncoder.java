@@ -1,5 +1,6 @@
 package com.youzan.nsq.client.network.netty;
 
+import com.youzan.nsq.client.core.command.ByteBufCommand;
 import com.youzan.nsq.client.core.command.NSQCommand;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
@@ -16,6 +17,15 @@ public class NSQEncoder extends MessageToMessageEncoder<NSQCommand> {
             throw new NullPointerException("I can not encode Null-Pointer!");
         }
 
+        if (command instanceof ByteBufCommand) {
+            //message body in buffer goes to socket without copy
+            final ByteBuf buf = ((ByteBufCommand) command).encode(ctx.alloc());
+            if (null != buf) {
+                out.add(buf);
+                return;
+            }
+        }
+
         final byte[] bs = command.getBytes();
         if(null == bs)
             throw new IllegalStateException("Command bytes is null, current command need to impl getBytes interface. Command: " + command.toString());
@@ -12,6 +12,7 @@ import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.compression.SnappyFrameDecoder;
 import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,7 +41,7 @@ public class NSQFeatureDetectionHandler extends SimpleChannelInboundHandler<NSQF
                 logger.debug("Channel has received a frame, that is  {}", msg);
             ChannelPipeline pipeline = ctx.channel().pipeline();
             parseIdentify(response.getMessage(), config);
-            if (response.getMessage().equals("OK")) {
+            if (response.isOK()) {
                 if (finished) {
                     return;
                 }
@@ -58,7 +59,10 @@ public class NSQFeatureDetectionHandler extends SimpleChannelInboundHandler<NSQF
                 return;
             }
             if (ssl) {
-                SSLEngine sslEngine = config.getSslContext().newEngine(ctx.channel().alloc());
+                //engine with peer host and port resumes session cached in context
+                final SslContext sslContext = null != config.getSslContext() ? config.getSslContext() : NSQSslContexts.defaultClientContext(config.getSslProvider());
+                SSLEngine sslEngine = sslContext.newEngine(ctx.channel().alloc(),
+                        con.getAddress().getHost(), con.getAddress().getPort());
                 sslEngine.setUseClientMode(true);
                 SslHandler sslHandler = new SslHandler(sslEngine, false);
                 sslHandler.setSingleDecode(true);
@@ -0,0 +1,83 @@
+package com.youzan.nsq.client.network.netty;
+
+import com.youzan.nsq.client.core.NSQConnection;
+import com.youzan.nsq.client.core.command.Finish;
+import com.youzan.nsq.client.core.command.NSQCommand;
+import com.youzan.nsq.client.core.command.ReQueue;
+import com.youzan.nsq.client.core.command.Rdy;
+import com.youzan.nsq.client.core.command.Touch;
+import com.youzan.nsq.client.entity.NSQConfig;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flushes FIN, REQ, TOUCH and RDY commands written without flush in bursts. First pending command schedules a flush on
+ * event loop, which runs after write tasks already queued, or after flush delay in config, and pending commands are
+ * flushed right away when they reach batch size in config. Explicit flush of other commands flushes pending commands
+ * too. All state is accessed in event loop of channel.
+ */
+public class NSQFlushCoalescingHandler extends ChannelOutboundHandlerAdapter {
+
+    private int pending = 0;
+    private boolean flushScheduled = false;
+    private ChannelHandlerContext ctx;
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled = false;
+            if (pending > 0) {
+                pending = 0;
+                ctx.flush();
+            }
+        }
+    };
+
+    /**
+     * @param cmd nsq command
+     * @return {@link Boolean#TRUE} if pass in command could be flushed in bursts
+     */
+    public static boolean isCoalescable(final Object cmd) {
+        return cmd instanceof Finish || cmd instanceof ReQueue || cmd instanceof Touch || cmd instanceof Rdy;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        ctx.write(msg, promise);
+        if (!isCoalescable(msg)) {
+            return;
+        }
+        final NSQConnection conn = ctx.channel().attr(NSQConnection.STATE).get();
+        final NSQConfig config = null == conn ? null : conn.getConfig();
+        if (null != config && config.getCommandFlushBatchSize() <= 1) {
+            //command is written and flushed
+            return;
+        }
+        if (null == config || ++pending >= config.getCommandFlushBatchSize()) {
+            flush(ctx);
+            return;
+        }
+        if (!flushScheduled) {
+            flushScheduled = true;
+            long delay = config.getCommandFlushDelayInMicrosecond();
+            if (delay > 0) {
+                ctx.executor().schedule(flushTask, delay, TimeUnit.MICROSECONDS);
+            } else {
+                ctx.executor().execute(flushTask);
+            }
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        pending = 0;
+        ctx.flush();
+    }
+}
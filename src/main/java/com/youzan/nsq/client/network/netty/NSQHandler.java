@@ -7,16 +7,20 @@ import com.youzan.nsq.client.network.frame.MessageFrame;
 import com.youzan.nsq.client.network.frame.NSQFrame;
 import com.youzan.util.HostUtil;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.concurrent.ScheduledFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
 
 class NSQHandler extends SimpleChannelInboundHandler<NSQFrame> {
 
@@ -29,6 +33,21 @@ class NSQHandler extends SimpleChannelInboundHandler<NSQFrame> {
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         super.channelInactive(ctx);
+        //wake up threads waiting for closed connection
+        notifyWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        notifyWritabilityChanged(ctx);
+        super.channelWritabilityChanged(ctx);
+    }
+
+    private void notifyWritabilityChanged(ChannelHandlerContext ctx) {
+        final NSQConnection conn = ctx.channel().attr(NSQConnection.STATE).get();
+        if (null != conn) {
+            conn.onWritabilityChanged();
+        }
     }
 
     /**
@@ -68,16 +87,13 @@ class NSQHandler extends SimpleChannelInboundHandler<NSQFrame> {
         final NSQConnection conn = ctx.channel().attr(NSQConnection.STATE).get();
         final Client worker = ctx.channel().attr(Client.STATE).get();
         if (null != conn && null != worker) {
-            ctx.channel().eventLoop().execute(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        worker.incoming(msg, conn);
-                    } catch (Exception e) {
-                        logger.error("Exception", e);
-                    }
-                }
-            });
+            //already on event loop of channel, frame is processed inline. Worker offloads user code(message handler)
+            //to its own executor, and response frames are handed over to waiting threads via queue.
+            try {
+                worker.incoming(msg, conn);
+            } catch (Exception e) {
+                logger.error("Exception", e);
+            }
         } else {
             if (null == conn) {
                 logger.info("No connection set for {}", ctx.channel());
@@ -97,13 +113,49 @@ class NSQHandler extends SimpleChannelInboundHandler<NSQFrame> {
             if (((IdleStateEvent) evt).state() == IdleState.READER_IDLE) {
                 final NSQConnection conn = ctx.channel().attr(NSQConnection.STATE).get();
                 final Client worker = ctx.channel().attr(Client.STATE).get();
-                if (worker != null && conn != null && !worker.validateHeartbeat(conn)) {
-                    destroy(ctx);
+                if (worker != null && conn != null) {
+                    validateHeartbeat(ctx, worker, conn);
                 }
             }
         }
     }
 
+    /**
+     * Send heartbeat without waiting on event loop. Connection is destroyed when heartbeat fails, or is not sent within
+     * query timeout.
+     */
+    private void validateHeartbeat(final ChannelHandlerContext ctx, final Client worker, final NSQConnection conn) {
+        final ChannelFuture future = worker.validateHeartbeat(conn);
+        if (null == future) {
+            destroy(ctx);
+            return;
+        }
+        if (future.isDone()) {
+            if (!future.isSuccess()) {
+                destroy(ctx);
+            }
+            return;
+        }
+        final ScheduledFuture<?> timeout = ctx.executor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!future.isDone()) {
+                    logger.warn("Heartbeat to {} not sent in {} milliseconds.", conn.getAddress(), conn.getConfig().getQueryTimeoutInMillisecond());
+                    destroy(ctx);
+                }
+            }
+        }, conn.getConfig().getQueryTimeoutInMillisecond(), TimeUnit.MILLISECONDS);
+        future.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                //connection is already destroyed if timeout is done
+                if (timeout.cancel(false) && !future.isSuccess()) {
+                    destroy(ctx);
+                }
+            }
+        });
+    }
+
     /**
      * Do it very very quietly!
      */
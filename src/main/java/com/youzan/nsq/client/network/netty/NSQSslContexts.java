@@ -0,0 +1,139 @@
+package com.youzan.nsq.client.network.netty;
+
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLException;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Client {@link SslContext}s for nsqd connections. One context should be shared by all connections, as session cache
+ * lives in context, and sessions are resumed for connections to the same nsqd host and port. JDK engine is used by
+ * default, as client sessions are not resumed with OpenSSL engine of netty in this version. OpenSSL engine is used when
+ * it is asked for and netty-tcnative is in classpath.
+ */
+public class NSQSslContexts {
+    private static final Logger logger = LoggerFactory.getLogger(NSQSslContexts.class);
+
+    public static final long DEFAULT_SESSION_CACHE_SIZE = 1024L;
+    public static final long DEFAULT_SESSION_TIMEOUT_IN_SECOND = 3600L;
+
+    private static final ConcurrentMap<String, SslContext> TRUST_2_CONTEXT = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<SslProvider, SslContext> PROVIDER_2_DEFAULT_CONTEXT = new ConcurrentHashMap<>();
+
+    private NSQSslContexts() {
+    }
+
+    /**
+     * @param preferred ssl provider asked for
+     * @return {@link SslProvider#OPENSSL} if it is preferred and netty-tcnative is available, otherwise
+     * {@link SslProvider#JDK}
+     */
+    public static SslProvider provider(SslProvider preferred) {
+        if (SslProvider.JDK == preferred) {
+            return SslProvider.JDK;
+        }
+        if (OpenSsl.isAvailable()) {
+            return SslProvider.OPENSSL;
+        }
+        logger.warn("OpenSSL is not available, use JDK ssl provider. Cause: {}", OpenSsl.unavailabilityCause().toString());
+        return SslProvider.JDK;
+    }
+
+    /**
+     * @param provider ssl provider
+     * @return true if client sessions are resumed with contexts of pass in provider
+     */
+    public static boolean isSessionResumable(SslProvider provider) {
+        return SslProvider.JDK == provider || !OpenSsl.isAvailable();
+    }
+
+    /**
+     * @return client context builder with {@link SslProvider#JDK}, and default session cache size and timeout
+     */
+    public static SslContextBuilder clientBuilder() {
+        return clientBuilder(SslProvider.JDK);
+    }
+
+    /**
+     * @param preferred ssl provider asked for, see {@link #provider(SslProvider)}
+     * @return client context builder with default session cache size and timeout
+     */
+    public static SslContextBuilder clientBuilder(SslProvider preferred) {
+        return SslContextBuilder.forClient()
+                .sslProvider(provider(preferred))
+                .sessionCacheSize(DEFAULT_SESSION_CACHE_SIZE)
+                .sessionTimeout(DEFAULT_SESSION_TIMEOUT_IN_SECOND);
+    }
+
+    /**
+     * @return shared client context with {@link SslProvider#JDK}, trusting system default certificates
+     * @throws SSLException exception in building context
+     */
+    public static SslContext defaultClientContext() throws SSLException {
+        return defaultClientContext(SslProvider.JDK);
+    }
+
+    /**
+     * @param preferred ssl provider asked for, see {@link #provider(SslProvider)}
+     * @return shared client context trusting system default certificates
+     * @throws SSLException exception in building context
+     */
+    public static SslContext defaultClientContext(SslProvider preferred) throws SSLException {
+        final SslProvider provider = provider(preferred);
+        SslContext context = PROVIDER_2_DEFAULT_CONTEXT.get(provider);
+        if (null == context) {
+            synchronized (NSQSslContexts.class) {
+                context = PROVIDER_2_DEFAULT_CONTEXT.get(provider);
+                if (null == context) {
+                    context = clientBuilder(provider).build();
+                    PROVIDER_2_DEFAULT_CONTEXT.put(provider, context);
+                }
+            }
+        }
+        return context;
+    }
+
+    /**
+     * Client context with {@link SslProvider#JDK} trusting certificates in pass in file, shared by all callers with the
+     * same file.
+     * @param trustCertCollection X.509 certificate collection file in PEM format
+     * @return shared client context
+     * @throws SSLException exception in building context
+     */
+    public static SslContext sharedClientContext(File trustCertCollection) throws SSLException {
+        return sharedClientContext(trustCertCollection, SslProvider.JDK);
+    }
+
+    /**
+     * Client context trusting certificates in pass in file, shared by all callers with the same file and provider.
+     * @param trustCertCollection X.509 certificate collection file in PEM format
+     * @param preferred ssl provider asked for, see {@link #provider(SslProvider)}
+     * @return shared client context
+     * @throws SSLException exception in building context
+     */
+    public static SslContext sharedClientContext(File trustCertCollection, SslProvider preferred) throws SSLException {
+        final SslProvider provider = provider(preferred);
+        String key;
+        try {
+            key = provider + ":" + trustCertCollection.getCanonicalPath();
+        } catch (IOException e) {
+            key = provider + ":" + trustCertCollection.getAbsolutePath();
+        }
+        SslContext context = TRUST_2_CONTEXT.get(key);
+        if (null == context) {
+            SslContext newContext = clientBuilder(provider).trustManager(trustCertCollection).build();
+            context = TRUST_2_CONTEXT.putIfAbsent(key, newContext);
+            if (null == context)
+                context = newContext;
+        }
+        return context;
+    }
+}
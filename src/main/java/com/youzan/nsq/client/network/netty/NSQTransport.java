@@ -0,0 +1,145 @@
+package com.youzan.nsq.client.network.netty;
+
+import com.youzan.nsq.client.entity.NSQConfig;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Netty transport for nsq connections. Native epoll transport is used on Linux when it is available, otherwise JDK NIO.
+ * Transport of shared event loop group could be specified with system property {@value #TRANSPORT_PROPERTY}, in
+ * auto, epoll or nio.
+ */
+public enum NSQTransport {
+    /**
+     * epoll when it is available, otherwise nio
+     */
+    AUTO,
+    EPOLL,
+    NIO;
+
+    private static final Logger logger = LoggerFactory.getLogger(NSQTransport.class);
+    public static final String TRANSPORT_PROPERTY = "nsq.client.transport";
+    //SO_BUSY_POLL is not in all netty versions
+    private static final ChannelOption<Integer> SO_BUSY_POLL = lookupBusyPollOption();
+
+    /**
+     * @return transport to use, {@link #AUTO} and unavailable {@link #EPOLL} are resolved to available one
+     */
+    public NSQTransport resolve() {
+        switch (this) {
+            case NIO:
+                return NIO;
+            case EPOLL: {
+                if (Epoll.isAvailable())
+                    return EPOLL;
+                logger.warn("Epoll transport is not available, fallback to nio. Cause: {}", Epoll.unavailabilityCause().toString());
+                return NIO;
+            }
+            default:
+                return Epoll.isAvailable() ? EPOLL : NIO;
+        }
+    }
+
+    /**
+     * @param threads number of event loop threads
+     * @param threadFactory thread factory, null for default
+     * @return event loop group of resolved transport
+     */
+    public EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+        if (resolve() == EPOLL) {
+            return new EpollEventLoopGroup(threads, threadFactory);
+        }
+        return new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    /**
+     * @return transport specified with system property, {@link #AUTO} by default
+     */
+    public static NSQTransport fromSystemProperty() {
+        String transport = System.getProperty(TRANSPORT_PROPERTY);
+        if (null == transport || transport.trim().isEmpty()) {
+            return AUTO;
+        }
+        try {
+            return NSQTransport.valueOf(transport.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid transport {} in system property {}, use auto.", transport, TRANSPORT_PROPERTY);
+            return AUTO;
+        }
+    }
+
+    /**
+     * @param group event loop group channel registers to
+     * @return transport of pass in event loop group
+     */
+    public static NSQTransport of(final EventLoopGroup group) {
+        return group instanceof EpollEventLoopGroup ? EPOLL : NIO;
+    }
+
+    /**
+     * @param group event loop group channel registers to
+     * @return socket channel class matching pass in event loop group
+     */
+    public static Class<? extends SocketChannel> socketChannelClass(final EventLoopGroup group) {
+        return of(group) == EPOLL ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    /**
+     * Set event loop group, matching socket channel class, socket options, allocator, write buffer water marks, and
+     * transport specific socket options in config to bootstrap. Epoll only options are ignored for nio transport.
+     * @param bootstrap bootstrap to initialize
+     * @param group event loop group
+     * @param config nsq config
+     */
+    public static void initBootstrap(final Bootstrap bootstrap, final EventLoopGroup group, final NSQConfig config) {
+        bootstrap.group(group);
+        bootstrap.channel(socketChannelClass(group));
+        bootstrap.option(ChannelOption.TCP_NODELAY, config.isTcpNoDelay());
+        if (config.getSocketSendBufferInByte() > 0) {
+            bootstrap.option(ChannelOption.SO_SNDBUF, config.getSocketSendBufferInByte());
+        }
+        if (config.getSocketReceiveBufferInByte() > 0) {
+            bootstrap.option(ChannelOption.SO_RCVBUF, config.getSocketReceiveBufferInByte());
+        }
+        bootstrap.option(ChannelOption.ALLOCATOR, config.isPooledAllocator() ? PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT);
+        bootstrap.option(ChannelOption.WRITE_BUFFER_WATER_MARK,
+                new WriteBufferWaterMark(config.getWriteBufferLowWaterMarkInByte(), config.getWriteBufferHighWaterMarkInByte()));
+        if (of(group) != EPOLL) {
+            return;
+        }
+        if (config.isTcpQuickAck()) {
+            bootstrap.option(EpollChannelOption.TCP_QUICKACK, true);
+        }
+        if (config.getBusyPollInMicrosecond() > 0) {
+            if (null != SO_BUSY_POLL) {
+                bootstrap.option(SO_BUSY_POLL, config.getBusyPollInMicrosecond());
+            } else {
+                logger.warn("SO_BUSY_POLL is not supported by netty in classpath, ignored.");
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ChannelOption<Integer> lookupBusyPollOption() {
+        try {
+            return (ChannelOption<Integer>) EpollChannelOption.class.getField("SO_BUSY_POLL").get(null);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.youzan.nsq.client.reactive;
+
+import com.youzan.nsq.client.MessageReceipt;
+import com.youzan.nsq.client.entity.Message;
+
+/**
+ * Listener for publish results of {@link PublishSink}. Results are delivered in the same order as messages signaled
+ * by upstream, and callbacks are never invoked concurrently.
+ */
+public interface PublishAckListener {
+
+    /**
+     * message is published.
+     * @param message message published
+     * @param receipt receipt of publish
+     */
+    void onAck(Message message, MessageReceipt receipt);
+
+    /**
+     * message fails to be published.
+     * @param message message failed
+     * @param cause cause of failure
+     */
+    void onNack(Message message, Throwable cause);
+
+    /**
+     * upstream completes and all messages are acked.
+     */
+    void onComplete();
+
+    /**
+     * upstream signals error, or violates demand, after all received messages are acked.
+     * @param cause error
+     */
+    void onError(Throwable cause);
+}
@@ -0,0 +1,242 @@
+package com.youzan.nsq.client.reactive;
+
+import com.youzan.nsq.client.MessageReceipt;
+import com.youzan.nsq.client.Producer;
+import com.youzan.nsq.client.entity.Message;
+import com.youzan.nsq.client.exception.NSQConcurrencyLimitException;
+import com.youzan.nsq.client.exception.NSQUnwritableConnectionException;
+import com.youzan.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Subscriber which publishes messages signaled by upstream with {@link Producer}, with demand driven flow control.
+ * Demand requested from upstream follows a window of messages in flight, which is driven by publish completions:
+ * window starts from 1, grows by one on each ack, and is halved when producer pushes back as connections to nsqd are
+ * unwritable ({@link NSQUnwritableConnectionException}) or publish concurrency reaches limit
+ * ({@link NSQConcurrencyLimitException}). Sink requests more only as published messages are acked and window allows,
+ * so messages in flight, and publish threads sink occupies, never exceed window, which is capped by maxInFlight. By
+ * default, maxInFlight is connection pool size per nsqd of producer, which is the max number of concurrent publish
+ * producer could serve without waiting for connection.
+ * Publish results are delivered to {@link PublishAckListener} in the order upstream signals messages. Messages
+ * signaled after sink terminates are released without publish.
+ */
+public class PublishSink implements Subscriber<Message> {
+    private static final Logger logger = LoggerFactory.getLogger(PublishSink.class);
+
+    private final Producer producer;
+    private final PublishAckListener listener;
+    private final int maxInFlight;
+    private final ThreadPoolExecutor publishExec;
+
+    private final Queue<PendingPublish> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    //demand requested from upstream and not signaled yet
+    private final AtomicLong requested = new AtomicLong(0);
+    //messages in flight allowed, updated in drain only
+    private volatile int window = 1;
+    private final AtomicInteger wip = new AtomicInteger(0);
+    private final AtomicBoolean terminated = new AtomicBoolean(false);
+    private volatile Subscription upstream;
+    private volatile boolean done = false;
+    private volatile boolean cancelled = false;
+    private volatile Throwable error;
+
+    public PublishSink(final Producer producer, final PublishAckListener listener) {
+        this(producer, producer.getConfig().getConnectionSize(), listener);
+    }
+
+    public PublishSink(final Producer producer, int maxInFlight, final PublishAckListener listener) {
+        if (null == producer || null == listener) {
+            throw new IllegalArgumentException("Producer and ack listener should not be null.");
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Max in flight smaller than 1 is not accepted.");
+        }
+        this.producer = producer;
+        this.listener = listener;
+        this.maxInFlight = maxInFlight;
+        this.publishExec = new ThreadPoolExecutor(maxInFlight, maxInFlight, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory(this.getClass().getSimpleName(), Thread.NORM_PRIORITY));
+        this.publishExec.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (null == s) {
+            throw new NullPointerException("Subscription is null.");
+        }
+        if (null != this.upstream || cancelled) {
+            s.cancel();
+            return;
+        }
+        this.upstream = s;
+        drain();
+    }
+
+    @Override
+    public void onNext(Message message) {
+        if (null == message) {
+            throw new NullPointerException("Message is null.");
+        }
+        if (done) {
+            message.release();
+            return;
+        }
+        inFlight.incrementAndGet();
+        if (requested.decrementAndGet() < 0) {
+            requested.incrementAndGet();
+            inFlight.decrementAndGet();
+            message.release();
+            this.error = new IllegalStateException("Upstream signals more messages than requested, max in flight " + maxInFlight);
+            cancel();
+            return;
+        }
+        PendingPublish pub = new PendingPublish(message);
+        pending.offer(pub);
+        try {
+            publishExec.execute(pub);
+        } catch (RejectedExecutionException e) {
+            //released as producer does when publish fails
+            message.release();
+            pub.complete(null, e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (done) {
+            logger.warn("Error signaled after sink terminates.", t);
+            return;
+        }
+        this.error = t;
+        this.done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        this.done = true;
+        drain();
+    }
+
+    /**
+     * Cancel upstream subscription. Messages received are still published and acked, before
+     * {@link PublishAckListener#onComplete()}.
+     */
+    public void cancel() {
+        cancelled = true;
+        done = true;
+        Subscription s = this.upstream;
+        if (null != s) {
+            s.cancel();
+        }
+        drain();
+    }
+
+    /**
+     * @return number of messages received from upstream but not acked yet
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return number of messages in flight allowed currently
+     */
+    int getWindow() {
+        return window;
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        for (;;) {
+            PendingPublish head;
+            while (null != (head = pending.peek()) && head.finished) {
+                pending.poll();
+                inFlight.decrementAndGet();
+                if (head.cause instanceof NSQUnwritableConnectionException || head.cause instanceof NSQConcurrencyLimitException) {
+                    window = Math.max(1, window / 2);
+                } else if (null == head.cause && window < maxInFlight) {
+                    window++;
+                }
+                try {
+                    if (null == head.cause)
+                        listener.onAck(head.message, head.receipt);
+                    else
+                        listener.onNack(head.message, head.cause);
+                } catch (Throwable t) {
+                    logger.error("Exception in publish ack listener.", t);
+                }
+            }
+            Subscription s = this.upstream;
+            long more = window - inFlight.get() - requested.get();
+            if (more > 0 && !done && null != s) {
+                requested.addAndGet(more);
+                s.request(more);
+            }
+            if (done && pending.isEmpty()) {
+                terminate();
+            }
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                break;
+            }
+        }
+    }
+
+    private void terminate() {
+        if (!terminated.compareAndSet(false, true)) {
+            return;
+        }
+        publishExec.shutdown();
+        Throwable t = this.error;
+        if (null != t)
+            listener.onError(t);
+        else
+            listener.onComplete();
+    }
+
+    private class PendingPublish implements Runnable {
+        private final Message message;
+        private MessageReceipt receipt;
+        private Throwable cause;
+        private volatile boolean finished = false;
+
+        PendingPublish(final Message message) {
+            this.message = message;
+        }
+
+        @Override
+        public void run() {
+            MessageReceipt receipt = null;
+            Throwable cause = null;
+            try {
+                receipt = producer.publishAndGetReceipt(message);
+            } catch (Throwable t) {
+                cause = t;
+            }
+            complete(receipt, cause);
+        }
+
+        void complete(MessageReceipt receipt, Throwable cause) {
+            this.receipt = receipt;
+            this.cause = cause;
+            this.finished = true;
+            drain();
+        }
+    }
+}
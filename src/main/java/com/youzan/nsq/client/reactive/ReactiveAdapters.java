@@ -0,0 +1,119 @@
+package com.youzan.nsq.client.reactive;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Adapters which expose {@link Subscriber} as subscriber of reactive streams, or java.util.concurrent.Flow in Java 9+.
+ * Neither of them is a dependency of SDK, adapter is created with dynamic proxy, and throws
+ * {@link IllegalStateException} when target interface is not in classpath.
+ */
+public final class ReactiveAdapters {
+    public static final String REACTIVE_STREAMS_SUBSCRIBER = "org.reactivestreams.Subscriber";
+    public static final String FLOW_SUBSCRIBER = "java.util.concurrent.Flow$Subscriber";
+
+    private ReactiveAdapters() {
+    }
+
+    /**
+     * @param subscriber subscriber to adapt
+     * @return org.reactivestreams.Subscriber delegates to pass in subscriber
+     */
+    public static Object toReactiveStreamsSubscriber(final Subscriber<?> subscriber) {
+        return adapt(subscriber, loadClass(REACTIVE_STREAMS_SUBSCRIBER));
+    }
+
+    /**
+     * @param subscriber subscriber to adapt
+     * @return java.util.concurrent.Flow.Subscriber delegates to pass in subscriber
+     */
+    public static Object toFlowSubscriber(final Subscriber<?> subscriber) {
+        return adapt(subscriber, loadClass(FLOW_SUBSCRIBER));
+    }
+
+    /**
+     * Adapt subscriber to pass in subscriber interface, which is expected to have the same methods as
+     * {@link Subscriber}, and the same for subscription interface in its onSubscribe.
+     * @param subscriber subscriber to adapt
+     * @param subscriberInterface target subscriber interface
+     * @return subscriber instance of target interface
+     */
+    @SuppressWarnings("unchecked")
+    public static Object adapt(final Subscriber<?> subscriber, final Class<?> subscriberInterface) {
+        if (null == subscriber || null == subscriberInterface || !subscriberInterface.isInterface()) {
+            throw new IllegalArgumentException("Subscriber and subscriber interface should not be null.");
+        }
+        final Subscriber<Object> delegate = (Subscriber<Object>) subscriber;
+        return Proxy.newProxyInstance(subscriberInterface.getClassLoader(), new Class<?>[]{subscriberInterface}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "onSubscribe":
+                        delegate.onSubscribe(adaptSubscription(args[0], method.getParameterTypes()[0]));
+                        return null;
+                    case "onNext":
+                        delegate.onNext(args[0]);
+                        return null;
+                    case "onError":
+                        delegate.onError((Throwable) args[0]);
+                        return null;
+                    case "onComplete":
+                        delegate.onComplete();
+                        return null;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return subscriberInterface.getName() + "(" + delegate + ")";
+                    default:
+                        throw new UnsupportedOperationException(method.toString());
+                }
+            }
+        });
+    }
+
+    private static Subscription adaptSubscription(final Object subscription, final Class<?> subscriptionInterface) throws NoSuchMethodException {
+        if (null == subscription) {
+            throw new NullPointerException("Subscription is null.");
+        }
+        final Method request = subscriptionInterface.getMethod("request", long.class);
+        final Method cancel = subscriptionInterface.getMethod("cancel");
+        return new Subscription() {
+            @Override
+            public void request(long n) {
+                invoke(request, subscription, n);
+            }
+
+            @Override
+            public void cancel() {
+                invoke(cancel, subscription);
+            }
+        };
+    }
+
+    private static void invoke(final Method method, final Object target, Object... args) {
+        try {
+            method.invoke(target, args);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static Class<?> loadClass(final String className) {
+        try {
+            return Class.forName(className, false, ReactiveAdapters.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(className + " is not found in classpath.", e);
+        }
+    }
+}
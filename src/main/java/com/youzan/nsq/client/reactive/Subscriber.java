@@ -0,0 +1,19 @@
+package com.youzan.nsq.client.reactive;
+
+/**
+ * Receiver of items signaled by upstream publisher, in the same contract as org.reactivestreams.Subscriber.
+ * SDK keeps Java 8 compatible and does not depend on reactive streams, use {@link ReactiveAdapters} to expose
+ * subscriber as org.reactivestreams.Subscriber or java.util.concurrent.Flow.Subscriber.
+ *
+ * @param <T> type of item
+ */
+public interface Subscriber<T> {
+
+    void onSubscribe(Subscription s);
+
+    void onNext(T t);
+
+    void onError(Throwable t);
+
+    void onComplete();
+}
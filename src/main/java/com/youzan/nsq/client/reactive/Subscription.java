@@ -0,0 +1,19 @@
+package com.youzan.nsq.client.reactive;
+
+/**
+ * Subscription between upstream publisher and {@link Subscriber}, in the same contract as
+ * org.reactivestreams.Subscription.
+ */
+public interface Subscription {
+
+    /**
+     * Request upstream to signal at most n more items.
+     * @param n number of items requested, positive
+     */
+    void request(long n);
+
+    /**
+     * Request upstream to stop signaling items.
+     */
+    void cancel();
+}
@@ -0,0 +1,36 @@
+package com.youzan.nsq.client.serializer;
+
+import com.alibaba.fastjson.JSON;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+
+import java.io.IOException;
+
+/**
+ * Json serializer backed by fastjson. fastjson is an optional dependency of SDK, user who applies current serializer
+ * needs to have it in classpath.
+ */
+public class FastjsonSerializer implements Serializer<Object> {
+
+    private static final FastjsonSerializer INSTANCE = new FastjsonSerializer();
+
+    public static FastjsonSerializer getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public int sizeHint(Object obj) {
+        return -1;
+    }
+
+    @Override
+    public void serialize(Object obj, ByteBuf out) throws IOException {
+        JSON.writeJSONString(new ByteBufOutputStream(out), obj);
+    }
+
+    @Override
+    public Object deserialize(ByteBuf in, Class<?> type) throws IOException {
+        return JSON.parseObject(new ByteBufInputStream(in), type);
+    }
+}
@@ -0,0 +1,50 @@
+package com.youzan.nsq.client.serializer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.youzan.util.SystemUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Json serializer backed by jackson {@link ObjectMapper}, object is streamed into and out of buffer.
+ */
+public class JacksonSerializer implements Serializer<Object> {
+
+    private static final JacksonSerializer INSTANCE = new JacksonSerializer(SystemUtil.getObjectMapper());
+
+    private final ObjectMapper mapper;
+
+    /**
+     * @return serializer backed by object mapper of SDK.
+     */
+    public static JacksonSerializer getInstance() {
+        return INSTANCE;
+    }
+
+    public JacksonSerializer(final ObjectMapper mapper) {
+        if (null == mapper) {
+            throw new IllegalArgumentException("Object mapper is null.");
+        }
+        this.mapper = mapper;
+    }
+
+    @Override
+    public int sizeHint(Object obj) {
+        return -1;
+    }
+
+    @Override
+    public void serialize(Object obj, ByteBuf out) throws IOException {
+        mapper.writeValue((OutputStream) new ByteBufOutputStream(out), obj);
+    }
+
+    @Override
+    public Object deserialize(ByteBuf in, Class<?> type) throws IOException {
+        return mapper.readValue((InputStream) new ByteBufInputStream(in), type);
+    }
+}
@@ -0,0 +1,38 @@
+package com.youzan.nsq.client.serializer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+/**
+ * Serializer which writes byte array as it is.
+ */
+public class RawSerializer implements Serializer<byte[]> {
+
+    private static final RawSerializer INSTANCE = new RawSerializer();
+
+    public static RawSerializer getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public int sizeHint(byte[] obj) {
+        return null == obj ? -1 : obj.length;
+    }
+
+    @Override
+    public void serialize(byte[] obj, ByteBuf out) {
+        out.writeBytes(obj);
+    }
+
+    /**
+     * Backing array is returned without copy when readable bytes of pass in buffer span the whole of it, as buffer
+     * wrapping message body does.
+     */
+    @Override
+    public byte[] deserialize(ByteBuf in, Class<? extends byte[]> type) {
+        if (in.hasArray() && in.arrayOffset() == 0 && in.readerIndex() == 0 && in.readableBytes() == in.array().length) {
+            return in.array();
+        }
+        return ByteBufUtil.getBytes(in);
+    }
+}
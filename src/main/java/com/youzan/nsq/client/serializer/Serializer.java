@@ -0,0 +1,39 @@
+package com.youzan.nsq.client.serializer;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+
+/**
+ * Message body serializer. Producer serializes object into buffer which goes to socket directly, and consumer
+ * deserializes object from message body, without intermediate byte array.
+ * Implementation is expected to be thread safe, as one instance is shared among publish threads and consumer workers.
+ *
+ * @param <T> type of object serializer handles
+ */
+public interface Serializer<T> {
+
+    /**
+     * Estimated size in byte of pass in object after serialized, used as initial capacity of buffer.
+     * @param obj object to serialize
+     * @return estimated size in byte, or -1 if it is unknown
+     */
+    int sizeHint(T obj);
+
+    /**
+     * Serialize pass in object into buffer, from writer index of buffer.
+     * @param obj object to serialize
+     * @param out buffer to write to
+     * @throws IOException exception in serialization
+     */
+    void serialize(T obj, ByteBuf out) throws IOException;
+
+    /**
+     * Deserialize object from readable bytes of pass in buffer.
+     * @param in buffer to read from
+     * @param type type of object to deserialize into
+     * @return deserialized object
+     * @throws IOException exception in deserialization
+     */
+    T deserialize(ByteBuf in, Class<? extends T> type) throws IOException;
+}
@@ -0,0 +1,130 @@
+package com.youzan.util;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor runs tasks one at a time, in order of submission, on threads of backing executor. Tasks are drained in
+ * rounds of limited size, so that serial executors sharing one backing executor take turns on its threads.
+ * Running task may {@link #hold()} the executor, after which tasks wait without taking a thread of backing executor,
+ * until {@link #resume(Runnable)} runs a task ahead of them.
+ */
+@ThreadSafe
+public class SerialExecutor implements Executor {
+    private static final int TASKS_PER_ROUND = 16;
+    //hold states
+    private static final int RUNNING = 0;
+    private static final int HOLDING = 1;
+    private static final int HELD = 2;
+    private static final int RESUMED = 3;
+
+    private final Executor backing;
+    private final Deque<Runnable> tasks = new ConcurrentLinkedDeque<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final AtomicInteger hold = new AtomicInteger(RUNNING);
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            boolean held = false;
+            try {
+                for (int i = 0; i < TASKS_PER_ROUND; i++) {
+                    Runnable task = tasks.poll();
+                    if (null == task) {
+                        break;
+                    }
+                    try {
+                        task.run();
+                    } finally {
+                        //drain stays scheduled while held, resume schedules it again
+                        held = hold.compareAndSet(HOLDING, HELD);
+                        hold.compareAndSet(RESUMED, RUNNING);
+                    }
+                    if (held) {
+                        return;
+                    }
+                }
+            } finally {
+                if (!held) {
+                    //lane goes on even if task throws
+                    scheduled.set(false);
+                    if (!tasks.isEmpty()) {
+                        try {
+                            scheduleDrain();
+                        } catch (RejectedExecutionException e) {
+                            //tasks left are drained when next task is submitted
+                        }
+                    }
+                }
+            }
+        }
+    };
+
+    public SerialExecutor(Executor backing) {
+        if (null == backing) {
+            throw new IllegalArgumentException("Backing executor is null.");
+        }
+        this.backing = backing;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        this.tasks.offer(task);
+        try {
+            scheduleDrain();
+        } catch (RejectedExecutionException e) {
+            this.tasks.remove(task);
+            throw e;
+        }
+    }
+
+    private void scheduleDrain() {
+        if (this.scheduled.compareAndSet(false, true)) {
+            try {
+                this.backing.execute(this.drain);
+            } catch (RejectedExecutionException e) {
+                this.scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Hold executor after running task returns, tasks submitted wait until {@link #resume(Runnable)}. Invoked by
+     * running task of current executor only.
+     */
+    public void hold() {
+        this.hold.set(HOLDING);
+    }
+
+    /**
+     * Resume executor held, pass in task runs first and then tasks waiting.
+     * @param task task to run ahead of tasks waiting
+     */
+    public void resume(Runnable task) {
+        this.tasks.offerFirst(task);
+        if (this.hold.compareAndSet(HOLDING, RESUMED)) {
+            //holding task has not returned, drain goes on with pass in task
+            return;
+        }
+        if (this.hold.compareAndSet(HELD, RUNNING)) {
+            try {
+                this.backing.execute(this.drain);
+            } catch (RejectedExecutionException e) {
+                //tasks left are drained when next task is submitted
+                this.scheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * @return number of tasks waiting to run
+     */
+    public int pending() {
+        return this.tasks.size();
+    }
+}
@@ -0,0 +1,60 @@
+package com.youzan.nsq.client;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class AdaptiveRdyControllerTest {
+    private static final int WORKERS = 8;
+    private static final long MSG_TIMEOUT = 60000;
+
+    private static int round(AdaptiveRdyController controller, int messages, long latencyInMillisecond, long queued) throws InterruptedException {
+        Thread.sleep(20);
+        controller.onConsumed(messages, messages * TimeUnit.MILLISECONDS.toNanos(latencyInMillisecond));
+        return controller.nextInFlight(queued);
+    }
+
+    @Test
+    public void testFastHandlerNotStarved() throws InterruptedException {
+        AdaptiveRdyController controller = new AdaptiveRdyController(WORKERS, MSG_TIMEOUT);
+        Assert.assertEquals(controller.nextInFlight(0), WORKERS);
+        int inFlight = 0;
+        int last = 0;
+        for (int i = 0; i < 20; i++) {
+            //workers idle most of the time with nothing queued
+            inFlight = round(controller, 10, 1, 0);
+            Assert.assertTrue(inFlight >= last);
+            last = inFlight;
+        }
+        Assert.assertEquals(controller.getLatencyInMillisecond(), 1.0, 0.01);
+        Assert.assertTrue(inFlight > WORKERS * 10, "in flight of fast handler does not grow: " + inFlight);
+    }
+
+    @Test
+    public void testSlowHandlerNotFlooded() throws InterruptedException {
+        AdaptiveRdyController controller = new AdaptiveRdyController(WORKERS, MSG_TIMEOUT);
+        int inFlight = 0;
+        for (int i = 0; i < 10; i++) {
+            //queued messages wait far beyond msg timeout budget
+            inFlight = round(controller, 1, 5000, 200);
+            //all messages in flight are consumed within half of msg timeout
+            Assert.assertTrue(inFlight <= WORKERS * MSG_TIMEOUT / 2 / 5000, "slow handler is flooded: " + inFlight);
+        }
+        Assert.assertEquals(inFlight, (int) (WORKERS * 1.25));
+        //recovers when queue drains and workers idle
+        int recovered = inFlight;
+        for (int i = 0; i < 5; i++) {
+            recovered = round(controller, 0, 5000, 0);
+        }
+        Assert.assertTrue(recovered > inFlight);
+    }
+
+    @Test
+    public void testShareEvenly() {
+        Assert.assertEquals(AdaptiveRdyController.share(10, 4), new int[]{3, 3, 2, 2});
+        //every connection gets at least 1
+        Assert.assertEquals(AdaptiveRdyController.share(2, 3), new int[]{1, 1, 1});
+        Assert.assertEquals(AdaptiveRdyController.share(10000, 2), new int[]{AdaptiveRdyController.MAX_RDY_PER_CONNECTION, AdaptiveRdyController.MAX_RDY_PER_CONNECTION});
+    }
+}
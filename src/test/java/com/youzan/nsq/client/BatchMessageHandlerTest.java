@@ -0,0 +1,152 @@
+package com.youzan.nsq.client;
+
+import com.youzan.nsq.client.core.command.Finish;
+import com.youzan.nsq.client.core.command.ReQueue;
+import com.youzan.nsq.client.entity.Address;
+import com.youzan.nsq.client.entity.NSQConfig;
+import com.youzan.nsq.client.entity.NSQMessage;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.youzan.nsq.client.utils.MessageFrameUtil.messageFrame;
+
+public class BatchMessageHandlerTest {
+
+    private static List<Object> awaitCommands(EmbeddedChannel channel, int count) throws InterruptedException {
+        List<Object> commands = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (commands.size() < count && System.currentTimeMillis() < deadline) {
+            Object cmd = channel.readOutbound();
+            if (null == cmd) {
+                Thread.sleep(10);
+            } else {
+                commands.add(cmd);
+            }
+        }
+        return commands;
+    }
+
+    @Test
+    public void testBatchBySizeAndWait() throws Exception {
+        NSQConfig config = new NSQConfig("BaseConsumer");
+        config.setMessageBatchSize(3).setMessageBatchWaitInMillisecond(100);
+        final BlockingQueue<MessageBatch> batches = new LinkedBlockingQueue<>();
+        ConsumerImplV2 consumer = new ConsumerImplV2(config);
+        consumer.setBatchMessageHandler(new BatchMessageHandler() {
+            @Override
+            public void process(MessageBatch batch) {
+                //second message of each batch fails
+                if (batch.size() > 1) {
+                    batch.fail(batch.getMessages().get(1));
+                }
+                batches.add(batch);
+            }
+        });
+        EmbeddedChannel channel = new EmbeddedChannel();
+        MockedNSQConnectionImpl conn = new MockedNSQConnectionImpl(0, new Address("127.0.0.1", 4150, "ha", "topic", 0, false), channel, config);
+        conn.setTopic("topic");
+        conn.setCurrentRdyCount(10);
+        try {
+            for (int i = 0; i < 4; i++) {
+                consumer.incoming(messageFrame(i), conn);
+            }
+            //full batch is dispatched right away
+            MessageBatch batch = batches.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(batch);
+            Assert.assertEquals(batch.size(), 3);
+            Assert.assertTrue(batch.isFailed(batch.getMessages().get(1)));
+            List<Object> commands = awaitCommands(channel, 3);
+            Assert.assertEquals(commands.size(), 3);
+            Assert.assertTrue(commands.get(0) instanceof Finish);
+            Assert.assertTrue(commands.get(1) instanceof ReQueue);
+            Assert.assertTrue(commands.get(2) instanceof Finish);
+
+            //rest message is dispatched after batch wait
+            Assert.assertNull(batches.poll(50, TimeUnit.MILLISECONDS));
+            Thread.sleep(100);
+            channel.runPendingTasks();
+            batch = batches.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(batch);
+            Assert.assertEquals(batch.size(), 1);
+            NSQMessage message = batch.getMessages().get(0);
+            Assert.assertFalse(batch.isFailed(message));
+            commands = awaitCommands(channel, 1);
+            Assert.assertEquals(commands.size(), 1);
+            Assert.assertTrue(commands.get(0) instanceof Finish);
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testExceptionFailsBatch() throws Exception {
+        NSQConfig config = new NSQConfig("BaseConsumer");
+        config.setMessageBatchSize(2);
+        final BlockingQueue<MessageBatch> batches = new LinkedBlockingQueue<>();
+        ConsumerImplV2 consumer = new ConsumerImplV2(config);
+        consumer.setBatchMessageHandler(new BatchMessageHandler() {
+            @Override
+            public void process(MessageBatch batch) {
+                batches.add(batch);
+                throw new RuntimeException("sink is down");
+            }
+        });
+        EmbeddedChannel channel = new EmbeddedChannel();
+        MockedNSQConnectionImpl conn = new MockedNSQConnectionImpl(0, new Address("127.0.0.1", 4150, "ha", "topic", 0, false), channel, config);
+        conn.setTopic("topic");
+        conn.setCurrentRdyCount(10);
+        try {
+            consumer.incoming(messageFrame(0), conn);
+            consumer.incoming(messageFrame(1), conn);
+            MessageBatch batch = batches.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(batch);
+            //batch is failed after handler throws, messages are requeued after that
+            List<Object> commands = awaitCommands(channel, 2);
+            Assert.assertEquals(commands.size(), 2);
+            Assert.assertTrue(commands.get(0) instanceof ReQueue);
+            Assert.assertTrue(commands.get(1) instanceof ReQueue);
+            for (NSQMessage message : batch) {
+                Assert.assertTrue(batch.isFailed(message));
+            }
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testBatchFilledByRdyWithDefaultConfig() throws Exception {
+        NSQConfig config = new NSQConfig("BaseConsumer");
+        Assert.assertTrue(config.getMessageBatchSize() > config.getRdy());
+        final BlockingQueue<MessageBatch> batches = new LinkedBlockingQueue<>();
+        ConsumerImplV2 consumer = new ConsumerImplV2(config);
+        consumer.setBatchMessageHandler(new BatchMessageHandler() {
+            @Override
+            public void process(MessageBatch batch) {
+                batches.add(batch);
+            }
+        });
+        EmbeddedChannel channel = new EmbeddedChannel();
+        MockedNSQConnectionImpl conn = new MockedNSQConnectionImpl(0, new Address("127.0.0.1", 4150, "ha", "topic", 0, false), channel, config);
+        conn.setTopic("topic");
+        conn.setCurrentRdyCount(config.getRdy());
+        try {
+            for (int i = 0; i < config.getRdy(); i++) {
+                consumer.incoming(messageFrame(i), conn);
+            }
+            //all messages in flight are received, batch is dispatched without waiting, as wait task never runs here
+            MessageBatch batch = batches.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(batch);
+            Assert.assertEquals(batch.size(), config.getRdy());
+            Assert.assertEquals(awaitCommands(channel, config.getRdy()).size(), config.getRdy());
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.youzan.nsq.client;
+
+import com.youzan.nsq.client.entity.Message;
+import com.youzan.nsq.client.entity.Topic;
+import com.youzan.nsq.client.exception.NSQException;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConflatingProducerTest {
+    private static final Logger logger = LoggerFactory.getLogger(ConflatingProducerTest.class);
+
+    @Test
+    public void testConflationUnderBurst() throws InterruptedException, NSQException {
+        final AtomicLong wireBytes = new AtomicLong(0);
+        final Map<Object, String> latest = new ConcurrentHashMap<>();
+        Producer producer = EasyMock.createMock(Producer.class);
+        producer.publish(EasyMock.anyObject(Message.class));
+        EasyMock.expectLastCall().andStubAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                Message msg = (Message) EasyMock.getCurrentArguments()[0];
+                wireBytes.addAndGet(msg.getMessageBodyLength());
+                latest.put(msg.getTopicShardingId(), msg.getMessageBody());
+                return null;
+            }
+        });
+        EasyMock.replay(producer);
+
+        Topic topic = new Topic("JavaTesting-Conflation");
+        int keys = 100;
+        int versions = 200;
+        long rawBytes = 0;
+        ConflatingProducer conflating = new ConflatingProducer(producer, 100L);
+        for (int version = 0; version < versions; version++) {
+            for (int key = 0; key < keys; key++) {
+                Message msg = Message.create(topic, "entity-" + key + "-state-version-" + version);
+                msg.setTopicShardingIDLong(key);
+                rawBytes += msg.getMessageBodyLength();
+                conflating.publish(msg);
+            }
+            //bursts of updates, shorter than linger window
+            if (version % 50 == 0)
+                Thread.sleep(10L);
+        }
+        conflating.close();
+
+        logger.info("received {}, published {}, conflated {}. bytes without conflation {}, bytes on wire {}.", conflating.getReceivedCount(),
+                conflating.getPublishedCount(), conflating.getConflatedCount(), rawBytes, wireBytes.get());
+        Assert.assertEquals(conflating.getReceivedCount(), keys * versions);
+        Assert.assertEquals(conflating.getPublishedCount() + conflating.getConflatedCount(), keys * versions);
+        Assert.assertTrue(wireBytes.get() * 5 < rawBytes);
+        //newest version of each key is always published
+        for (long key = 0; key < keys; key++) {
+            Assert.assertEquals(latest.get(key), "entity-" + key + "-state-version-" + (versions - 1));
+        }
+    }
+
+    @Test
+    public void testPublishRacingClose() throws Exception {
+        Producer producer = EasyMock.createMock(Producer.class);
+        producer.publish(EasyMock.anyObject(Message.class));
+        EasyMock.expectLastCall().anyTimes();
+        EasyMock.replay(producer);
+
+        final Topic topic = new Topic("JavaTesting-Conflation");
+        for (int round = 0; round < 50; round++) {
+            final ConflatingProducer conflating = new ConflatingProducer(producer, 1000L);
+            final AtomicLong accepted = new AtomicLong(0);
+            final CountDownLatch start = new CountDownLatch(1);
+            Thread[] publishers = new Thread[4];
+            for (int i = 0; i < publishers.length; i++) {
+                final int publisher = i;
+                publishers[i] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            for (int key = 0; ; key++) {
+                                conflating.publish(publisher + "-" + key, Message.create(topic, "state"));
+                                accepted.incrementAndGet();
+                            }
+                        } catch (IllegalStateException closed) {
+                            //publish after close is rejected
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+                publishers[i].start();
+            }
+            start.countDown();
+            Thread.sleep(1L);
+            conflating.close();
+            for (Thread publisher : publishers) {
+                publisher.join();
+            }
+            //every message accepted is published by final flush, none is left in buffer
+            Assert.assertEquals(conflating.getReceivedCount(), accepted.get());
+            Assert.assertEquals(conflating.getPublishedCount(), accepted.get());
+        }
+    }
+}
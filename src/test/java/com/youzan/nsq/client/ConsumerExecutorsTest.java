@@ -0,0 +1,134 @@
+package com.youzan.nsq.client;
+
+import com.youzan.nsq.client.core.NSQConnection;
+import com.youzan.nsq.client.entity.Address;
+import com.youzan.nsq.client.entity.NSQConfig;
+import org.easymock.EasyMock;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ConsumerExecutorsTest {
+
+    private static Thread workerOf(ExecutorService executor) throws InterruptedException {
+        final AtomicReference<Thread> worker = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                worker.set(Thread.currentThread());
+                latch.countDown();
+            }
+        });
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        return worker.get();
+    }
+
+    private static boolean isVirtual(Thread thread) {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void testConsumerUsesExecutorFactory() throws InterruptedException {
+        final AtomicInteger created = new AtomicInteger(0);
+        NSQConfig config = new NSQConfig("BaseConsumer");
+        config.setConsumerExecutorFactory(new ConsumerExecutorFactory() {
+            @Override
+            public ExecutorService newExecutor(NSQConfig config, String name) {
+                created.incrementAndGet();
+                Assert.assertTrue(name.contains("BaseConsumer"));
+                return ConsumerExecutors.FIXED_THREAD_POOL.newExecutor(config, name);
+            }
+        });
+        new ConsumerImplV2(config);
+        Assert.assertEquals(created.get(), 1);
+        Assert.assertSame(new NSQConfig().getConsumerExecutorFactory(), ConsumerExecutors.FIXED_THREAD_POOL);
+    }
+
+    @Test
+    public void testVirtualThreadPerMessage() throws InterruptedException {
+        NSQConfig config = new NSQConfig("BaseConsumer");
+        ExecutorService executor = ConsumerExecutors.VIRTUAL_THREAD_PER_MESSAGE.newExecutor(config, "Worker");
+        try {
+            Thread worker = workerOf(executor);
+            Assert.assertTrue(worker.getName().startsWith("Worker-"));
+            Assert.assertEquals(isVirtual(worker), ConsumerExecutors.isVirtualThreadSupported());
+            if (!ConsumerExecutors.isVirtualThreadSupported()) {
+                return;
+            }
+            //handlers blocking in I/O are not bounded by platform threads
+            final int messages = 10000;
+            final CountDownLatch latch = new CountDownLatch(messages);
+            long start = System.nanoTime();
+            for (int i = 0; i < messages; i++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            Thread.sleep(200);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        latch.countDown();
+                    }
+                });
+            }
+            Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testConsumerConcurrencySizesRdy() throws Exception {
+        NSQConfig config = new NSQConfig("BaseConsumer");
+        config.setConsumerWorkerPoolSize(2);
+        Assert.assertEquals(config.getConsumerConcurrency(), 2);
+        config.setConsumerConcurrency(64).setConsumerExecutorFactory(ConsumerExecutors.VIRTUAL_THREAD_PER_MESSAGE);
+        ConsumerImplV2 consumer = new ConsumerImplV2(config);
+        try {
+            consumer.address_2_conn.put(new Address("127.0.0.1", 4150, "ha", "topic", 0, false), EasyMock.createNiceMock(NSQConnection.class));
+            consumer.address_2_conn.put(new Address("127.0.0.1", 4151, "ha", "topic", 0, false), EasyMock.createNiceMock(NSQConnection.class));
+            Method update = ConsumerImplV2.class.getDeclaredMethod("updateExpectedRdyPerConn");
+            update.setAccessible(true);
+            update.invoke(consumer);
+            //rdy follows concurrency, not worker pool size
+            Assert.assertEquals(consumer.getRdyPerConnection(), 32);
+        } finally {
+            consumer.address_2_conn.clear();
+            consumer.close();
+        }
+    }
+
+    @Test
+    public void testFallbackPoolSizedByConcurrency() {
+        if (ConsumerExecutors.isVirtualThreadSupported()) {
+            return;
+        }
+        NSQConfig config = new NSQConfig("BaseConsumer");
+        config.setConsumerWorkerPoolSize(2).setConsumerConcurrency(16);
+        ExecutorService executor = ConsumerExecutors.VIRTUAL_THREAD_PER_MESSAGE.newExecutor(config, "Worker");
+        try {
+            Assert.assertEquals(((ThreadPoolExecutor) executor).getCorePoolSize(), 16);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidConsumerConcurrency() {
+        new NSQConfig().setConsumerConcurrency(0);
+    }
+}
@@ -0,0 +1,125 @@
+package com.youzan.nsq.client;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.youzan.nsq.client.core.NSQConnectionImpl;
+import com.youzan.nsq.client.entity.Address;
+import com.youzan.nsq.client.entity.NSQConfig;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class InFlightBudgetTest {
+
+    private static int sum(int[] rdy) {
+        int sum = 0;
+        for (int r : rdy) {
+            sum += r;
+        }
+        return sum;
+    }
+
+    private static int[] apportion(int budget, long[] received, long rotation) {
+        boolean[] writable = new boolean[received.length];
+        Arrays.fill(writable, true);
+        return InFlightBudget.apportion(budget, received, new int[received.length], writable, rotation);
+    }
+
+    @Test
+    public void testBudgetFollowsBacklog() {
+        int[] rdy = apportion(100, new long[]{0, 300, 0, 100}, 0);
+        Assert.assertEquals(rdy, new int[]{1, 73, 1, 25});
+        Assert.assertEquals(sum(rdy), 100);
+        //no backlog at all, budget is shared evenly
+        Assert.assertEquals(apportion(10, new long[]{0, 0, 0, 0}, 0), new int[]{3, 3, 2, 2});
+        Assert.assertEquals(apportion(10000, new long[]{1, 0}, 0), new int[]{AdaptiveRdyController.MAX_RDY_PER_CONNECTION, 1});
+    }
+
+    @Test
+    public void testBudgetLessThanConnections() {
+        long[] received = new long[10];
+        received[7] = 5;
+        Set<Integer> served = new HashSet<>();
+        for (int round = 0; round < 9; round++) {
+            int[] rdy = apportion(3, received, round);
+            Assert.assertEquals(sum(rdy), 3);
+            //connection with backlog always keeps rdy
+            Assert.assertEquals(rdy[7], 1);
+            for (int i = 0; i < rdy.length; i++) {
+                Assert.assertTrue(rdy[i] <= 1);
+                if (rdy[i] > 0) {
+                    served.add(i);
+                }
+            }
+        }
+        //idle connections get rdy in rotation
+        Assert.assertEquals(served.size(), 10);
+    }
+
+    @Test
+    public void testUnwritableConnectionGetsNoMoreRdy() {
+        boolean[] writable = new boolean[]{true, false, true, false};
+        int[] rdy = InFlightBudget.apportion(100, new long[]{0, 300, 0, 100}, new int[]{1, 20, 1, 30}, writable, 0);
+        //unwritable connections keep rdy they have, and the rest goes to writable ones
+        Assert.assertEquals(rdy[1], 20);
+        Assert.assertEquals(rdy[3], 25);
+        Assert.assertEquals(sum(rdy), 100);
+        //idle unwritable connection is not given rdy in rotation
+        rdy = InFlightBudget.apportion(2, new long[4], new int[4], writable, 1);
+        Assert.assertEquals(rdy, new int[]{1, 0, 1, 0});
+        rdy = InFlightBudget.holdUnwritable(AdaptiveRdyController.share(10, 4), new int[]{0, 0, 3, 3}, writable);
+        Assert.assertEquals(rdy, new int[]{5, 0, 3, 2});
+    }
+
+    @Test
+    public void testApportionedRdyLoggedAtDebug() {
+        Logger logger = (Logger) LoggerFactory.getLogger(NSQConnectionImpl.class);
+        Level level = logger.getLevel();
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        logger.setLevel(Level.DEBUG);
+        NSQConfig config = new NSQConfig("BaseConsumer");
+        EmbeddedChannel channel = new EmbeddedChannel();
+        MockedNSQConnectionImpl conn = new MockedNSQConnectionImpl(0, new Address("127.0.0.1", 4150, "ha", "topic", 0, false), channel, config);
+        try {
+            //idle connection flips between rdy 0 and 1 in budget rotation
+            for (int round = 0; round < 4; round++) {
+                conn.apportionExpectedRdy(round % 2);
+                conn.mayUpdateRdy();
+                channel.flush();
+                Assert.assertEquals(conn.getCurrentRdyCount(), round % 2);
+            }
+            for (ILoggingEvent event : appender.list) {
+                Assert.assertEquals(event.getLevel(), Level.DEBUG, event.getFormattedMessage());
+            }
+            Assert.assertFalse(appender.list.isEmpty());
+            //rdy set out of apportioning is still logged at info
+            appender.list.clear();
+            conn.setExpectedRdy(3);
+            conn.mayUpdateRdy();
+            channel.flush();
+            Assert.assertEquals(appender.list.size(), 2);
+            for (ILoggingEvent event : appender.list) {
+                Assert.assertEquals(event.getLevel(), Level.INFO);
+            }
+        } finally {
+            logger.detachAppender(appender);
+            logger.setLevel(level);
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeMaxInFlight() {
+        Assert.assertEquals(new NSQConfig().getMaxInFlight(), 0);
+        new NSQConfig().setMaxInFlight(-1);
+    }
+}
@@ -0,0 +1,202 @@
+package com.youzan.nsq.client;
+
+import com.youzan.nsq.client.core.command.NSQCommand;
+import com.youzan.nsq.client.core.command.ReQueue;
+import com.youzan.nsq.client.entity.Address;
+import com.youzan.nsq.client.entity.NSQConfig;
+import com.youzan.nsq.client.entity.NSQMessage;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.youzan.nsq.client.utils.MessageFrameUtil.messageFrame;
+
+public class KeyOrderedConsumptionTest {
+    private static final int KEYS = 8;
+
+    private static int sequenceOf(NSQMessage message) {
+        return ByteBuffer.wrap(message.getMessageBody()).getInt();
+    }
+
+    @Test
+    public void testOrderPerKeyInParallel() throws Exception {
+        final int messages = 400;
+        NSQConfig config = new NSQConfig("BaseConsumer");
+        config.setKeyOrderedLanes(KEYS).setConsumerWorkerPoolSize(KEYS);
+        final Map<Integer, List<Integer>> sequencesPerKey = new ConcurrentHashMap<>();
+        final AtomicInteger running = new AtomicInteger(0);
+        final AtomicInteger maxRunning = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(messages);
+        MockedConsumer consumer = new MockedConsumer(config, new MessageHandler() {
+            @Override
+            public void process(NSQMessage message) {
+                int concurrency = running.incrementAndGet();
+                while (concurrency > maxRunning.get() && !maxRunning.compareAndSet(maxRunning.get(), concurrency)) {
+                }
+                try {
+                    int sequence = sequenceOf(message);
+                    sequencesPerKey.get(sequence % KEYS).add(sequence);
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                    latch.countDown();
+                }
+            }
+        });
+        consumer.setMessageKeyExtractor(new MessageKeyExtractor() {
+            @Override
+            public Object keyOf(NSQMessage message) {
+                return sequenceOf(message) % KEYS;
+            }
+        });
+        for (int key = 0; key < KEYS; key++) {
+            sequencesPerKey.put(key, new CopyOnWriteArrayList<Integer>());
+        }
+        EmbeddedChannel channel = new EmbeddedChannel();
+        //embedded channel is not thread safe, responses from workers are not written
+        MockedNSQConnectionImpl conn = new MockedNSQConnectionImpl(0, new Address("127.0.0.1", 4150, "ha", "topic", 0, false), channel, config) {
+            @Override
+            public ChannelFuture command(NSQCommand cmd) {
+                return this.channel.newSucceededFuture();
+            }
+        };
+        conn.setTopic("topic");
+        try {
+            for (int i = 0; i < messages; i++) {
+                consumer.incoming(messageFrame(i), conn);
+            }
+            Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+            for (Map.Entry<Integer, List<Integer>> entry : sequencesPerKey.entrySet()) {
+                List<Integer> expected = new ArrayList<>();
+                for (int i = entry.getKey(); i < messages; i += KEYS) {
+                    expected.add(i);
+                }
+                Assert.assertEquals(entry.getValue(), expected, "messages of key " + entry.getKey() + " out of order");
+            }
+            Assert.assertTrue(maxRunning.get() > 1, "messages of different keys are not consumed in parallel");
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testFailedMessageHoldsItsKey() throws Exception {
+        final int messages = 4 * KEYS;
+        NSQConfig config = new NSQConfig("BaseConsumer");
+        config.setKeyOrderedLanes(KEYS).setConsumerWorkerPoolSize(KEYS);
+        final List<Integer> sequencesOfKey0 = new CopyOnWriteArrayList<>();
+        final AtomicInteger failures = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(messages);
+        MockedConsumer consumer = new MockedConsumer(config, new MessageHandler() {
+            @Override
+            public void process(NSQMessage message) {
+                int sequence = sequenceOf(message);
+                //first message of key 0 fails twice
+                if (sequence == 0 && failures.getAndIncrement() < 2) {
+                    throw new IllegalStateException("sink is down");
+                }
+                if (sequence % KEYS == 0) {
+                    sequencesOfKey0.add(sequence);
+                }
+                latch.countDown();
+            }
+        });
+        consumer.setMessageKeyExtractor(new MessageKeyExtractor() {
+            @Override
+            public Object keyOf(NSQMessage message) {
+                return sequenceOf(message) % KEYS;
+            }
+        });
+        final List<NSQCommand> commands = new CopyOnWriteArrayList<>();
+        EmbeddedChannel channel = new EmbeddedChannel();
+        MockedNSQConnectionImpl conn = new MockedNSQConnectionImpl(0, new Address("127.0.0.1", 4150, "ha", "topic", 0, false), channel, config) {
+            @Override
+            public ChannelFuture command(NSQCommand cmd) {
+                commands.add(cmd);
+                return this.channel.newSucceededFuture();
+            }
+        };
+        conn.setTopic("topic");
+        try {
+            for (int i = 0; i < messages; i++) {
+                consumer.incoming(messageFrame(i), conn);
+            }
+            Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+            Assert.assertEquals(failures.get(), 3);
+            Assert.assertEquals(sequencesOfKey0, Arrays.asList(0, KEYS, 2 * KEYS, 3 * KEYS), "messages of failed key out of order");
+            //failed message is processed again in lane, not requeued
+            for (NSQCommand cmd : commands) {
+                Assert.assertFalse(cmd instanceof ReQueue);
+            }
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testHeldKeyFreesWorker() throws Exception {
+        final int messages = 4 * KEYS;
+        NSQConfig config = new NSQConfig("BaseConsumer");
+        config.setKeyOrderedLanes(KEYS).setConsumerWorkerPoolSize(1);
+        final List<Integer> consumed = new CopyOnWriteArrayList<>();
+        final AtomicInteger failures = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(messages);
+        MockedConsumer consumer = new MockedConsumer(config, new MessageHandler() {
+            @Override
+            public void process(NSQMessage message) {
+                int sequence = sequenceOf(message);
+                if (sequence == 0 && failures.getAndIncrement() < 3) {
+                    throw new IllegalStateException("sink is down");
+                }
+                consumed.add(sequence);
+                latch.countDown();
+            }
+        });
+        consumer.setMessageKeyExtractor(new MessageKeyExtractor() {
+            @Override
+            public Object keyOf(NSQMessage message) {
+                return sequenceOf(message) % KEYS;
+            }
+        });
+        EmbeddedChannel channel = new EmbeddedChannel();
+        MockedNSQConnectionImpl conn = new MockedNSQConnectionImpl(0, new Address("127.0.0.1", 4150, "ha", "topic", 0, false), channel, config) {
+            @Override
+            public ChannelFuture command(NSQCommand cmd) {
+                return this.channel.newSucceededFuture();
+            }
+        };
+        conn.setTopic("topic");
+        try {
+            for (int i = 0; i < messages; i++) {
+                consumer.incoming(messageFrame(i), conn);
+            }
+            Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+            //the only worker consumes other keys while key 0 waits for its retry
+            List<Integer> key0 = new ArrayList<>();
+            for (int i = 0; i < consumed.size(); i++) {
+                if (consumed.get(i) % KEYS == 0) {
+                    key0.add(consumed.get(i));
+                } else {
+                    Assert.assertTrue(key0.isEmpty(), "other keys wait for held key: " + consumed);
+                }
+            }
+            Assert.assertEquals(key0, Arrays.asList(0, KEYS, 2 * KEYS, 3 * KEYS));
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.youzan.nsq.client.claimcheck;
+
+import com.youzan.nsq.client.Consumer;
+import com.youzan.nsq.client.Producer;
+import com.youzan.nsq.client.ProducerImplV2;
+import com.youzan.nsq.client.entity.Address;
+import com.youzan.nsq.client.entity.Message;
+import com.youzan.nsq.client.entity.NSQConfig;
+import com.youzan.nsq.client.entity.NSQMessage;
+import com.youzan.nsq.client.entity.Topic;
+import com.youzan.nsq.client.exception.NSQDeadlineExceededException;
+import org.easymock.EasyMock;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+public class ClaimCheckTest {
+
+    @Test
+    public void testOffloadAndResolve() throws IOException {
+        File dir = Files.createTempDirectory("nsq-claim-check").toFile();
+        BlobStore store = new LocalFileBlobStore(dir);
+        Topic topic = new Topic("JavaTesting-ClaimCheck");
+
+        byte[] large = new byte[64 * 1024];
+        new Random().nextBytes(large);
+        Message small = Message.create(topic, "small message");
+        Assert.assertSame(ClaimCheck.offload(small, store, 1024), small);
+
+        Message msg = Message.create(topic, large);
+        msg.setTopicShardingIDLong(1L);
+        Message offloaded = ClaimCheck.offload(msg, store, 1024);
+        Assert.assertEquals(offloaded.getTopicShardingId(), 1L);
+        byte[] wireBody = offloaded.getMessageBodyInByte();
+        Assert.assertTrue(ClaimCheck.isClaimCheck(wireBody));
+        Assert.assertTrue(wireBody.length < 1024);
+
+        NSQConfig config = new NSQConfig("BaseConsumer").setClaimCheckBlobStore(store);
+        Consumer consumer = EasyMock.createMock(Consumer.class);
+        EasyMock.expect(consumer.getConfig()).andReturn(config).anyTimes();
+        EasyMock.replay(consumer);
+        Address address = new Address("127.0.0.1", 4150, "ha", topic.getTopicText(), 0, false);
+        NSQMessage received = new NSQMessage(new byte[8], new byte[2], new byte[16], new byte[8], new byte[8], wireBody,
+                address, 1L, 0, topic, false, true, consumer);
+        Assert.assertEquals(received.getMessageBody(), large);
+
+        List<byte[]> bodies = ClaimCheck.offload(topic.getTopicText(), Arrays.asList("small".getBytes(), large), store, 1024);
+        Assert.assertFalse(ClaimCheck.isClaimCheck(bodies.get(0)));
+        Assert.assertEquals(ClaimCheck.resolve(bodies.get(1), store), large);
+
+        store.delete(ClaimCheck.getReference(bodies.get(1)));
+        store.delete(ClaimCheck.getReference(wireBody));
+        Assert.assertTrue(dir.delete());
+    }
+
+    @Test
+    public void testBlobDeletedOnPublishFailure() throws Exception {
+        File dir = Files.createTempDirectory("nsq-claim-check").toFile();
+        NSQConfig config = new NSQConfig();
+        config.setLookupAddresses("127.0.0.1:4161");
+        config.setClaimCheckBlobStore(new LocalFileBlobStore(dir)).setClaimCheckThresholdInByte(1024);
+        Producer producer = new ProducerImplV2(config);
+        try {
+            producer.start();
+            try {
+                //deadline runs out after message body is stored
+                producer.publishAndGetReceipt(Message.create(new Topic("JavaTesting-ClaimCheck"), new byte[64 * 1024]), 1, TimeUnit.NANOSECONDS);
+                Assert.fail("publish should exceed deadline");
+            } catch (NSQDeadlineExceededException e) {
+                //expected
+            }
+            String[] blobs = dir.list();
+            Assert.assertNotNull(blobs);
+            Assert.assertEquals(blobs.length, 0, "blob of failed publish is left: " + Arrays.toString(blobs));
+        } finally {
+            producer.close();
+            Assert.assertTrue(dir.delete());
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testInvalidReference() throws IOException {
+        BlobStore store = new LocalFileBlobStore(Files.createTempDirectory("nsq-claim-check").toFile());
+        store.get("../passwd");
+    }
+}
@@ -0,0 +1,142 @@
+package com.youzan.nsq.client.core;
+
+import com.youzan.nsq.client.core.command.Finish;
+import com.youzan.nsq.client.entity.Address;
+import com.youzan.nsq.client.entity.NSQConfig;
+import com.youzan.nsq.client.network.netty.NSQEncoder;
+import com.youzan.nsq.client.network.netty.NSQFlushCoalescingHandler;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.timeout.IdleStateHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmarks FIN against a local {@link FakeNsqd}. Flushes on client side stand for write syscalls, and reads on fake
+ * nsqd side stand for read syscalls.
+ */
+public class CommandFlushCoalescingTest {
+    private static final Logger logger = LoggerFactory.getLogger(CommandFlushCoalescingTest.class);
+    private EventLoopGroup group;
+    private FakeNsqd nsqd;
+
+    @BeforeClass(alwaysRun = true)
+    public void startFakeNsqd() throws InterruptedException {
+        group = new NioEventLoopGroup(2);
+        nsqd = new FakeNsqd(group);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopFakeNsqd() {
+        nsqd.close();
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    @Test(groups = "perf")
+    public void benchmarkFinish() throws Exception {
+        int commands = 200000;
+        long[] flushEach = finish(new NSQConfig().setCommandFlushBatchSize(1), commands);
+        long[] coalesced = finish(new NSQConfig(), commands);
+        long[] delayed = finish(new NSQConfig().setCommandFlushBatchSize(256).setCommandFlushDelayInMicrosecond(50), commands);
+        logger.info("Flush every command: {} flushes, {} nsqd reads, {} FIN/s.", flushEach[0], flushEach[1], flushEach[2]);
+        logger.info("Coalesced flush: {} flushes, {} nsqd reads, {} FIN/s.", coalesced[0], coalesced[1], coalesced[2]);
+        logger.info("Coalesced flush with 50us delay: {} flushes, {} nsqd reads, {} FIN/s.", delayed[0], delayed[1], delayed[2]);
+        Assert.assertEquals(flushEach[0], commands);
+        Assert.assertTrue(coalesced[0] < commands);
+        Assert.assertTrue(delayed[0] < commands);
+    }
+
+    @Test
+    public void testLoneCommandFlushed() throws Exception {
+        NSQConfig config = new NSQConfig().setCommandFlushBatchSize(256).setCommandFlushDelayInMicrosecond(50);
+        Channel ch = new Bootstrap().group(group).channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        //long scheduled task lets event loop select for long
+                        ch.pipeline().addLast(new IdleStateHandler(120, 120, 120));
+                        ch.pipeline().addLast(new NSQEncoder());
+                        ch.pipeline().addLast(new NSQFlushCoalescingHandler());
+                    }
+                }).connect(nsqd.address()).sync().channel();
+        final NSQConnection conn = new NSQConnectionImpl(0, new Address("127.0.0.1", 4150, "ha", "topic", 0, false), ch, config);
+        ch.attr(NSQConnection.STATE).set(conn);
+        nsqd.reset();
+        try {
+            for (int i = 1; i <= 20; i++) {
+                conn.command(new Finish(new byte[16]));
+                long deadline = System.currentTimeMillis() + 500;
+                while (nsqd.receivedBytes.get() < i * FakeNsqd.FIN_SIZE && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(1);
+                }
+                Assert.assertEquals(nsqd.receivedBytes.get(), i * FakeNsqd.FIN_SIZE, "FIN " + i + " is not flushed in 500ms");
+            }
+        } finally {
+            ch.close().sync();
+        }
+    }
+
+    /**
+     * @return flushes, reads on nsqd, and FIN per second
+     */
+    private long[] finish(final NSQConfig config, final int commands) throws Exception {
+        final AtomicLong flushes = new AtomicLong(0);
+        Channel ch = new Bootstrap().group(group).channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new ChannelOutboundHandlerAdapter() {
+                            @Override
+                            public void flush(ChannelHandlerContext ctx) throws Exception {
+                                flushes.incrementAndGet();
+                                super.flush(ctx);
+                            }
+                        });
+                        ch.pipeline().addLast(new NSQEncoder());
+                        ch.pipeline().addLast(new NSQFlushCoalescingHandler());
+                    }
+                }).connect(nsqd.address()).sync().channel();
+        final NSQConnection conn = new NSQConnectionImpl(0, new Address("127.0.0.1", 4150, "ha", "topic", 0, false), ch, config);
+        ch.attr(NSQConnection.STATE).set(conn);
+        nsqd.reset();
+        final int threads = 4;
+        final CountDownLatch latch = new CountDownLatch(threads);
+        final byte[] messageID = new byte[16];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < commands / threads; i++) {
+                        conn.command(new Finish(messageID));
+                    }
+                    latch.countDown();
+                }
+            }).start();
+        }
+        Assert.assertTrue(latch.await(60, TimeUnit.SECONDS));
+        long expected = (long) commands / threads * threads * FakeNsqd.FIN_SIZE;
+        long deadline = System.currentTimeMillis() + 60000;
+        while (nsqd.receivedBytes.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        long elapsed = System.nanoTime() - start;
+        Assert.assertEquals(nsqd.receivedBytes.get(), expected);
+        ch.close().sync();
+        return new long[]{flushes.get(), nsqd.reads.get(), commands * TimeUnit.SECONDS.toNanos(1) / elapsed};
+    }
+}
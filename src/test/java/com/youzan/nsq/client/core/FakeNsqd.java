@@ -0,0 +1,178 @@
+package com.youzan.nsq.client.core;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.LineBasedFrameDecoder;
+import io.netty.util.ReferenceCountUtil;
+import org.testng.Assert;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fake nsqd for benchmarks, which counts bytes and reads of commands it receives. Once messages are put into it with
+ * {@link #deliver(int)}, each connection gets messages within RDY it sends, and a new message for every FIN, like
+ * nsqd does. Message ID is time message is sent in hex, so round trip of each message until its FIN is recorded.
+ */
+class FakeNsqd {
+    //FIN <16 bytes message id>\n
+    static final int FIN_SIZE = 4 + 16 + 1;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final int BODY_SIZE = 64;
+
+    final AtomicLong receivedBytes = new AtomicLong(0);
+    final AtomicLong reads = new AtomicLong(0);
+    private final AtomicInteger remaining = new AtomicInteger(0);
+    private final AtomicInteger finished = new AtomicInteger(0);
+    private volatile long[] roundTrips = new long[0];
+    private final Channel server;
+
+    FakeNsqd(final EventLoopGroup group) throws InterruptedException {
+        server = new ServerBootstrap().group(group).channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                            @Override
+                            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                reads.incrementAndGet();
+                                receivedBytes.addAndGet(((ByteBuf) msg).readableBytes());
+                                ctx.fireChannelRead(msg);
+                            }
+                        });
+                        ch.pipeline().addLast(new LineBasedFrameDecoder(64));
+                        ch.pipeline().addLast(new DeliveryHandler());
+                    }
+                }).bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+    }
+
+    SocketAddress address() {
+        return server.localAddress();
+    }
+
+    void reset() {
+        receivedBytes.set(0);
+        reads.set(0);
+    }
+
+    /**
+     * Put messages to deliver to connections which send RDY, and reset round trips recorded.
+     */
+    void deliver(int messages) {
+        roundTrips = new long[messages];
+        finished.set(0);
+        remaining.set(messages);
+    }
+
+    /**
+     * @return round trips in nanoseconds of messages finished since last {@link #deliver(int)}, sorted
+     */
+    long[] awaitFinished(long timeoutInMillisecond) throws InterruptedException {
+        long[] result = roundTrips;
+        long deadline = System.currentTimeMillis() + timeoutInMillisecond;
+        while (finished.get() < result.length && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(finished.get(), result.length);
+        result = Arrays.copyOf(result, result.length);
+        Arrays.sort(result);
+        return result;
+    }
+
+    void awaitReceived(long expected) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (receivedBytes.get() < expected && System.nanoTime() < deadline) {
+            Thread.yield();
+        }
+        Assert.assertEquals(receivedBytes.get(), expected);
+    }
+
+    void close() {
+        server.close();
+    }
+
+    private boolean take() {
+        int n;
+        do {
+            n = remaining.get();
+            if (n <= 0) {
+                return false;
+            }
+        } while (!remaining.compareAndSet(n, n - 1));
+        return true;
+    }
+
+    private class DeliveryHandler extends ChannelInboundHandlerAdapter {
+        private int rdy = 0;
+        private int inFlight = 0;
+        private boolean written = false;
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf line = (ByteBuf) msg;
+            try {
+                if (line.readableBytes() == FIN_SIZE - 1 && line.getByte(line.readerIndex()) == 'F') {
+                    //FIN before any RDY is only counted
+                    if (rdy == 0) {
+                        return;
+                    }
+                    long sent = parseHex(line, line.readerIndex() + 4);
+                    int i = finished.getAndIncrement();
+                    long[] trips = roundTrips;
+                    if (i < trips.length) {
+                        trips[i] = System.nanoTime() - sent;
+                    }
+                    inFlight--;
+                } else if (line.getByte(line.readerIndex()) == 'R') {
+                    rdy = Integer.parseInt(line.toString(line.readerIndex() + 4, line.readableBytes() - 4, StandardCharsets.US_ASCII));
+                }
+                while (inFlight < rdy && take()) {
+                    ctx.write(message(ctx));
+                    inFlight++;
+                    written = true;
+                }
+            } finally {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            if (written) {
+                written = false;
+                ctx.flush();
+            }
+        }
+
+        private ByteBuf message(ChannelHandlerContext ctx) {
+            final int size = 4 + 8 + 2 + 16 + BODY_SIZE;
+            long now = System.nanoTime();
+            ByteBuf buf = ctx.alloc().buffer(4 + size);
+            buf.writeInt(size).writeInt(2).writeLong(now).writeShort(1);
+            for (int shift = 60; shift >= 0; shift -= 4) {
+                buf.writeByte(HEX[(int) (now >>> shift) & 0xF]);
+            }
+            return buf.writeZero(BODY_SIZE);
+        }
+
+        private long parseHex(ByteBuf buf, int index) {
+            long value = 0;
+            for (int i = 0; i < 16; i++) {
+                byte b = buf.getByte(index + i);
+                value = (value << 4) | (b <= '9' ? b - '0' : b - 'a' + 10);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.youzan.nsq.client.core;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+public class TopicActivityHistoryTest {
+
+    @Test
+    public void testExpireAndPrewarmTopics() {
+        TopicActivityHistory history = new TopicActivityHistory();
+        history.record("hot", 1000L);
+        history.record("hot", 2000L);
+        history.record("hot", 3000L);
+        history.record("warm", 2500L);
+        history.record("cold", 100L);
+
+        List<String> prewarm = history.getPrewarmTopics(1000L);
+        Assert.assertEquals(prewarm.size(), 2);
+        Assert.assertEquals(prewarm.get(0), "hot");
+        Assert.assertEquals(prewarm.get(1), "warm");
+
+        Map<String, Long> expired = history.getExpiredTopics(1000L);
+        Assert.assertEquals(expired.size(), 1);
+        Assert.assertEquals((long) expired.get("cold"), 100L);
+        //topic published again after expiration check is not removed
+        history.record("cold", 4000L);
+        Assert.assertFalse(history.remove("cold", 100L));
+        Assert.assertTrue(history.remove("hot", 3000L));
+        Assert.assertEquals(history.size(), 2);
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        File dir = Files.createTempDirectory("topic-history").toFile();
+        File file = new File(dir, "history");
+        try {
+            TopicActivityHistory history = new TopicActivityHistory();
+            history.record("topic1", 1000L);
+            history.record("topic1", 2000L);
+            history.record("topic2", 3000L);
+            history.save(file);
+
+            TopicActivityHistory loaded = new TopicActivityHistory();
+            Assert.assertEquals(loaded.load(file), 2);
+            Assert.assertEquals(loaded.getLastActiveTime("topic1"), 2000L);
+            Assert.assertEquals(loaded.getPublishCount("topic1"), 2L);
+            Assert.assertEquals(loaded.getLastActiveTime("topic2"), 3000L);
+            Assert.assertEquals(loaded.getLastActiveTime("topic3"), -1L);
+            Assert.assertEquals(new TopicActivityHistory().load(new File(dir, "absent")), 0);
+        } finally {
+            file.delete();
+            dir.delete();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.youzan.nsq.client.core;
+
+import com.youzan.nsq.client.core.command.Finish;
+import com.youzan.nsq.client.core.command.Rdy;
+import com.youzan.nsq.client.entity.Address;
+import com.youzan.nsq.client.entity.NSQConfig;
+import com.youzan.nsq.client.network.frame.MessageFrame;
+import com.youzan.nsq.client.network.frame.NSQFrame;
+import com.youzan.nsq.client.network.netty.NSQClientInitializer;
+import com.youzan.nsq.client.network.netty.NSQTransport;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannelConfig;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.youzan.nsq.client.entity.NSQConfig.TuningProfile.HIGH_THROUGHPUT;
+import static com.youzan.nsq.client.entity.NSQConfig.TuningProfile.LOW_FOOTPRINT;
+import static com.youzan.nsq.client.entity.NSQConfig.TuningProfile.LOW_LATENCY;
+
+/**
+ * Benchmarks tuning profiles against a local {@link FakeNsqd}, which delivers messages within RDY like nsqd. Each
+ * profile consumes over its own socket options, allocator, buffers, RDY, flush coalescing and consumer worker pool,
+ * which finishes messages. It reports messages per second with backlog, round trip of single message without backlog,
+ * nsqd reads, memory in socket and write buffers per connection, and worker threads. Output buffer of nsqd and producer
+ * connection pool are not covered by fake nsqd.
+ */
+public class TuningProfileBenchmarkTest {
+    private static final Logger logger = LoggerFactory.getLogger(TuningProfileBenchmarkTest.class);
+    private static final int CONNECTIONS = 4;
+
+    private EventLoopGroup serverGroup;
+    private EventLoopGroup clientGroup;
+    private FakeNsqd nsqd;
+
+    @BeforeClass(alwaysRun = true)
+    public void startFakeNsqd() throws InterruptedException {
+        serverGroup = NSQTransport.NIO.newEventLoopGroup(1, null);
+        //epoll if available, for transport specific options in profiles
+        clientGroup = NSQTransport.AUTO.newEventLoopGroup(2, null);
+        nsqd = new FakeNsqd(serverGroup);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopFakeNsqd() {
+        nsqd.close();
+        clientGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        serverGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testProfileOverridable() {
+        NSQConfig config = new NSQConfig().setTuningProfile(NSQConfig.TuningProfile.HIGH_THROUGHPUT);
+        Assert.assertEquals(config.getTuningProfile(), NSQConfig.TuningProfile.HIGH_THROUGHPUT);
+        Assert.assertEquals(config.getCommandFlushBatchSize(), 256);
+        Assert.assertEquals(config.getRdy(), 50);
+        config.setRdy(10);
+        Assert.assertEquals(config.getRdy(), 10);
+
+        config.setTuningProfile(NSQConfig.TuningProfile.LOW_FOOTPRINT);
+        Assert.assertFalse(config.isPooledAllocator());
+        Assert.assertFalse(config.isTcpNoDelay());
+        Assert.assertEquals(config.getConnectionSize(), 4);
+
+        config.setTuningProfile(NSQConfig.TuningProfile.LOW_LATENCY);
+        Assert.assertTrue(config.isTcpNoDelay());
+        Assert.assertEquals(config.getCommandFlushBatchSize(), 1);
+        Assert.assertEquals(config.getOutputBufferSize(), Integer.valueOf(-1));
+    }
+
+    @Test(groups = "perf")
+    public void benchmarkProfiles() throws Exception {
+        Map<NSQConfig.TuningProfile, long[]> results = new EnumMap<>(NSQConfig.TuningProfile.class);
+        //first round for warm up
+        for (int round = 0; round < 2; round++) {
+            for (NSQConfig.TuningProfile profile : NSQConfig.TuningProfile.values()) {
+                NSQConfig config = new NSQConfig().setTuningProfile(profile);
+                long[] result = consume(config, 100000, 2000);
+                logger.info("Round {} {} over {}: {} msg/s, {} nsqd reads, round trip p50 {} us, p99 {} us, {} bytes socket and write buffers per connection, {} workers.",
+                        round, profile, NSQTransport.of(clientGroup), result[0], result[1], result[2] / 1000.0, result[3] / 1000.0,
+                        result[4], config.getConsumerWorkerPoolSize());
+                results.put(profile, result);
+            }
+        }
+        Assert.assertTrue(results.get(HIGH_THROUGHPUT)[0] > results.get(LOW_LATENCY)[0]);
+        Assert.assertTrue(results.get(HIGH_THROUGHPUT)[0] > results.get(LOW_FOOTPRINT)[0]);
+        Assert.assertTrue(results.get(LOW_LATENCY)[2] < results.get(HIGH_THROUGHPUT)[2]);
+        Assert.assertTrue(results.get(LOW_LATENCY)[2] < results.get(LOW_FOOTPRINT)[2]);
+        Assert.assertTrue(results.get(LOW_FOOTPRINT)[4] < results.get(LOW_LATENCY)[4]);
+        Assert.assertTrue(results.get(LOW_FOOTPRINT)[4] < results.get(HIGH_THROUGHPUT)[4]);
+    }
+
+    /**
+     * @return messages per second with backlog, reads on nsqd, p50 and p99 round trip of single message in nanoseconds,
+     * and bytes of socket buffers in kernel and write buffer high water mark per connection
+     */
+    private long[] consume(final NSQConfig config, final int messages, final int probes) throws Exception {
+        final ExecutorService workers = Executors.newFixedThreadPool(config.getConsumerWorkerPoolSize());
+        Client worker = EasyMock.createNiceMock(Client.class);
+        worker.incoming(EasyMock.anyObject(NSQFrame.class), EasyMock.anyObject(NSQConnection.class));
+        EasyMock.expectLastCall().andStubAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                Object frame = EasyMock.getCurrentArguments()[0];
+                final NSQConnection conn = (NSQConnection) EasyMock.getCurrentArguments()[1];
+                if (frame instanceof MessageFrame) {
+                    final byte[] messageID = ((MessageFrame) frame).getMessageID();
+                    workers.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            conn.command(new Finish(messageID));
+                        }
+                    });
+                }
+                return null;
+            }
+        });
+        EasyMock.replay(worker);
+        try {
+            //backlog, connections consume with RDY of profile
+            nsqd.reset();
+            nsqd.deliver(messages);
+            List<Channel> channels = connect(config, worker, CONNECTIONS);
+            long start = System.nanoTime();
+            for (Channel ch : channels) {
+                ch.attr(NSQConnection.STATE).get().command(new Rdy(config.getRdy()));
+            }
+            nsqd.awaitFinished(60000);
+            long elapsed = System.nanoTime() - start;
+            long nsqdReads = nsqd.reads.get();
+            SocketChannelConfig socket = (SocketChannelConfig) channels.get(0).config();
+            long buffers = socket.getSendBufferSize() + socket.getReceiveBufferSize() + config.getWriteBufferHighWaterMarkInByte();
+            close(channels);
+
+            //no backlog, single message in flight
+            nsqd.deliver(probes);
+            channels = connect(config, worker, 1);
+            channels.get(0).attr(NSQConnection.STATE).get().command(new Rdy(1));
+            long[] roundTrips = nsqd.awaitFinished(60000);
+            close(channels);
+            return new long[]{messages * TimeUnit.SECONDS.toNanos(1) / elapsed, nsqdReads, roundTrips[probes / 2], roundTrips[probes * 99 / 100], buffers};
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private List<Channel> connect(final NSQConfig config, final Client worker, int count) throws InterruptedException {
+        List<Channel> channels = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Bootstrap bootstrap = new Bootstrap();
+            NSQTransport.initBootstrap(bootstrap, clientGroup, config);
+            bootstrap.handler(new NSQClientInitializer(config.getIdleTimeoutInSecond()));
+            Channel ch = bootstrap.connect(nsqd.address()).sync().channel();
+            //pipeline after IDENTIFY without tls and compression, as fake nsqd skips it
+            ch.pipeline().remove("FeatureDetectionHandler");
+            ch.pipeline().replace("LengthFieldBasedFrameDecoder", "LengthFieldBasedFrameDecoder",
+                    new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4));
+            NSQConnection conn = new NSQConnectionImpl(i, new Address("127.0.0.1", 4150, "ha", "topic", 0, false), ch, config);
+            ch.attr(NSQConnection.STATE).set(conn);
+            ch.attr(Client.STATE).set(worker);
+            channels.add(ch);
+        }
+        return channels;
+    }
+
+    private void close(List<Channel> channels) throws InterruptedException {
+        for (Channel ch : channels) {
+            ch.close().sync();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.youzan.nsq.client.core.command;
+
+import com.youzan.nsq.client.core.NSQConnectionImpl;
+import com.youzan.nsq.client.entity.Address;
+import com.youzan.nsq.client.entity.Context;
+import com.youzan.nsq.client.entity.Message;
+import com.youzan.nsq.client.entity.NSQConfig;
+import com.youzan.nsq.client.entity.Topic;
+import com.youzan.nsq.client.network.netty.NSQEncoder;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class PubTest {
+
+    private static final byte[] BODY = "message body in buffer".getBytes(StandardCharsets.UTF_8);
+
+    private byte[] encode(final NSQCommand cmd) {
+        EmbeddedChannel channel = new EmbeddedChannel(new NSQEncoder());
+        //retained as connection does before write
+        Assert.assertTrue(channel.writeOutbound(ReferenceCountUtil.retain(cmd)));
+        ByteBuf out = channel.readOutbound();
+        try {
+            return ByteBufUtil.getBytes(out);
+        } finally {
+            out.release();
+            channel.finish();
+        }
+    }
+
+    @Test
+    public void testEncodeByteBufBody() {
+        Topic topic = new Topic("JavaTesting-Producer-Base");
+        ByteBuf body = PooledByteBufAllocator.DEFAULT.directBuffer(BODY.length);
+        body.writeBytes(BODY);
+        Message bufMsg = Message.create(topic, body);
+        Message arrMsg = Message.create(topic, BODY);
+
+        Assert.assertEquals(bufMsg.getMessageBodyLength(), BODY.length);
+        Assert.assertEquals(bufMsg.getMessageBodiesInByte().size(), 1);
+        Assert.assertEquals(bufMsg.getMessageBodiesInByte().get(0), BODY);
+        Assert.assertEquals(encode(new Pub(bufMsg)), new Pub(arrMsg).getBytes());
+        Assert.assertEquals(encode(new PubTrace(bufMsg.traced())), new PubTrace(arrMsg.traced()).getBytes());
+        //encoded buffer released after write, message still holds its reference for retry
+        Assert.assertEquals(body.refCnt(), 1);
+        bufMsg.release();
+        bufMsg.release();
+        Assert.assertEquals(body.refCnt(), 0);
+    }
+
+    @Test
+    public void testEncodeByteBufferBody() {
+        Topic topic = new Topic("JavaTesting-Producer-Base");
+        ByteBuffer direct = ByteBuffer.allocateDirect(BODY.length + 2);
+        direct.put((byte) 0).put(BODY).put((byte) 0);
+        direct.position(1).limit(1 + BODY.length);
+        Message bufMsg = Message.create(topic, direct);
+        Assert.assertEquals(bufMsg.getMessageBodyInByte(), BODY);
+        Assert.assertEquals(bufMsg.getMessageBodiesInByte().get(0), BODY);
+        Assert.assertEquals(encode(new Pub(bufMsg)), new Pub(Message.create(topic, BODY)).getBytes());
+        Assert.assertEquals(new Pub(bufMsg).getBytes(), new Pub(Message.create(topic, BODY)).getBytes());
+    }
+
+    @Test
+    public void testPublishTimeoutBeforeEncode() throws Exception {
+        Topic topic = new Topic("JavaTesting-Producer-Base");
+        final byte[] expected = new Pub(Message.create(topic, BODY)).getBytes();
+        final ByteBuf received = Unpooled.buffer();
+        final CountDownLatch written = new CountDownLatch(1);
+        DefaultEventLoopGroup group = new DefaultEventLoopGroup(1);
+        try {
+            LocalAddress local = new LocalAddress("PubTest");
+            new ServerBootstrap().group(group).channel(LocalServerChannel.class)
+                    .childHandler(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            ByteBuf buf = (ByteBuf) msg;
+                            received.writeBytes(buf);
+                            buf.release();
+                            if (received.readableBytes() >= expected.length)
+                                written.countDown();
+                        }
+                    }).bind(local).sync();
+            Channel channel = new Bootstrap().group(group).channel(LocalChannel.class).handler(new NSQEncoder())
+                    .connect(local).sync().channel();
+            NSQConnectionImpl conn = new NSQConnectionImpl(1, new Address("127.0.0.1", 4150, "", topic.getTopicText(), 0, false), channel, new NSQConfig());
+
+            ByteBuf body = PooledByteBufAllocator.DEFAULT.directBuffer(BODY.length);
+            body.writeBytes(BODY);
+            Message msg = Message.create(topic, body);
+            //event loop is busy, PUB is not encoded before publish times out
+            final CountDownLatch busy = new CountDownLatch(1);
+            channel.eventLoop().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        busy.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            Context cxt = new Context();
+            cxt.setDeadline(100, TimeUnit.MILLISECONDS);
+            try {
+                conn.commandAndGetResponse(cxt, new Pub(msg));
+                Assert.fail("publish should time out");
+            } catch (TimeoutException e) {
+                //expected
+            } finally {
+                //as producer does when publish returns
+                msg.release();
+            }
+            Assert.assertEquals(body.refCnt(), 1);
+            busy.countDown();
+
+            Assert.assertTrue(written.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(ByteBufUtil.getBytes(received), expected);
+            Assert.assertEquals(body.refCnt(), 0);
+        } finally {
+            received.release();
+            group.shutdownGracefully();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.youzan.nsq.client.core.pool.producer;
+
+import com.youzan.nsq.client.entity.Address;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class AIMDConcurrencyLimiterTest {
+    private final Address node1 = new Address("127.0.0.1", 4150, "0.3.7-HA.1.5.7.1", "topic", 0, false);
+    private final Address node1Partition1 = new Address("127.0.0.1", 4150, "0.3.7-HA.1.5.7.1", "topic", 1, false);
+    private final Address node2 = new Address("127.0.0.2", 4150, "0.3.7-HA.1.5.7.1", "topic", 0, false);
+
+    @Test
+    public void testFailFastBeyondLimit() throws InterruptedException {
+        AIMDConcurrencyLimiter limiter = new AIMDConcurrencyLimiter(2, 2, 500L, AIMDConcurrencyLimiter.DEFAULT_BACKOFF_RATIO);
+        Assert.assertTrue(limiter.tryAcquire(node1, 0L));
+        //limit is shared among partitions on the same nsqd
+        Assert.assertTrue(limiter.tryAcquire(node1Partition1, 0L));
+        Assert.assertFalse(limiter.tryAcquire(node1, 10L));
+        //other nsqd is not affected
+        Assert.assertTrue(limiter.tryAcquire(node2, 0L));
+        limiter.release(node1);
+        Assert.assertTrue(limiter.tryAcquire(node1, 0L));
+        Assert.assertEquals(limiter.getInFlight(node1), 2);
+    }
+
+    @Test
+    public void testDecreaseOnPushbackAndRecover() throws InterruptedException {
+        AIMDConcurrencyLimiter limiter = new AIMDConcurrencyLimiter(8, 8, 100L, AIMDConcurrencyLimiter.DEFAULT_BACKOFF_RATIO);
+        Assert.assertTrue(limiter.tryAcquire(node1, 0L));
+        limiter.release(node1, 10L, true);
+        Assert.assertEquals(limiter.getLimit(node1), 4);
+
+        //second pushback within latency threshold window does not decrease again
+        Assert.assertTrue(limiter.tryAcquire(node1, 0L));
+        limiter.release(node1, 200L, false);
+        Assert.assertEquals(limiter.getLimit(node1), 4);
+
+        Thread.sleep(150L);
+        Assert.assertTrue(limiter.tryAcquire(node1, 0L));
+        limiter.release(node1, 200L, false);
+        Assert.assertEquals(limiter.getLimit(node1), 2);
+
+        //additive increase, about one per limit of successful publishes
+        for (int i = 0; i < 6; i++) {
+            Assert.assertTrue(limiter.tryAcquire(node1, 0L));
+            limiter.release(node1, 10L, false);
+        }
+        Assert.assertTrue(limiter.getLimit(node1) >= 3);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(limiter.tryAcquire(node1, 0L));
+            limiter.release(node1, 10L, false);
+        }
+        Assert.assertEquals(limiter.getLimit(node1), 8);
+        Assert.assertEquals(limiter.getInFlight(node1), 0);
+    }
+}
@@ -0,0 +1,175 @@
+package com.youzan.nsq.client.core.pool.producer;
+
+import com.youzan.nsq.client.core.NSQConnection;
+import com.youzan.nsq.client.entity.Address;
+import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ThreadAffineConnectionBinderTest {
+    private final Address address = new Address("127.0.0.1", 4150, "0.3.7-HA.1.5.7.1", "topic", 0, false);
+
+    private static NSQConnection mockConnection(final Address address, final AtomicBoolean connected) {
+        NSQConnection conn = EasyMock.createNiceMock(NSQConnection.class);
+        EasyMock.expect(conn.getAddress()).andStubReturn(address);
+        EasyMock.expect(conn.isConnected()).andStubAnswer(new IAnswer<Boolean>() {
+            @Override
+            public Boolean answer() {
+                return connected.get();
+            }
+        });
+        EasyMock.replay(conn);
+        return conn;
+    }
+
+    private GenericKeyedObjectPool<Address, NSQConnection> createPool(int size, final AtomicBoolean connected) {
+        GenericKeyedObjectPoolConfig poolConfig = new GenericKeyedObjectPoolConfig();
+        poolConfig.setMaxTotalPerKey(size);
+        poolConfig.setMaxIdlePerKey(size);
+        return new GenericKeyedObjectPool<>(new BaseKeyedPooledObjectFactory<Address, NSQConnection>() {
+            @Override
+            public NSQConnection create(Address key) {
+                return mockConnection(key, connected);
+            }
+
+            @Override
+            public PooledObject<NSQConnection> wrap(NSQConnection value) {
+                return new DefaultPooledObject<>(value);
+            }
+        }, poolConfig);
+    }
+
+    @Test
+    public void testThreadBindsStableConnection() throws Exception {
+        AtomicBoolean connected = new AtomicBoolean(true);
+        GenericKeyedObjectPool<Address, NSQConnection> pool = createPool(2, connected);
+        ThreadAffineConnectionBinder binder = new ThreadAffineConnectionBinder(pool, 1, 60000L);
+
+        NSQConnection conn = binder.acquire(address);
+        Assert.assertNotNull(conn);
+        //slot is busy, fall back to pool
+        Assert.assertNull(binder.acquire(address));
+        NSQConnection pooled = pool.borrowObject(address);
+        Assert.assertFalse(binder.release(pooled));
+        pool.returnObject(address, pooled);
+
+        Assert.assertTrue(binder.release(conn));
+        Assert.assertSame(binder.acquire(address), conn);
+        Assert.assertTrue(binder.release(conn));
+        //bound connection stays borrowed from pool
+        Assert.assertEquals(pool.getNumActive(address), 1);
+
+        binder.close();
+        Assert.assertEquals(pool.getNumActive(address), 0);
+        pool.close();
+    }
+
+    @Test
+    public void testBrokenConnectionRebound() throws Exception {
+        AtomicBoolean connected = new AtomicBoolean(true);
+        GenericKeyedObjectPool<Address, NSQConnection> pool = createPool(2, connected);
+        ThreadAffineConnectionBinder binder = new ThreadAffineConnectionBinder(pool, 1, 60000L);
+
+        NSQConnection conn = binder.acquire(address);
+        Assert.assertTrue(binder.release(conn));
+        connected.set(false);
+        NSQConnection rebound = binder.acquire(address);
+        Assert.assertNotNull(rebound);
+        Assert.assertNotSame(rebound, conn);
+        Assert.assertEquals(pool.getDestroyedCount(), 1L);
+
+        Assert.assertTrue(binder.invalidate(rebound));
+        Assert.assertEquals(pool.getNumActive(address), 0);
+        pool.close();
+    }
+
+    @Test
+    public void testFallbackWhenPoolExhausted() throws Exception {
+        AtomicBoolean connected = new AtomicBoolean(true);
+        final GenericKeyedObjectPool<Address, NSQConnection> pool = createPool(2, connected);
+        final ThreadAffineConnectionBinder binder = new ThreadAffineConnectionBinder(pool, 1, 60000L);
+        NSQConnection pooled = pool.borrowObject(address);
+        NSQConnection another = pool.borrowObject(address);
+
+        ExecutorService exec = Executors.newSingleThreadExecutor();
+        try {
+            //binder does not wait for pool
+            NSQConnection conn = exec.submit(new Callable<NSQConnection>() {
+                @Override
+                public NSQConnection call() {
+                    return binder.acquire(address);
+                }
+            }).get();
+            Assert.assertNull(conn);
+        } finally {
+            exec.shutdown();
+            pool.returnObject(address, pooled);
+            pool.returnObject(address, another);
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testIdleConnectionReturnedToPool() throws Exception {
+        AtomicBoolean connected = new AtomicBoolean(true);
+        GenericKeyedObjectPool<Address, NSQConnection> pool = createPool(2, connected);
+        ThreadAffineConnectionBinder binder = new ThreadAffineConnectionBinder(pool, 1, 20L);
+
+        NSQConnection conn = binder.acquire(address);
+        Assert.assertTrue(binder.release(conn));
+        binder.evictIdle();
+        Assert.assertEquals(pool.getNumActive(address), 1);
+        Thread.sleep(30L);
+        //idle bound connection goes back to pool for validation and idle eviction
+        binder.evictIdle();
+        Assert.assertEquals(pool.getNumActive(address), 0);
+        Assert.assertEquals(pool.getNumIdle(address), 1);
+        Assert.assertSame(binder.acquire(address), conn);
+        Assert.assertTrue(binder.release(conn));
+        Thread.sleep(30L);
+        //acquire returns idle connection and borrows again
+        Assert.assertNotNull(binder.acquire(address));
+        Assert.assertEquals(pool.getNumActive(address), 1);
+        binder.close();
+        pool.close();
+    }
+
+    @Test
+    public void testExpiredTopicUnbound() throws Exception {
+        AtomicBoolean connected = new AtomicBoolean(true);
+        GenericKeyedObjectPool<Address, NSQConnection> pool = createPool(2, connected);
+        ThreadAffineConnectionBinder binder = new ThreadAffineConnectionBinder(pool, 1, 60000L);
+        Address other = new Address("127.0.0.1", 4150, "0.3.7-HA.1.5.7.1", "other", 0, false);
+
+        NSQConnection conn = binder.acquire(address);
+        Assert.assertTrue(binder.release(conn));
+        NSQConnection busy = binder.acquire(other);
+        binder.unbind(Collections.singleton(address.getTopic()));
+        Assert.assertEquals(pool.getNumActive(address), 0);
+        Assert.assertEquals(pool.getNumActive(other), 1);
+
+        binder.unbind(Collections.singleton(other.getTopic()));
+        //busy connection of expired topic is returned to pool by caller, when it is no longer bound
+        Assert.assertFalse(binder.release(busy));
+        pool.returnObject(other, busy);
+        Assert.assertEquals(pool.getNumActive(other), 0);
+        pool.close();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testSlotsBelowPoolMax() {
+        new ThreadAffineConnectionBinder(createPool(2, new AtomicBoolean(true)), 2, 60000L);
+    }
+}
@@ -0,0 +1,35 @@
+package com.youzan.nsq.client.entity;
+
+import com.youzan.nsq.client.exception.NSQDeadlineExceededException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class ContextTest {
+
+    @Test
+    public void testNoDeadline() throws NSQDeadlineExceededException {
+        Context cxt = new Context();
+        Assert.assertFalse(cxt.hasDeadline());
+        Assert.assertEquals(cxt.capTimeout(3000L), 3000L);
+        cxt.checkDeadline("test");
+    }
+
+    @Test
+    public void testDeadline() throws InterruptedException {
+        Context cxt = new Context();
+        cxt.setDeadline(50, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(cxt.hasDeadline());
+        Assert.assertTrue(cxt.capTimeout(3000L) <= 50L);
+        Assert.assertEquals(cxt.capTimeout(10L), 10L);
+        Thread.sleep(60L);
+        Assert.assertEquals(cxt.capTimeout(3000L), 0L);
+        try {
+            cxt.checkDeadline("connection borrow");
+            Assert.fail("deadline should expire");
+        } catch (NSQDeadlineExceededException e) {
+            Assert.assertEquals(e.getStage(), "connection borrow");
+        }
+    }
+}
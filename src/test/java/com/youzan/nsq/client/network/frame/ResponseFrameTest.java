@@ -0,0 +1,63 @@
+package com.youzan.nsq.client.network.frame;
+
+import com.youzan.nsq.client.MessageReceipt;
+import com.youzan.nsq.client.entity.Response;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+
+public class ResponseFrameTest {
+
+    @Test
+    public void testHeartbeatAndOK() {
+        ResponseFrame heartbeat = new ResponseFrame();
+        heartbeat.setData("_heartbeat_".getBytes());
+        Assert.assertTrue(heartbeat.isHeartBeat());
+        Assert.assertFalse(heartbeat.isOK());
+
+        ResponseFrame ok = new ResponseFrame();
+        ok.setData(" OK\n".getBytes());
+        Assert.assertTrue(ok.isOK());
+        Assert.assertFalse(ok.isHeartBeat());
+        Assert.assertEquals(ok.getReceipt().getDiskQueueSize(), -1);
+        Assert.assertEquals(ok.toMetadataStr(), "No meta data");
+
+        ResponseFrame other = new ResponseFrame();
+        other.setData("_heartbeat_x".getBytes());
+        Assert.assertFalse(other.isHeartBeat());
+        Assert.assertFalse(new MessageFrame().isHeartBeat());
+    }
+
+    @Test
+    public void testReceiptParsedInPlace() {
+        ByteBuffer buf = ByteBuffer.allocate(30);
+        buf.put("OK".getBytes());
+        buf.putLong(Long.MAX_VALUE - 1);
+        buf.putLong(-2L);
+        buf.putLong(1024L);
+        buf.putInt(0x80000001);
+        ResponseFrame frame = new ResponseFrame();
+        frame.setData(buf.array());
+        Assert.assertFalse(frame.isOK());
+        MessageReceipt receipt = frame.getReceipt();
+        Assert.assertEquals(receipt.getInternalID(), Long.MAX_VALUE - 1);
+        Assert.assertEquals(receipt.getTraceID(), -2L);
+        Assert.assertEquals(receipt.getDiskQueueOffset(), 1024L);
+        Assert.assertEquals(receipt.getDiskQueueSize(), 0x80000001);
+        Assert.assertSame(frame.getReceipt(), receipt);
+    }
+
+    @Test
+    public void testErrorPrefix() {
+        ErrorFrame err = new ErrorFrame();
+        err.setData("E_PUB_FAILED pub failed on partition".getBytes());
+        Assert.assertEquals(err.getError(), Response.E_PUB_FAILED);
+        err.setData("E_INVALID invalid command".getBytes());
+        Assert.assertEquals(err.getError(), Response.E_INVALID);
+        err.setData("E_INVALID_X".getBytes());
+        Assert.assertNull(err.getError());
+        err.setData(new byte[0]);
+        Assert.assertNull(err.getError());
+    }
+}
@@ -1,5 +1,11 @@
 package com.youzan.nsq.client.network.frame;
 
+import com.youzan.nsq.client.core.Client;
+import com.youzan.nsq.client.core.NSQConnection;
+import com.youzan.nsq.client.network.netty.NSQDecoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -109,4 +115,44 @@ public class TestMessageFrame {
         frame.setData(data);
     }
 
+    @Test
+    public void decodeOrderedExtFrameInPlace() {
+        byte[] timestamp = new byte[8];
+        byte[] attempts = new byte[2];
+        byte[] messageID = new byte[16];
+        byte[] extBytes = "{\"key\":\"val\"}".getBytes();
+        byte[] diskQueueOffset = new byte[8];
+        byte[] diskQueueDataSize = new byte[4];
+        byte[] messageBody = new byte[1024];
+        _r.nextBytes(timestamp);
+        _r.nextBytes(attempts);
+        _r.nextBytes(messageID);
+        _r.nextBytes(diskQueueOffset);
+        _r.nextBytes(diskQueueDataSize);
+        _r.nextBytes(messageBody);
+
+        int dataSize = 8 + 2 + 16 + 1 + 2 + extBytes.length + 8 + 4 + messageBody.length;
+        ByteBuf in = Unpooled.buffer();
+        in.writeInt(dataSize + 4);
+        in.writeInt(NSQFrame.FrameType.MESSAGE_FRAME.ordinal());
+        in.writeBytes(timestamp).writeBytes(attempts).writeBytes(messageID);
+        in.writeByte(4).writeShort(extBytes.length).writeBytes(extBytes);
+        in.writeBytes(diskQueueOffset).writeBytes(diskQueueDataSize).writeBytes(messageBody);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new NSQDecoder());
+        channel.attr(Client.ORDERED).set(true);
+        channel.attr(NSQConnection.EXTEND_SUPPORT).set(true);
+        Assert.assertTrue(channel.writeInbound(in));
+        OrderedMessageFrame frame = channel.readInbound();
+        Assert.assertEquals(frame.getTimestamp(), timestamp);
+        Assert.assertEquals(frame.getAttempts(), attempts);
+        Assert.assertEquals(frame.getMessageID(), messageID);
+        Assert.assertEquals(frame.getExtBytes(), extBytes);
+        Assert.assertEquals(frame.getDiskQueueOffset(), diskQueueOffset);
+        Assert.assertEquals(frame.getDiskQueueDataSize(), diskQueueDataSize);
+        Assert.assertEquals(frame.getMessageBody(), messageBody);
+        //frame does not hold inbound buffer
+        Assert.assertEquals(in.refCnt(), 0);
+        channel.finish();
+    }
 }
@@ -0,0 +1,110 @@
+package com.youzan.nsq.client.network.netty;
+
+import com.youzan.nsq.client.entity.NSQConfig;
+import io.netty.channel.EventLoopGroup;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class EventLoopWatchdogTest {
+    private EventLoopGroup group;
+
+    @BeforeClass
+    public void init() {
+        group = NSQTransport.NIO.newEventLoopGroup(1, null);
+    }
+
+    @AfterClass
+    public void close() {
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    private static void blockEventLoop(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testStallReportedWithStack() throws InterruptedException {
+        final CountDownLatch stalled = new CountDownLatch(1);
+        final AtomicReference<Thread> stalledThread = new AtomicReference<>();
+        final AtomicReference<StackTraceElement[]> stack = new AtomicReference<>();
+        EventLoopWatchdog watchdog = new EventLoopWatchdog(group, 50, new EventLoopWatchdog.StallListener() {
+            @Override
+            public void onStall(Thread thread, long stallInMillisecond, StackTraceElement[] stackTrace) {
+                stalledThread.set(thread);
+                stack.set(stackTrace);
+                stalled.countDown();
+            }
+        });
+        watchdog.start();
+        try {
+            //idle event loop does not stall
+            Thread.sleep(200);
+            Assert.assertEquals(watchdog.getStallCount(), 0);
+
+            final AtomicReference<Thread> loopThread = new AtomicReference<>();
+            group.next().execute(new Runnable() {
+                @Override
+                public void run() {
+                    loopThread.set(Thread.currentThread());
+                    blockEventLoop(500);
+                }
+            });
+            Assert.assertTrue(stalled.await(2, TimeUnit.SECONDS));
+            Assert.assertSame(stalledThread.get(), loopThread.get());
+            boolean blockerFound = false;
+            for (StackTraceElement element : stack.get()) {
+                if (element.getMethodName().equals("blockEventLoop")) {
+                    blockerFound = true;
+                }
+            }
+            Assert.assertTrue(blockerFound, "offending method not in stack of stalled event loop");
+            //one stall is reported once
+            Thread.sleep(600);
+            Assert.assertEquals(watchdog.getStallCount(), 1);
+        } finally {
+            watchdog.stop();
+        }
+    }
+
+    @Test
+    public void testWatchdogSharedByGroup() {
+        NSQConfig config = new NSQConfig().setEventLoopThreads(1).setEventLoopStallThresholdInMillisecond(100);
+        NSQClientEventLoopGroup clientGroup = NSQClientEventLoopGroup.of(config, "Consumer");
+        try {
+            EventLoopWatchdog watchdog = EventLoopWatchdog.watch(clientGroup.get(), 100);
+            Assert.assertSame(EventLoopWatchdog.watch(clientGroup.get(), 100), watchdog);
+            EventLoopWatchdog.unwatch(clientGroup.get());
+            EventLoopWatchdog.unwatch(clientGroup.get());
+        } finally {
+            clientGroup.release();
+        }
+        Assert.assertFalse(EventLoopWatchdog.isWatched(clientGroup.get()));
+    }
+
+    @Test
+    public void testCallerGroupUnwatchedOnRelease() {
+        NSQConfig config = new NSQConfig().setIoEventLoopGroup(group).setEventLoopStallThresholdInMillisecond(100);
+        NSQClientEventLoopGroup producer = NSQClientEventLoopGroup.of(config, "Producer");
+        NSQClientEventLoopGroup consumer = NSQClientEventLoopGroup.of(config, "Consumer");
+        Assert.assertTrue(EventLoopWatchdog.isWatched(group));
+        producer.release();
+        //watched until last client is released
+        Assert.assertTrue(EventLoopWatchdog.isWatched(group));
+        producer.release();
+        Assert.assertTrue(EventLoopWatchdog.isWatched(group));
+        consumer.release();
+        Assert.assertFalse(EventLoopWatchdog.isWatched(group));
+        //group of caller is not shut down by clients
+        Assert.assertFalse(group.isShuttingDown());
+    }
+}
@@ -0,0 +1,64 @@
+package com.youzan.nsq.client.network.netty;
+
+import com.youzan.nsq.client.entity.NSQConfig;
+import io.netty.channel.EventLoopGroup;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+public class NSQClientEventLoopGroupTest {
+
+    @Test
+    public void testDefaultGroupShared() {
+        NSQClientEventLoopGroup group = NSQClientEventLoopGroup.of(new NSQConfig(), "Producer");
+        Assert.assertSame(group.get(), NSQConfig.getEventLoopGroup());
+        Assert.assertFalse(group.isOwned());
+        group.release();
+        Assert.assertFalse(NSQConfig.getEventLoopGroup().isShuttingDown());
+    }
+
+    @Test
+    public void testSpecifiedGroupNotShutDown() {
+        EventLoopGroup specified = NSQTransport.NIO.newEventLoopGroup(1, null);
+        try {
+            NSQConfig config = new NSQConfig().setIoEventLoopGroup(specified).setEventLoopThreads(2);
+            NSQClientEventLoopGroup group = NSQClientEventLoopGroup.of(config, "Producer");
+            Assert.assertSame(group.get(), specified);
+            Assert.assertFalse(group.isOwned());
+            group.release();
+            Assert.assertFalse(specified.isShuttingDown());
+        } finally {
+            specified.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testGroupPerClient() throws Exception {
+        NSQConfig config = new NSQConfig().setTransport(NSQTransport.NIO).setEventLoopThreads(2);
+        NSQClientEventLoopGroup producer = NSQClientEventLoopGroup.of(config, "Producer");
+        NSQClientEventLoopGroup consumer = NSQClientEventLoopGroup.of(config.setEventLoopThreadName("BulkConsumer-IO"), "Consumer");
+        try {
+            Assert.assertTrue(producer.isOwned());
+            Assert.assertNotSame(producer.get(), consumer.get());
+            Assert.assertNotSame(producer.get(), NSQConfig.getEventLoopGroup());
+            Assert.assertTrue(threadName(producer.get()).startsWith("NSQ-Producer-IO"));
+            Assert.assertTrue(threadName(consumer.get()).startsWith("BulkConsumer-IO"));
+        } finally {
+            producer.release();
+            consumer.release();
+        }
+        Assert.assertTrue(producer.get().isShuttingDown());
+        Assert.assertTrue(consumer.get().isShuttingDown());
+    }
+
+    private static String threadName(EventLoopGroup group) throws Exception {
+        return group.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return Thread.currentThread().getName();
+            }
+        }).get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,263 @@
+package com.youzan.nsq.client.network.netty;
+
+import com.youzan.nsq.client.core.Client;
+import com.youzan.nsq.client.core.NSQConnection;
+import com.youzan.nsq.client.core.NSQConnectionImpl;
+import com.youzan.nsq.client.entity.Address;
+import com.youzan.nsq.client.entity.NSQConfig;
+import com.youzan.nsq.client.exception.NSQException;
+import com.youzan.nsq.client.network.frame.NSQFrame;
+import com.youzan.nsq.client.network.frame.ResponseFrame;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultEventLoop;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.timeout.IdleStateEvent;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NSQHandlerTest {
+    private static final Logger logger = LoggerFactory.getLogger(NSQHandlerTest.class);
+
+    private static Client worker(final AtomicInteger incoming) throws NSQException {
+        Client worker = EasyMock.createNiceMock(Client.class);
+        worker.incoming(EasyMock.anyObject(NSQFrame.class), EasyMock.anyObject(NSQConnection.class));
+        EasyMock.expectLastCall().andStubAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                incoming.incrementAndGet();
+                return null;
+            }
+        });
+        EasyMock.replay(worker);
+        return worker;
+    }
+
+    private static Client heartbeatWorker(NSQConnection conn, ChannelFuture heartbeat, final AtomicInteger closed) {
+        Client worker = EasyMock.createNiceMock(Client.class);
+        EasyMock.expect(worker.validateHeartbeat(conn)).andStubReturn(heartbeat);
+        worker.close(conn);
+        EasyMock.expectLastCall().andStubAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                closed.incrementAndGet();
+                return null;
+            }
+        });
+        EasyMock.replay(worker);
+        return worker;
+    }
+
+    private static NSQConnection connection(NSQConfig config) {
+        NSQConnection conn = EasyMock.createNiceMock(NSQConnection.class);
+        EasyMock.expect(conn.getConfig()).andStubReturn(config);
+        EasyMock.replay(conn);
+        return conn;
+    }
+
+    @Test
+    public void testFrameDispatchedInline() throws NSQException {
+        AtomicInteger incoming = new AtomicInteger(0);
+        EmbeddedChannel channel = new EmbeddedChannel(new NSQHandler());
+        channel.attr(NSQConnection.STATE).set(connection(new NSQConfig()));
+        channel.attr(Client.STATE).set(worker(incoming));
+        ResponseFrame frame = new ResponseFrame();
+        frame.setData("_heartbeat_".getBytes());
+        for (int i = 0; i < 10; i++) {
+            channel.writeInbound(frame);
+        }
+        //no pending task on event loop is needed to process frames
+        Assert.assertEquals(incoming.get(), 10);
+        channel.finish();
+    }
+
+    @Test
+    public void testHeartbeatValidationNotBlocking() throws InterruptedException {
+        NSQConfig config = new NSQConfig().setQueryTimeoutInMillisecond(200);
+        EmbeddedChannel channel = new EmbeddedChannel(new NSQHandler());
+        //heartbeat to a stalled peer, which is never sent
+        ChannelPromise stalled = channel.newPromise();
+        AtomicInteger closed = new AtomicInteger(0);
+        NSQConnection conn = connection(config);
+        channel.attr(NSQConnection.STATE).set(conn);
+        channel.attr(Client.STATE).set(heartbeatWorker(conn, stalled, closed));
+
+        long start = System.nanoTime();
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        //event loop is not blocked by heartbeat validation
+        Assert.assertTrue(elapsed < config.getQueryTimeoutInMillisecond(), "validation blocks event loop for " + elapsed + "ms");
+        channel.runScheduledPendingTasks();
+        Assert.assertEquals(closed.get(), 0);
+
+        Thread.sleep(config.getQueryTimeoutInMillisecond() + 100);
+        channel.runScheduledPendingTasks();
+        Assert.assertEquals(closed.get(), 1);
+        //late completion does not destroy connection again
+        stalled.setFailure(new IOException("stalled"));
+        Assert.assertEquals(closed.get(), 1);
+        channel.finish();
+    }
+
+    @Test
+    public void testHeartbeatValidationResult() throws InterruptedException {
+        NSQConfig config = new NSQConfig().setQueryTimeoutInMillisecond(200);
+        EmbeddedChannel channel = new EmbeddedChannel(new NSQHandler());
+        ChannelPromise heartbeat = channel.newPromise();
+        AtomicInteger closed = new AtomicInteger(0);
+        NSQConnection conn = connection(config);
+        channel.attr(NSQConnection.STATE).set(conn);
+        channel.attr(Client.STATE).set(heartbeatWorker(conn, heartbeat, closed));
+
+        //heartbeat sent
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT);
+        heartbeat.setSuccess();
+        Thread.sleep(config.getQueryTimeoutInMillisecond() + 100);
+        channel.runScheduledPendingTasks();
+        Assert.assertEquals(closed.get(), 0);
+
+        //heartbeat failed
+        heartbeat = channel.newPromise();
+        channel.attr(Client.STATE).set(heartbeatWorker(conn, heartbeat, closed));
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+        heartbeat.setFailure(new IOException("broken"));
+        Assert.assertEquals(closed.get(), 1);
+        channel.finish();
+    }
+
+    @Test
+    public void testWritabilityWakesWaitingPublisher() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new NSQHandler());
+        channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(8, 16));
+        final NSQConnection conn = new NSQConnectionImpl(0, new Address("127.0.0.1", 4150, "ha", "topic", 0, false), channel, new NSQConfig());
+        channel.attr(NSQConnection.STATE).set(conn);
+
+        //outbound buffer above high water mark
+        channel.write(Unpooled.wrappedBuffer(new byte[32]));
+        Assert.assertFalse(conn.isWritable());
+        Assert.assertFalse(conn.awaitWritable(50));
+        //no more messages for connection could not flush acknowledgements
+        Assert.assertFalse(conn.increaseExpectedRdy(10));
+
+        ExecutorService exec = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> waiting = exec.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    return conn.awaitWritable(10000);
+                }
+            });
+            Thread.sleep(100);
+            Assert.assertFalse(waiting.isDone());
+            channel.flush();
+            Assert.assertTrue(waiting.get(1, TimeUnit.SECONDS));
+            Assert.assertTrue(conn.isWritable());
+        } finally {
+            exec.shutdownNow();
+            channel.finish();
+        }
+    }
+
+    /**
+     * Compares frame dispatch inline on event loop with dispatch via another task on the same event loop, in latency
+     * and allocation per frame.
+     */
+    @Test(groups = "perf")
+    public void benchmarkDispatch() throws InterruptedException, NSQException {
+        final int frames = 1000000;
+        final AtomicInteger incoming = new AtomicInteger(0);
+        final Client worker = worker(incoming);
+        final NSQConnection conn = connection(new NSQConfig());
+        final ResponseFrame frame = new ResponseFrame();
+        frame.setData("_heartbeat_".getBytes());
+        DefaultEventLoop loop = new DefaultEventLoop();
+        try {
+            //first rounds for warm up
+            for (int round = 0; round < 3; round++) {
+                long[] inline = dispatch(loop, worker, conn, frame, frames, false);
+                long[] hop = dispatch(loop, worker, conn, frame, frames, true);
+                logger.info("Round {}: inline dispatch {} ns/frame, {} bytes/frame; event loop hop {} ns/frame, {} bytes/frame.",
+                        round, (double) inline[0] / frames, (double) inline[1] / frames, (double) hop[0] / frames, (double) hop[1] / frames);
+            }
+        } finally {
+            loop.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        }
+        Assert.assertEquals(incoming.get(), 3 * 2 * frames);
+    }
+
+    /**
+     * @return elapsed nano seconds and bytes allocated on event loop thread, -1 if allocation could not be measured
+     */
+    private static long[] dispatch(final DefaultEventLoop loop, final Client worker, final NSQConnection conn,
+                                   final NSQFrame frame, final int frames, final boolean hop) throws InterruptedException {
+        final long[] result = new long[2];
+        final CountDownLatch latch = new CountDownLatch(1);
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long start = System.nanoTime();
+                final long allocStart = allocatedBytes();
+                for (int i = 0; i < frames; i++) {
+                    if (!hop) {
+                        try {
+                            worker.incoming(frame, conn);
+                        } catch (Exception e) {
+                            logger.error("Exception", e);
+                        }
+                        continue;
+                    }
+                    final boolean last = i == frames - 1;
+                    loop.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                worker.incoming(frame, conn);
+                            } catch (Exception e) {
+                                logger.error("Exception", e);
+                            }
+                            if (last) {
+                                result[0] = System.nanoTime() - start;
+                                long allocEnd = allocatedBytes();
+                                result[1] = allocStart < 0 ? -1 : allocEnd - allocStart;
+                                latch.countDown();
+                            }
+                        }
+                    });
+                }
+                if (!hop) {
+                    result[0] = System.nanoTime() - start;
+                    long allocEnd = allocatedBytes();
+                    result[1] = allocStart < 0 ? -1 : allocEnd - allocStart;
+                    latch.countDown();
+                }
+            }
+        });
+        Assert.assertTrue(latch.await(60, TimeUnit.SECONDS));
+        return result;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1L;
+    }
+}
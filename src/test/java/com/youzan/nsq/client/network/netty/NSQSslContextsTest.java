@@ -0,0 +1,250 @@
+package com.youzan.nsq.client.network.netty;
+
+import com.youzan.nsq.client.entity.NSQConfig;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.util.ReferenceCountUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handshake and throughput of TLS connections against a local TLS stand-in of nsqd, which only counts bytes. Key pair
+ * of stand-in is generated with keytool of running JDK.
+ */
+public class NSQSslContextsTest {
+    private static final Logger logger = LoggerFactory.getLogger(NSQSslContextsTest.class);
+    private static final String PASSWORD = "changeit";
+
+    private final AtomicLong receivedBytes = new AtomicLong(0);
+    private File dir;
+    private File certFile;
+    private EventLoopGroup group;
+    private Channel server;
+
+    @ChannelHandler.Sharable
+    private class CountingHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            receivedBytes.addAndGet(((ByteBuf) msg).readableBytes());
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    @BeforeClass(alwaysRun = true)
+    public void startTlsStandIn() throws Exception {
+        dir = Files.createTempDirectory("nsq-tls").toFile();
+        File keyStoreFile = new File(dir, "server.p12");
+        certFile = new File(dir, "server.pem");
+        keytool("-genkeypair", "-alias", "nsqd", "-keyalg", "RSA", "-keysize", "2048", "-dname", "CN=127.0.0.1",
+                "-validity", "1", "-storetype", "PKCS12", "-keystore", keyStoreFile.getPath(), "-storepass", PASSWORD,
+                "-keypass", PASSWORD);
+        keytool("-exportcert", "-rfc", "-alias", "nsqd", "-storetype", "PKCS12", "-keystore", keyStoreFile.getPath(),
+                "-storepass", PASSWORD, "-file", certFile.getPath());
+
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = new FileInputStream(keyStoreFile)) {
+            keyStore.load(in, PASSWORD.toCharArray());
+        }
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keyStore, PASSWORD.toCharArray());
+        final SslContext serverContext = SslContextBuilder.forServer(kmf).sslProvider(SslProvider.JDK)
+                .protocols("TLSv1.2").build();
+        final CountingHandler counter = new CountingHandler();
+        group = NSQTransport.NIO.newEventLoopGroup(2, null);
+        server = new ServerBootstrap().group(group).channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(serverContext.newHandler(ch.alloc()));
+                        ch.pipeline().addLast(counter);
+                    }
+                }).bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopTlsStandIn() {
+        if (null != server) {
+            server.close();
+        }
+        if (null != group) {
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        }
+        if (null != dir) {
+            File[] files = dir.listFiles();
+            if (null != files) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+
+    private static void keytool(String... args) throws Exception {
+        File keytool = new File(new File(System.getProperty("java.home"), "bin"), "keytool");
+        if (!keytool.isFile()) {
+            throw new SkipException("keytool not found in " + keytool.getParent());
+        }
+        String[] cmd = new String[args.length + 1];
+        cmd[0] = keytool.getPath();
+        System.arraycopy(args, 0, cmd, 1, args.length);
+        Process process = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        if (!process.waitFor(60, TimeUnit.SECONDS) || process.exitValue() != 0) {
+            throw new SkipException("Fail to run keytool " + Arrays.toString(args));
+        }
+    }
+
+    private static SslContext newClientContext(SslProvider provider) throws Exception {
+        return NSQSslContexts.clientBuilder(provider).trustManager(InsecureTrustManagerFactory.INSTANCE).protocols("TLSv1.2").build();
+    }
+
+    @DataProvider(name = "providers")
+    public static Object[][] providers() {
+        return new Object[][]{{SslProvider.JDK}, {SslProvider.OPENSSL}};
+    }
+
+    private static void skipIfUnavailable(SslProvider provider) {
+        if (NSQSslContexts.provider(provider) != provider) {
+            throw new SkipException(provider + " ssl provider is not available.");
+        }
+    }
+
+    private Channel connect(final SslContext context) throws Exception {
+        final InetSocketAddress address = (InetSocketAddress) server.localAddress();
+        Channel ch = new Bootstrap().group(group).channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new SslHandler(context.newEngine(ch.alloc(), address.getHostString(), address.getPort())));
+                    }
+                }).connect(address).sync().channel();
+        Assert.assertTrue(ch.pipeline().get(SslHandler.class).handshakeFuture().await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(ch.pipeline().get(SslHandler.class).handshakeFuture().isSuccess());
+        return ch;
+    }
+
+    private static byte[] sessionId(Channel ch) {
+        return ch.pipeline().get(SslHandler.class).engine().getSession().getId();
+    }
+
+    @Test
+    public void testJdkProviderByDefault() {
+        Assert.assertEquals(new NSQConfig().getSslProvider(), SslProvider.JDK);
+        Assert.assertEquals(NSQSslContexts.provider(SslProvider.JDK), SslProvider.JDK);
+        Assert.assertEquals(NSQSslContexts.provider(SslProvider.OPENSSL), OpenSsl.isAvailable() ? SslProvider.OPENSSL : SslProvider.JDK);
+        Assert.assertTrue(NSQSslContexts.isSessionResumable(SslProvider.JDK));
+    }
+
+    @Test(dataProvider = "providers")
+    public void testSharedClientContext(SslProvider provider) throws Exception {
+        skipIfUnavailable(provider);
+        SslContext context = NSQSslContexts.sharedClientContext(certFile, provider);
+        Assert.assertSame(NSQSslContexts.sharedClientContext(new File(certFile.getParentFile(), "./" + certFile.getName()), provider), context);
+        Assert.assertSame(NSQSslContexts.defaultClientContext(provider), NSQSslContexts.defaultClientContext(provider));
+        Assert.assertTrue(context.isClient());
+        Channel ch = connect(context);
+        ch.close().sync();
+    }
+
+    @Test(dataProvider = "providers")
+    public void testSessionResumedWithSharedContext(SslProvider provider) throws Exception {
+        skipIfUnavailable(provider);
+        if (!NSQSslContexts.isSessionResumable(provider)) {
+            throw new SkipException("Client session is not resumed with " + provider + " engine of netty in classpath.");
+        }
+        SslContext shared = newClientContext(provider);
+        Channel first = connect(shared);
+        Channel second = connect(shared);
+        Assert.assertTrue(Arrays.equals(sessionId(first), sessionId(second)), "session is not resumed");
+        //no session to resume with new context
+        Channel third = connect(newClientContext(provider));
+        Assert.assertFalse(Arrays.equals(sessionId(first), sessionId(third)));
+        first.close().sync();
+        second.close().sync();
+        third.close().sync();
+    }
+
+    @Test(groups = "perf", dataProvider = "providers")
+    public void benchmarkHandshakeAndThroughput(SslProvider provider) throws Exception {
+        skipIfUnavailable(provider);
+        final int connections = 100;
+        //warm up
+        handshake(provider, connections, false);
+        handshake(provider, connections, true);
+        long full = handshake(provider, connections, false);
+        long resumed = handshake(provider, connections, true);
+        logger.info("{} provider: full handshake {} us, shared context handshake {} us, per connection.", provider,
+                full / connections / 1000.0, resumed / connections / 1000.0);
+
+        final int bytes = 64 * 1024 * 1024;
+        Channel ch = connect(newClientContext(provider));
+        final ByteBuf chunk = Unpooled.wrappedBuffer(new byte[16 * 1024]);
+        receivedBytes.set(0);
+        long start = System.nanoTime();
+        for (int i = 0; i < bytes / chunk.capacity(); i++) {
+            ch.write(chunk.retainedDuplicate());
+            if (!ch.isWritable()) {
+                ch.flush();
+            }
+        }
+        ch.flush();
+        long deadline = System.currentTimeMillis() + 60000;
+        while (receivedBytes.get() < bytes && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        long elapsed = System.nanoTime() - start;
+        Assert.assertEquals(receivedBytes.get(), bytes);
+        logger.info("{} provider: {} MB/s over TLS.", provider, bytes * 1000.0 / elapsed);
+        chunk.release();
+        ch.close().sync();
+    }
+
+    /**
+     * @return nano seconds elapsed in connecting and handshaking
+     */
+    private long handshake(SslProvider provider, int connections, boolean shared) throws Exception {
+        SslContext context = newClientContext(provider);
+        long elapsed = 0;
+        for (int i = 0; i < connections; i++) {
+            long start = System.nanoTime();
+            Channel ch = connect(shared ? context : newClientContext(provider));
+            elapsed += System.nanoTime() - start;
+            ch.close().sync();
+        }
+        return elapsed;
+    }
+}
@@ -0,0 +1,76 @@
+package com.youzan.nsq.client.network.netty;
+
+import com.youzan.nsq.client.entity.NSQConfig;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+public class NSQTransportTest {
+
+    @Test
+    public void testResolve() {
+        Assert.assertEquals(NSQTransport.NIO.resolve(), NSQTransport.NIO);
+        NSQTransport expected = Epoll.isAvailable() ? NSQTransport.EPOLL : NSQTransport.NIO;
+        Assert.assertEquals(NSQTransport.AUTO.resolve(), expected);
+        Assert.assertEquals(NSQTransport.EPOLL.resolve(), expected);
+
+        System.setProperty(NSQTransport.TRANSPORT_PROPERTY, "nio");
+        try {
+            Assert.assertEquals(NSQTransport.fromSystemProperty(), NSQTransport.NIO);
+            System.setProperty(NSQTransport.TRANSPORT_PROPERTY, "unknown");
+            Assert.assertEquals(NSQTransport.fromSystemProperty(), NSQTransport.AUTO);
+        } finally {
+            System.clearProperty(NSQTransport.TRANSPORT_PROPERTY);
+        }
+    }
+
+    @Test
+    public void testNioIgnoresEpollOptions() {
+        NSQConfig config = new NSQConfig().setTcpQuickAck(true);
+        EventLoopGroup group = NSQTransport.NIO.newEventLoopGroup(1, null);
+        try {
+            Bootstrap bootstrap = new Bootstrap();
+            NSQTransport.initBootstrap(bootstrap, group, config);
+            Assert.assertEquals(NSQTransport.socketChannelClass(group), NioSocketChannel.class);
+            Assert.assertFalse(bootstrap.config().options().containsKey(EpollChannelOption.TCP_QUICKACK));
+        } finally {
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testEpollConnect() throws Exception {
+        if (!Epoll.isAvailable()) {
+            throw new SkipException("Native epoll transport is not available.", Epoll.unavailabilityCause());
+        }
+        NSQConfig config = new NSQConfig().setTransport(NSQTransport.EPOLL).setTcpQuickAck(true);
+        EventLoopGroup group = config.getTransport().newEventLoopGroup(1, null);
+        try (ServerSocket server = new ServerSocket(0)) {
+            Bootstrap bootstrap = new Bootstrap();
+            NSQTransport.initBootstrap(bootstrap, group, config);
+            bootstrap.handler(new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(Channel ch) {
+                }
+            });
+            Channel channel = bootstrap.connect(new InetSocketAddress("127.0.0.1", server.getLocalPort())).sync().channel();
+            Assert.assertTrue(channel instanceof EpollSocketChannel);
+            Assert.assertTrue(channel.config().getOption(EpollChannelOption.TCP_QUICKACK));
+            channel.close().sync();
+        } finally {
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        }
+    }
+}
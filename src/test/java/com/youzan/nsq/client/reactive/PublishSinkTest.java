@@ -0,0 +1,269 @@
+package com.youzan.nsq.client.reactive;
+
+import com.youzan.nsq.client.MessageReceipt;
+import com.youzan.nsq.client.Producer;
+import com.youzan.nsq.client.entity.Message;
+import com.youzan.nsq.client.entity.NSQConfig;
+import com.youzan.nsq.client.entity.Topic;
+import com.youzan.nsq.client.exception.NSQException;
+import com.youzan.nsq.client.exception.NSQUnwritableConnectionException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PublishSinkTest {
+
+    /**
+     * subscription interface of the same shape as org.reactivestreams.Subscription, for adapter test.
+     */
+    public interface ForeignSubscription {
+        void request(long n);
+
+        void cancel();
+    }
+
+    public interface ForeignSubscriber<T> {
+        void onSubscribe(ForeignSubscription s);
+
+        void onNext(T t);
+
+        void onError(Throwable t);
+
+        void onComplete();
+    }
+
+    private Producer mockProducer(final AtomicInteger concurrent, final AtomicInteger maxConcurrent, final NSQConfig config) throws NSQException {
+        final Random random = new Random();
+        Producer producer = EasyMock.createMock(Producer.class);
+        //publishes run concurrently on sink executor
+        EasyMock.makeThreadSafe(producer, false);
+        EasyMock.expect(producer.getConfig()).andStubReturn(config);
+        EasyMock.expect(producer.publishAndGetReceipt(EasyMock.anyObject(Message.class))).andStubAnswer(new IAnswer<MessageReceipt>() {
+            @Override
+            public MessageReceipt answer() throws Throwable {
+                int cur = concurrent.incrementAndGet();
+                synchronized (maxConcurrent) {
+                    maxConcurrent.set(Math.max(cur, maxConcurrent.get()));
+                }
+                try {
+                    Thread.sleep(random.nextInt(3));
+                    Message msg = (Message) EasyMock.getCurrentArguments()[0];
+                    if (msg.getMessageBody().endsWith("7"))
+                        throw new IllegalStateException("publish fails");
+                    MessageReceipt receipt = new MessageReceipt();
+                    receipt.setTopicName(msg.getMessageBody());
+                    return receipt;
+                } finally {
+                    concurrent.decrementAndGet();
+                }
+            }
+        });
+        EasyMock.replay(producer);
+        return producer;
+    }
+
+    @Test
+    public void testOrderedAckWithDemand() throws InterruptedException, NSQException {
+        final int total = 2000;
+        final int maxInFlight = 8;
+        AtomicInteger concurrent = new AtomicInteger(0);
+        AtomicInteger maxConcurrent = new AtomicInteger(0);
+        Producer producer = mockProducer(concurrent, maxConcurrent, new NSQConfig());
+
+        final List<String> acked = Collections.synchronizedList(new ArrayList<String>());
+        final AtomicInteger nacked = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final PublishSink sink = new PublishSink(producer, maxInFlight, new PublishAckListener() {
+            @Override
+            public void onAck(Message message, MessageReceipt receipt) {
+                Assert.assertEquals(receipt.getTopicName(), message.getMessageBody());
+                acked.add(message.getMessageBody());
+            }
+
+            @Override
+            public void onNack(Message message, Throwable cause) {
+                nacked.incrementAndGet();
+                acked.add(message.getMessageBody());
+            }
+
+            @Override
+            public void onComplete() {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable cause) {
+                Assert.fail("unexpected error", cause);
+            }
+        });
+
+        //upstream emits strictly within demand, in requesting thread
+        final Topic topic = new Topic("JavaTesting-Reactive");
+        final AtomicLong demand = new AtomicLong(0);
+        final AtomicInteger emitted = new AtomicInteger(0);
+        final AtomicInteger wip = new AtomicInteger(0);
+        Object foreign = ReactiveAdapters.adapt(sink, ForeignSubscriber.class);
+        @SuppressWarnings("unchecked")
+        final ForeignSubscriber<Message> subscriber = (ForeignSubscriber<Message>) foreign;
+        subscriber.onSubscribe(new ForeignSubscription() {
+            @Override
+            public void request(long n) {
+                demand.addAndGet(n);
+                if (wip.getAndIncrement() != 0)
+                    return;
+                do {
+                    while (demand.get() > 0 && emitted.get() < total) {
+                        demand.decrementAndGet();
+                        subscriber.onNext(Message.create(topic, String.valueOf(emitted.getAndIncrement())));
+                    }
+                    if (emitted.get() == total && emitted.getAndIncrement() == total) {
+                        subscriber.onComplete();
+                    }
+                } while (wip.decrementAndGet() != 0);
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+
+        Assert.assertTrue(latch.await(60, TimeUnit.SECONDS));
+        Assert.assertTrue(maxConcurrent.get() <= maxInFlight);
+        Assert.assertEquals(acked.size(), total);
+        for (int i = 0; i < total; i++) {
+            Assert.assertEquals(acked.get(i), String.valueOf(i));
+        }
+        Assert.assertEquals(nacked.get(), total / 10);
+        Assert.assertEquals(sink.getInFlight(), 0);
+    }
+
+    @Test
+    public void testWindowFollowsPushBack() throws InterruptedException, NSQException {
+        final int maxInFlight = 8;
+        final AtomicInteger pushBack = new AtomicInteger(0);
+        final AtomicInteger concurrent = new AtomicInteger(0);
+        final AtomicInteger maxConcurrent = new AtomicInteger(0);
+        Producer producer = EasyMock.createMock(Producer.class);
+        EasyMock.makeThreadSafe(producer, false);
+        EasyMock.expect(producer.publishAndGetReceipt(EasyMock.anyObject(Message.class))).andStubAnswer(new IAnswer<MessageReceipt>() {
+            @Override
+            public MessageReceipt answer() throws Throwable {
+                int cur = concurrent.incrementAndGet();
+                synchronized (maxConcurrent) {
+                    maxConcurrent.set(Math.max(cur, maxConcurrent.get()));
+                }
+                try {
+                    if (pushBack.get() > 0 && pushBack.decrementAndGet() >= 0)
+                        throw new NSQUnwritableConnectionException("write buffer is full");
+                    return new MessageReceipt();
+                } finally {
+                    concurrent.decrementAndGet();
+                }
+            }
+        });
+        EasyMock.replay(producer);
+        final CountDownLatch acked = new CountDownLatch(100);
+        final PublishSink sink = new PublishSink(producer, maxInFlight, new PublishAckListener() {
+            @Override
+            public void onAck(Message message, MessageReceipt receipt) {
+                acked.countDown();
+            }
+
+            @Override
+            public void onNack(Message message, Throwable cause) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+
+            @Override
+            public void onError(Throwable cause) {
+            }
+        });
+        final Topic topic = new Topic("JavaTesting-Reactive");
+        final AtomicLong requested = new AtomicLong(0);
+        sink.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                requested.addAndGet(n);
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        //window starts from one message in flight
+        Assert.assertEquals(requested.get(), 1L);
+        long emitted = 0;
+        while (acked.getCount() > 0) {
+            if (emitted < requested.get()) {
+                sink.onNext(Message.create(topic, "message"));
+                emitted++;
+            } else {
+                Thread.sleep(1);
+            }
+        }
+        while (sink.getInFlight() > 0) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(sink.getWindow(), maxInFlight);
+        Assert.assertTrue(maxConcurrent.get() <= maxInFlight);
+
+        //producer pushes back, window shrinks and no more is requested
+        long requestedBeforePushBack = requested.get();
+        pushBack.set(3);
+        for (int i = 0; i < 3; ) {
+            if (emitted < requested.get()) {
+                sink.onNext(Message.create(topic, "message"));
+                emitted++;
+                i++;
+            } else {
+                Thread.sleep(1);
+            }
+        }
+        while (sink.getInFlight() > 0) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(sink.getWindow(), 1);
+        Assert.assertEquals(requested.get(), requestedBeforePushBack);
+    }
+
+    @Test
+    public void testDroppedMessageReleased() throws NSQException {
+        PublishSink sink = new PublishSink(mockProducer(new AtomicInteger(0), new AtomicInteger(0), new NSQConfig()), 1, new PublishAckListener() {
+            @Override
+            public void onAck(Message message, MessageReceipt receipt) {
+            }
+
+            @Override
+            public void onNack(Message message, Throwable cause) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+
+            @Override
+            public void onError(Throwable cause) {
+            }
+        });
+        sink.cancel();
+        ByteBuf body = Unpooled.directBuffer().writeBytes("dropped".getBytes(StandardCharsets.UTF_8));
+        sink.onNext(Message.create(new Topic("JavaTesting-Reactive"), body));
+        Assert.assertEquals(body.refCnt(), 0);
+    }
+}
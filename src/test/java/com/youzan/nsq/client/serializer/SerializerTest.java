@@ -0,0 +1,137 @@
+package com.youzan.nsq.client.serializer;
+
+import com.youzan.nsq.client.entity.Address;
+import com.youzan.nsq.client.entity.Message;
+import com.youzan.nsq.client.entity.NSQMessage;
+import com.youzan.nsq.client.entity.Topic;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SerializerTest {
+
+    public static class Order {
+        private long id;
+        private String name;
+
+        public Order() {
+        }
+
+        public Order(long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    private NSQMessage receive(final Message msg) {
+        byte[] body = msg.getMessageBodyInByte();
+        msg.release();
+        Topic topic = new Topic("JavaTesting-Serializer");
+        Address address = new Address("127.0.0.1", 4150, "ha", topic.getTopicText(), 0, false);
+        return new NSQMessage(new byte[8], new byte[2], new byte[16], new byte[8], new byte[8], body, address, 1L, 0, topic, false);
+    }
+
+    @DataProvider(name = "jsonSerializers")
+    public Object[][] jsonSerializers() {
+        return new Object[][]{
+                {JacksonSerializer.getInstance()},
+                {FastjsonSerializer.getInstance()}
+        };
+    }
+
+    @Test(dataProvider = "jsonSerializers")
+    public void testJsonRoundTrip(Serializer<Object> serializer) throws IOException {
+        Topic topic = new Topic("JavaTesting-Serializer");
+        Message msg = Message.create(topic, new Order(1024L, "order"), serializer);
+        Assert.assertTrue(msg.hasMessageBodyBuf());
+        NSQMessage nsqMsg = receive(msg);
+        Order order = nsqMsg.getContent(Order.class, serializer);
+        Assert.assertEquals(order.getId(), 1024L);
+        Assert.assertEquals(order.getName(), "order");
+        //deserialized once
+        Assert.assertSame(nsqMsg.getContent(Order.class, serializer), order);
+    }
+
+    @Test
+    public void testRawRoundTrip() throws IOException {
+        byte[] raw = "raw message".getBytes(StandardCharsets.UTF_8);
+        Message msg = Message.create(new Topic("JavaTesting-Serializer"), raw, RawSerializer.getInstance());
+        Assert.assertEquals(msg.getMessageBodyLength(), raw.length);
+        NSQMessage nsqMsg = receive(msg);
+        Assert.assertEquals(nsqMsg.getContent(byte[].class, RawSerializer.getInstance()), raw);
+        //message body is returned without copy
+        Assert.assertSame(nsqMsg.getContent(byte[].class, RawSerializer.getInstance()), nsqMsg.getMessageBody());
+    }
+
+    @Test
+    public void testContentCachedPerSerializerAndType() throws IOException {
+        Message msg = Message.create(new Topic("JavaTesting-Serializer"), new Order(1024L, "order"), JacksonSerializer.getInstance());
+        NSQMessage nsqMsg = receive(msg);
+        Order order = nsqMsg.getContent(Order.class, JacksonSerializer.getInstance());
+        Object tree = nsqMsg.getContent(Object.class, JacksonSerializer.getInstance());
+        Assert.assertFalse(tree instanceof Order);
+        Assert.assertTrue(tree instanceof Map);
+        byte[] raw = nsqMsg.getContent(byte[].class, RawSerializer.getInstance());
+        Assert.assertEquals(raw, nsqMsg.getMessageBody());
+        Assert.assertNotSame(nsqMsg.getContent(Order.class, FastjsonSerializer.getInstance()), order);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRawNullBody() {
+        Message.create(new Topic("JavaTesting-Serializer"), null, RawSerializer.getInstance());
+    }
+
+    @Test
+    public void testContentCachedAcrossThreads() throws Exception {
+        Message msg = Message.create(new Topic("JavaTesting-Serializer"), new Order(1024L, "order"), JacksonSerializer.getInstance());
+        final NSQMessage nsqMsg = receive(msg);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final boolean asOrder = t % 2 == 0;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 10000; i++) {
+                            //content of the other type is never returned
+                            if (asOrder) {
+                                Assert.assertEquals(nsqMsg.getContent(Order.class, JacksonSerializer.getInstance()).getId(), 1024L);
+                            } else {
+                                Assert.assertTrue(nsqMsg.getContent(Object.class, JacksonSerializer.getInstance()) instanceof Map);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertNull(error.get());
+    }
+}
@@ -0,0 +1,24 @@
+package com.youzan.nsq.client.utils;
+
+import com.youzan.nsq.client.network.frame.MessageFrame;
+
+import java.nio.ByteBuffer;
+
+public class MessageFrameUtil {
+
+    /**
+     * @return frame of message with internal ID, trace ID and 4 bytes body set to given sequence
+     */
+    public static MessageFrame messageFrame(int sequence) {
+        ByteBuffer bb = ByteBuffer.allocate(8 + 2 + 16 + 4);
+        bb.putLong(System.nanoTime());
+        bb.putShort((short) 1);
+        bb.putLong(sequence);
+        bb.putLong(sequence);
+        bb.putInt(sequence);
+        MessageFrame frame = new MessageFrame();
+        frame.setSize(bb.capacity());
+        frame.setData(bb.array());
+        return frame;
+    }
+}
@@ -0,0 +1,130 @@
+package com.youzan.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class SerialExecutorTest {
+
+    @Test
+    public void testLaneGoesOnAfterError() throws InterruptedException {
+        ExecutorService backing = Executors.newFixedThreadPool(1);
+        try {
+            SerialExecutor lane = new SerialExecutor(backing);
+            final List<Integer> ran = new ArrayList<>();
+            final CountDownLatch latch = new CountDownLatch(1);
+            lane.execute(new Runnable() {
+                @Override
+                public void run() {
+                    throw new Error("handler error");
+                }
+            });
+            lane.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ran.add(1);
+                }
+            });
+            lane.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ran.add(2);
+                    latch.countDown();
+                }
+            });
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS), "lane stalls after task throws error");
+            Assert.assertEquals(ran.size(), 2);
+            Assert.assertEquals(lane.pending(), 0);
+        } finally {
+            backing.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testHoldFreesBackingThread() throws InterruptedException {
+        ExecutorService backing = Executors.newFixedThreadPool(1);
+        try {
+            final SerialExecutor held = new SerialExecutor(backing);
+            SerialExecutor other = new SerialExecutor(backing);
+            final List<String> ran = new CopyOnWriteArrayList<>();
+            final CountDownLatch otherRan = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(1);
+            held.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ran.add("failed");
+                    held.hold();
+                }
+            });
+            held.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ran.add("later");
+                    done.countDown();
+                }
+            });
+            //the only backing thread is free while lane is held
+            other.execute(new Runnable() {
+                @Override
+                public void run() {
+                    otherRan.countDown();
+                }
+            });
+            Assert.assertTrue(otherRan.await(5, TimeUnit.SECONDS));
+            Assert.assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+            Assert.assertEquals(held.pending(), 1);
+            held.resume(new Runnable() {
+                @Override
+                public void run() {
+                    ran.add("retried");
+                }
+            });
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(ran, Arrays.asList("failed", "retried", "later"));
+        } finally {
+            backing.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testResumeBeforeHoldingTaskReturns() throws InterruptedException {
+        ExecutorService backing = Executors.newFixedThreadPool(2);
+        try {
+            final SerialExecutor lane = new SerialExecutor(backing);
+            final List<String> ran = new CopyOnWriteArrayList<>();
+            final CountDownLatch done = new CountDownLatch(1);
+            lane.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ran.add("failed");
+                    lane.hold();
+                    lane.resume(new Runnable() {
+                        @Override
+                        public void run() {
+                            ran.add("retried");
+                        }
+                    });
+                }
+            });
+            lane.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ran.add("later");
+                    done.countDown();
+                }
+            });
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(ran, Arrays.asList("failed", "retried", "later"));
+        } finally {
+            backing.shutdownNow();
+        }
+    }
+}